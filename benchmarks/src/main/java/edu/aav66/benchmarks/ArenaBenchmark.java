@@ -0,0 +1,67 @@
+package edu.aav66.benchmarks;
+
+import edu.aav66.Arena;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a tick of a crowded arena with collisions resolved on the calling thread
+ * and band by band on the common pool, to find the number of snakes from which
+ * {@link Arena#PARALLEL_THRESHOLD} should switch to the pool. Every snake turns at
+ * random now and then, so some die and respawn each tick as they would in a game.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ArenaBenchmark
+{
+    private static final String DIRECTIONS = "UDLR";
+
+    @Param( { "256", "1024", "4096" } )
+    int players;
+
+    @Param( { "200", "1000" } )
+    int size;
+
+    @Param( { "false", "true" } )
+    boolean parallel;
+
+    private Arena arena;
+    private int turn;
+
+    @Setup public void setUp()
+    {
+        arena = new Arena( size, size, size, 42L );
+        arena.setParallelThreshold( parallel ? 0 : Integer.MAX_VALUE );
+        for ( int i = 0; i < players; i++ )
+            arena.addPlayer();
+        for ( int i = 0; i < Arena.RESPAWN_TICKS * 2; i++ )
+            arena.tick();
+    }
+
+    /**
+     * One tick, after steering one snake in sixteen, which is mostly the collision
+     * checks and the frame.
+     */
+    @Benchmark public ByteBuffer tick()
+    {
+        for ( int id = turn & 15; id < players; id += 16 )
+            arena.steer( id, DIRECTIONS.charAt( ( id + turn ) & 3 ) );
+        turn++;
+        return arena.tick();
+    }
+}
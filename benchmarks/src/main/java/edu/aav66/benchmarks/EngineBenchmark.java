@@ -0,0 +1,80 @@
+package edu.aav66.benchmarks;
+
+import edu.aav66.AutopilotController;
+import edu.aav66.HamiltonianController;
+import edu.aav66.SnakeEngine;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the game rules and the controllers on boards of different sizes with
+ * snakes of different lengths. The snake never eats during a measurement, so its
+ * length stays at the parameter.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class EngineBenchmark
+{
+    @Param( { "32", "256" } )
+    int size;
+
+    @Param( { "6", "500", "1000" } )
+    int length;
+
+    private SnakeEngine engine;
+    private HamiltonianController solver;
+    private AutopilotController autopilot;
+
+    @Setup public void setUp()
+    {
+        engine = Snakes.grow( size, length );
+        solver = new HamiltonianController();
+        autopilot = new AutopilotController();
+        solver.reset( engine );
+        autopilot.reset( engine );
+    }
+
+    /**
+     * One full tick: move, apple check and collision check.
+     */
+    @Benchmark public boolean tick() { return engine.step( solver.nextDirection( engine ) ); }
+
+    @Benchmark public boolean checkCollisions()
+    {
+        engine.checkCollisions();
+        return engine.isRunning();
+    }
+
+    /**
+     * Places an apple on a random free cell, then takes it off the board again so
+     * no other benchmark ever eats it.
+     */
+    @Benchmark public int newApple()
+    {
+        engine.newApple();
+        int cell = engine.getAppleY() * size + engine.getAppleX();
+        engine.setApple( -1, -1 );
+        return cell;
+    }
+
+    @Benchmark public char hamiltonianDecision() { return solver.nextDirection( engine ); }
+
+    /**
+     * The autopilot with no apple to search for, so this is its tail-chasing search.
+     */
+    @Benchmark public char autopilotDecision() { return autopilot.nextDirection( engine ); }
+}
@@ -0,0 +1,89 @@
+package edu.aav66.benchmarks;
+
+import edu.aav66.BoardRenderer;
+import edu.aav66.HamiltonianController;
+import edu.aav66.SnakeEngine;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures drawing the board headless into a {@code BufferedImage}, both the usual
+ * frame after one tick and a full redraw of every cell.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+public class RenderBenchmark
+{
+    private static final int UNIT_SIZE = 8;
+
+    @Param( { "32", "128" } )
+    int size;
+
+    @Param( { "6", "500" } )
+    int length;
+
+    @Param( { "true", "false" } )
+    boolean rainbow;
+
+    private SnakeEngine engine;
+    private HamiltonianController solver;
+    private BoardRenderer renderer;
+    private BufferedImage frame;
+    private Graphics2D g;
+
+    @Setup public void setUp()
+    {
+        engine = Snakes.grow( size, length );
+        solver = new HamiltonianController();
+        solver.reset( engine );
+
+        renderer = new BoardRenderer( size, size, UNIT_SIZE, new Random( 1 ) );
+        renderer.setRainbowBody( rainbow );
+        renderer.update( engine );
+
+        frame = new BufferedImage( size * UNIT_SIZE, size * UNIT_SIZE, BufferedImage.TYPE_INT_RGB );
+        g = frame.createGraphics();
+    }
+
+    @TearDown public void tearDown() { g.dispose(); }
+
+    /**
+     * A tick followed by the incremental board update and a frame.
+     */
+    @Benchmark public BufferedImage tickAndFrame()
+    {
+        engine.step( solver.nextDirection( engine ) );
+        renderer.update( engine );
+        renderer.draw( g, engine, 1.0 );
+        return frame;
+    }
+
+    /**
+     * Redrawing every cell of the board, as after a resize or a color change.
+     */
+    @Benchmark public BufferedImage fullRedraw()
+    {
+        renderer.invalidate();
+        renderer.update( engine );
+        renderer.draw( g, engine, 1.0 );
+        return frame;
+    }
+}
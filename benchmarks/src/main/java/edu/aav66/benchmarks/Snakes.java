@@ -0,0 +1,36 @@
+package edu.aav66.benchmarks;
+
+import edu.aav66.HamiltonianController;
+import edu.aav66.SnakeEngine;
+
+/**
+ * Builds games in a given state for the benchmarks.
+ */
+final class Snakes
+{
+    private Snakes() {}
+
+    /**
+     * Plays a seeded game with the Hamiltonian solver until the snake reaches a
+     * length, then takes the apple off the board so the length stays fixed while
+     * the game is stepped further.
+     *
+     * @param size The width and height of the board in cells; must be even.
+     * @param length The length to grow the snake to.
+     * @return The engine, still running.
+     */
+    static SnakeEngine grow( int size, int length )
+    {
+        if ( length > size * size )
+            throw new IllegalArgumentException( "A snake of " + length + " does not fit a " + size + "x" + size + " board" );
+
+        SnakeEngine engine = new SnakeEngine( size, size, 42L );
+        HamiltonianController solver = new HamiltonianController();
+        solver.reset( engine );
+        while ( engine.getBodyParts() < length )
+            engine.step( solver.nextDirection( engine ) );
+
+        engine.setApple( -1, -1 );
+        return engine;
+    }
+}
@@ -0,0 +1,477 @@
+package edu.aav66;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code Arena} class is a game of Snake for many players on one board, run by an
+ * {@link ArenaServer}. Every tick all living snakes move at once: tails are dropped
+ * first, so a snake may follow any tail closely, then a snake dies if its head leaves
+ * the board, enters a cell covered by any snake, or enters the same cell as another
+ * head. Dead snakes come back at a random free cell after a short wait, and eaten
+ * apples are replaced so the board always holds the same number.
+ *
+ * Each tick returns an {@link ArenaProtocol#TICK} frame describing only what changed,
+ * which {@link ArenaView} applies to a copy of the arena. Collisions are looked up in
+ * an {@link OwnerGrid} shared by all snakes, which records the snake covering each
+ * cell and is updated as heads are added and tails dropped, and heads meeting in the
+ * same cell are found with a stamp per cell written once per tick, so a tick takes
+ * time in proportion to the number of snakes rather than their length or the size of
+ * the board.
+ *
+ * With many snakes, and more than one thread in the common {@link ForkJoinPool}, the
+ * collision checks are split across the pool. The board is cut into bands of rows and
+ * the new heads sorted by band; two heads can only meet inside one band and the grid
+ * is only read, so the bands are resolved independently and the result does not
+ * depend on the order they run in. Everything else, including the frame, is done on
+ * the calling thread. {@code ArenaBenchmark} in the benchmarks module measures where
+ * the split starts to pay off.
+ *
+ * An arena is not thread-safe; the server calls it from one thread.
+ */
+public final class Arena
+{
+    // Length a snake grows to after spawning
+    public static final int INITIAL_LENGTH = 4;
+
+    // Ticks a dead snake waits before it spawns again
+    public static final int RESPAWN_TICKS = 10;
+
+    // Random cells tried for a spawn or apple before waiting for the next tick
+    private static final int MAX_PLACEMENT_TRIES = 8;
+
+    // Living snakes from which collisions are resolved in parallel, if the pool has threads to spare
+    public static final int PARALLEL_THRESHOLD = 1024;
+
+    // Bands of rows per thread of the common pool, so uneven bands balance out
+    private static final int BANDS_PER_THREAD = 4;
+
+    private static final int DX[] = { 0, 0, -1, 1 };
+    private static final int DY[] = { -1, 1, 0, 0 };
+
+    private final int columns;
+    private final int rows;
+    private final int appleTarget;
+    private final OwnerGrid owners;
+    private final OccupancyGrid apples;
+    private final SeededRandom random;
+    private long tick;
+
+    private ArenaSnake snakes[] = new ArenaSnake[16]; // by id; null for ids not in use
+    private int players;
+    private int leaves[] = new int[16];                // ids that left since the last tick
+    private int leaveCount;
+
+    // Scratch state for one tick
+    private int nextHeads[] = new int[16];             // by id; -1 if off the board
+    private boolean dying[] = new boolean[16];
+    private boolean tailKept[] = new boolean[16];
+    private final int headStamps[];                    // stamp of the last tick a head entered each cell
+    private final int headOwners[];
+    private int stamp;
+    private final int bands;
+    private final int bandStarts[];                    // index in bandOrder of each band's first snake
+    private int bandOrder[] = new int[16];             // ids of the moving snakes, by band
+    private int parallelThreshold = ForkJoinPool.getCommonPoolParallelism() > 1 ? PARALLEL_THRESHOLD : Integer.MAX_VALUE;
+
+    private final ArenaProtocol.Writer writer = new ArenaProtocol.Writer();
+
+    /**
+     * Constructs a new, empty {@code Arena} with its apples placed.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @param apples The number of apples kept on the board.
+     * @param seed The seed apples and spawns are placed with.
+     */
+    public Arena( int columns, int rows, int apples, long seed )
+    {
+        if ( columns < 2 || rows < 2 || columns > GameConfig.MAX_DIMENSION || rows > GameConfig.MAX_DIMENSION )
+            throw new IllegalArgumentException( "Board must be between 2x2 and " + GameConfig.MAX_DIMENSION + " cells: " +
+                                                columns + "x" + rows );
+        if ( apples < 0 || apples >= columns * rows )
+            throw new IllegalArgumentException( "Too many apples for the board: " + apples );
+
+        this.columns = columns;
+        this.rows = rows;
+        this.appleTarget = apples;
+        owners = new OwnerGrid( columns * rows );
+        this.apples = new OccupancyGrid( columns * rows );
+        random = new SeededRandom( seed );
+        headStamps = new int[columns * rows];
+        headOwners = new int[columns * rows];
+        bands = Math.min( rows, ForkJoinPool.getCommonPoolParallelism() * BANDS_PER_THREAD );
+        bandStarts = new int[bands + 1];
+
+        for ( int i = 0; i < apples; i++ )
+            placeApple();
+    }
+
+    /**
+     * Adds a player, whose snake spawns on the next tick.
+     *
+     * @return The id of the player's snake.
+     */
+    public int addPlayer()
+    {
+        int id = 0;
+        while ( id < snakes.length && snakes[id] != null )
+            id++;
+        if ( id == snakes.length )
+            growTables( snakes.length * 2 );
+
+        ArenaSnake snake = new ArenaSnake( id );
+        snake.kill( tick + 1 );
+        snakes[id] = snake;
+        players++;
+        return id;
+    }
+
+    /**
+     * Removes a player and its snake.
+     *
+     * @param id The id of the player's snake.
+     */
+    public void removePlayer( int id )
+    {
+        ArenaSnake snake = snakes[id];
+        if ( snake == null )
+            return;
+
+        releaseBody( snake );
+        snakes[id] = null;
+        players--;
+        if ( leaveCount == leaves.length )
+            leaves = Arrays.copyOf( leaves, leaveCount * 2 );
+        leaves[leaveCount++] = id;
+    }
+
+    /**
+     * Queues a turn for a player's snake, applied on a coming tick. Turns that would
+     * reverse the snake are ignored.
+     *
+     * @param id The id of the player's snake.
+     * @param direction The direction ('U', 'D', 'L' or 'R').
+     */
+    public void steer( int id, char direction )
+    {
+        ArenaSnake snake = id >= 0 && id < snakes.length ? snakes[id] : null;
+        if ( snake != null && snake.isAlive() )
+            snake.steer( direction );
+    }
+
+    /**
+     * Advances the arena by one tick.
+     *
+     * @return The {@link ArenaProtocol#TICK} frame describing the tick, valid until the
+     *         next tick or welcome frame.
+     */
+    public ByteBuffer tick()
+    {
+        tick++;
+        writer.begin( ArenaProtocol.TICK );
+        writer.putVarInt( tick );
+        for ( int i = 0; i < leaveCount; i++ )
+        {
+            writer.putByte( ArenaProtocol.LEAVE );
+            writer.putVarInt( leaves[i] );
+        }
+        leaveCount = 0;
+
+        int mark = nextStamp();
+
+        // Turn, work out the new heads and drop the tails, so heads may enter the cells tails leave
+        int living = 0;
+        for ( int id = 0; id < snakes.length; id++ )
+        {
+            ArenaSnake snake = snakes[id];
+            if ( snake == null || !snake.isAlive() )
+                continue;
+
+            snake.applyTurn();
+            nextHeads[id] = neighbour( snake.getHeadCell(), snake.getDirection() );
+            dying[id] = false;
+            tailKept[id] = snake.grow();
+            if ( !tailKept[id] )
+                owners.release( snake.removeTail() );
+            living++;
+        }
+
+        // Find the heads that hit a wall, a body or each other
+        if ( living < parallelThreshold )
+        {
+            for ( int id = 0; id < snakes.length; id++ )
+                if ( snakes[id] != null && snakes[id].isAlive() )
+                    resolve( id, mark );
+        }
+        else
+        {
+            sortByBand();
+            IntStream.range( 0, bands ).parallel().forEach( band ->
+            {
+                for ( int i = bandStarts[band]; i < bandStarts[band + 1]; i++ )
+                    resolve( bandOrder[i], mark );
+            } );
+        }
+
+        // Move the survivors and clear away the dead
+        for ( int id = 0; id < snakes.length; id++ )
+        {
+            ArenaSnake snake = snakes[id];
+            if ( snake == null || !snake.isAlive() )
+                continue;
+
+            if ( dying[id] )
+            {
+                releaseBody( snake );
+                snake.kill( tick + RESPAWN_TICKS );
+                writer.putByte( ArenaProtocol.DIE );
+                writer.putVarInt( id );
+                continue;
+            }
+
+            int cell = nextHeads[id];
+            snake.addHead( cell );
+            owners.claim( cell, id );
+            writer.putByte( ArenaProtocol.directionCode( snake.getDirection() ) | ( tailKept[id] ? ArenaProtocol.TAIL_KEPT : 0 ) );
+            writer.putVarInt( id );
+            if ( apples.isOccupied( cell ) )
+            {
+                apples.clear( cell );
+                snake.feed();
+            }
+        }
+
+        // Bring back the snakes whose wait is over, then replace the apples eaten
+        for ( int id = 0; id < snakes.length; id++ )
+        {
+            ArenaSnake snake = snakes[id];
+            if ( snake != null && !snake.isAlive() && snake.getRespawnTick() <= tick )
+                spawn( snake );
+        }
+        for ( int i = apples.getOccupiedCount(); i < appleTarget; i++ )
+            placeApple();
+
+        return writer.finish();
+    }
+
+    /**
+     * Describes the whole arena to a player that has just joined.
+     *
+     * @param playerId The id of the player's snake.
+     * @return The {@link ArenaProtocol#WELCOME} frame, valid until the next tick or
+     *         welcome frame.
+     */
+    public ByteBuffer welcome( int playerId )
+    {
+        writer.begin( ArenaProtocol.WELCOME );
+        writer.putVarInt( playerId );
+        writer.putVarInt( columns );
+        writer.putVarInt( rows );
+        writer.putVarInt( tick );
+
+        writer.putVarInt( apples.getOccupiedCount() );
+        for ( int cell = apples.nextOccupied( 0 ); cell >= 0; cell = apples.nextOccupied( cell + 1 ) )
+            writer.putVarInt( cell );
+
+        writer.putVarInt( players );
+        for ( int id = 0; id < snakes.length; id++ )
+        {
+            ArenaSnake snake = snakes[id];
+            if ( snake == null )
+                continue;
+
+            writer.putVarInt( id );
+            writer.putByte( ArenaProtocol.directionCode( snake.getDirection() ) | ( snake.isAlive() ? ArenaProtocol.ALIVE : 0 ) );
+            writer.putVarInt( snake.getScore() );
+            writer.putVarInt( snake.size() );
+            for ( int i = 0; i < snake.size(); i++ )
+                writer.putVarInt( snake.getCell( i ) );
+        }
+        return writer.finish();
+    }
+
+    /**
+     * Sets how many living snakes there must be before collisions are resolved in
+     * parallel. The default is {@link #PARALLEL_THRESHOLD}, or never when the common
+     * pool has only one thread. The outcome of a tick is the same either way.
+     *
+     * @param snakes The number of living snakes, or {@link Integer#MAX_VALUE} to always
+     *               resolve collisions on the calling thread.
+     */
+    public void setParallelThreshold( int snakes )
+    {
+        if ( snakes < 0 )
+            throw new IllegalArgumentException( "Threshold must not be negative: " + snakes );
+        parallelThreshold = snakes;
+    }
+
+    public int getColumns() { return columns; }
+
+    public int getRows() { return rows; }
+
+    public long getTick() { return tick; }
+
+    public int getPlayerCount() { return players; }
+
+    /**
+     * Returns a player's snake.
+     *
+     * @param id The id of the player's snake.
+     * @return The snake, or {@code null} if no player has the id.
+     */
+    public ArenaSnake getSnake( int id ) { return id >= 0 && id < snakes.length ? snakes[id] : null; }
+
+    /**
+     * Returns whether an apple lies in a cell.
+     *
+     * @param cell The index of the cell.
+     * @return {@code true} if the cell holds an apple.
+     */
+    public boolean isApple( int cell ) { return apples.isOccupied( cell ); }
+
+    public int getAppleCount() { return apples.getOccupiedCount(); }
+
+    /**
+     * Returns a read-only view of which snake covers each cell.
+     *
+     * @return The owners of the cells of the board.
+     */
+    public OwnerGrid getOwners() { return owners; }
+
+    /**
+     * Puts a snake on a random free cell, facing the further side of the board.
+     * If no free cell is found it tries again on the next tick.
+     */
+    private void spawn( ArenaSnake snake )
+    {
+        int cell = randomEmptyCell();
+        if ( cell < 0 )
+            return;
+
+        char direction = cell % columns < columns / 2 ? 'R' : 'L';
+        snake.spawn( cell, direction, INITIAL_LENGTH - 1 );
+        owners.claim( cell, snake.getId() );
+        writer.putByte( ArenaProtocol.SPAWN );
+        writer.putVarInt( snake.getId() );
+        writer.putVarInt( cell );
+        writer.putByte( ArenaProtocol.directionCode( direction ) );
+    }
+
+    private void placeApple()
+    {
+        int cell = randomEmptyCell();
+        if ( cell < 0 )
+            return;
+
+        apples.set( cell );
+        writer.putByte( ArenaProtocol.APPLE );
+        writer.putVarInt( cell );
+    }
+
+    /**
+     * Picks a random cell with neither a snake nor an apple in it.
+     *
+     * @return The index of the cell, or -1 if none was found.
+     */
+    private int randomEmptyCell()
+    {
+        for ( int i = 0; i < MAX_PLACEMENT_TRIES; i++ )
+        {
+            int cell = owners.getOccupancy().randomFreeCell( random );
+            if ( cell < 0 )
+                return -1;
+            if ( !apples.isOccupied( cell ) )
+                return cell;
+        }
+        return -1;
+    }
+
+    private void releaseBody( ArenaSnake snake )
+    {
+        for ( int i = 0; i < snake.size(); i++ )
+            owners.release( snake.getCell( i ) );
+    }
+
+    /**
+     * Marks a snake as dying if its new head leaves the board, enters a body or meets
+     * another head. Snakes whose heads are in the same band must be resolved by the
+     * same thread.
+     */
+    private void resolve( int id, int mark )
+    {
+        int cell = nextHeads[id];
+        if ( cell < 0 || owners.isOccupied( cell ) )
+            dying[id] = true;
+        else if ( headStamps[cell] == mark )
+        {
+            dying[id] = true;
+            dying[headOwners[cell]] = true;
+        }
+        else
+        {
+            headStamps[cell] = mark;
+            headOwners[cell] = id;
+        }
+    }
+
+    /**
+     * Sorts the ids of the living snakes into {@link #bandOrder} by the band of rows
+     * their new heads are in. Each band's size is counted and summed into where it
+     * ends, then the ids are placed backwards, which leaves every band's start behind.
+     * Heads off the board go in the first band.
+     */
+    private void sortByBand()
+    {
+        Arrays.fill( bandStarts, 0 );
+        for ( int id = 0; id < snakes.length; id++ )
+            if ( snakes[id] != null && snakes[id].isAlive() )
+                bandStarts[bandOf( nextHeads[id] )]++;
+        for ( int band = 1; band < bands; band++ )
+            bandStarts[band] += bandStarts[band - 1];
+        bandStarts[bands] = bandStarts[bands - 1];
+
+        for ( int id = snakes.length - 1; id >= 0; id-- )
+            if ( snakes[id] != null && snakes[id].isAlive() )
+                bandOrder[--bandStarts[bandOf( nextHeads[id] )]] = id;
+    }
+
+    private int bandOf( int cell ) { return cell < 0 ? 0 : (int)( (long)( cell / columns ) * bands / rows ); }
+
+    /**
+     * Returns the cell next to another in a direction.
+     *
+     * @return The index of the cell, or -1 if it is off the board.
+     */
+    private int neighbour( int cell, char direction )
+    {
+        int d = ArenaProtocol.directionCode( direction );
+        int x = cell % columns + DX[d];
+        int y = cell / columns + DY[d];
+        return x >= 0 && x < columns && y >= 0 && y < rows ? y * columns + x : -1;
+    }
+
+    /**
+     * Starts a new tick's head stamps, clearing them once the counter wraps.
+     */
+    private int nextStamp()
+    {
+        if ( ++stamp == 0 )
+        {
+            Arrays.fill( headStamps, 0 );
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    private void growTables( int capacity )
+    {
+        snakes = Arrays.copyOf( snakes, capacity );
+        nextHeads = Arrays.copyOf( nextHeads, capacity );
+        dying = Arrays.copyOf( dying, capacity );
+        tailKept = Arrays.copyOf( tailKept, capacity );
+        bandOrder = Arrays.copyOf( bandOrder, capacity );
+    }
+}
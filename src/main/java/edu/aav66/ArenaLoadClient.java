@@ -0,0 +1,207 @@
+package edu.aav66;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code ArenaLoadClient} class connects many headless players to an
+ * {@link ArenaServer} from one thread and reports how fast frames arrive. Each player
+ * turns at random now and then; frames are only split apart and counted, except for
+ * the first player's, which are applied to an {@link ArenaView} so a broken frame is
+ * noticed.
+ */
+public final class ArenaLoadClient
+{
+    // Chance in each tick that a player turns
+    private static final int TURN_ODDS = 8;
+
+    private final InetSocketAddress address;
+    private final int clients;
+    private final Random random;
+
+    /**
+     * The results of a load test.
+     */
+    public static final class Result
+    {
+        private final int clients;
+        private final double seconds;
+        private final long frames; // frames received by all players
+        private final long bytes;
+
+        Result( int clients, double seconds, long frames, long bytes )
+        {
+            this.clients = clients;
+            this.seconds = seconds;
+            this.frames = frames;
+            this.bytes = bytes;
+        }
+
+        public int getClients() { return clients; }
+
+        public long getFrames() { return frames; }
+
+        public long getBytes() { return bytes; }
+
+        /**
+         * Returns the rate each player received frames at, which is the rate the
+         * server ticked at as long as it kept up with every player.
+         *
+         * @return The frames received per second, averaged over the players.
+         */
+        public double getTicksPerSecond() { return frames / seconds / clients; }
+
+        public double getFramesPerSecond() { return frames / seconds; }
+
+        @Override public String toString()
+        {
+            return String.format( "%d players: %.1f ticks/s, %.0f frames/s, %.2f MB/s received", clients,
+                                  getTicksPerSecond(), getFramesPerSecond(), bytes / seconds / ( 1 << 20 ) );
+        }
+    }
+
+    /**
+     * A connected player and the bytes of the frame it is receiving.
+     */
+    private static final class Connection
+    {
+        final SocketChannel channel;
+        ByteBuffer inbound = ByteBuffer.allocate( 64 << 10 );
+        final ArenaView view; // only for the first player
+        long frames;
+
+        Connection( SocketChannel channel, ArenaView view )
+        {
+            this.channel = channel;
+            this.view = view;
+        }
+    }
+
+    /**
+     * Constructs a new {@code ArenaLoadClient}.
+     *
+     * @param address The address of the server.
+     * @param clients The number of players to connect.
+     * @param seed The seed the players' turns are picked with.
+     */
+    public ArenaLoadClient( InetSocketAddress address, int clients, long seed )
+    {
+        if ( clients < 1 )
+            throw new IllegalArgumentException( "At least one player is needed: " + clients );
+
+        this.address = address;
+        this.clients = clients;
+        this.random = new Random( seed );
+    }
+
+    /**
+     * Connects the players, plays for a while and disconnects them.
+     *
+     * @param millis How long to play for.
+     * @return The results.
+     * @throws IOException If a player cannot connect or receives a malformed frame.
+     */
+    public Result run( long millis ) throws IOException
+    {
+        Connection connections[] = new Connection[clients];
+        try ( Selector selector = Selector.open() )
+        {
+            for ( int i = 0; i < clients; i++ )
+            {
+                SocketChannel channel = SocketChannel.open( address );
+                channel.setOption( StandardSocketOptions.TCP_NODELAY, true );
+                channel.configureBlocking( false );
+                connections[i] = new Connection( channel, i == 0 ? new ArenaView() : null );
+                channel.register( selector, SelectionKey.OP_READ, connections[i] );
+            }
+
+            ByteBuffer turn = ByteBuffer.allocate( 1 );
+            long bytes = 0;
+            long start = System.nanoTime();
+            long end = start + TimeUnit.MILLISECONDS.toNanos( millis );
+            for ( long now = start; now < end; now = System.nanoTime() )
+            {
+                selector.select( Math.max( 1, TimeUnit.NANOSECONDS.toMillis( end - now ) ) );
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while ( keys.hasNext() )
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection)key.attachment();
+                    int read = connection.channel.read( connection.inbound );
+                    if ( read < 0 )
+                        throw new IOException( "Server closed the connection" );
+                    bytes += read;
+
+                    int ticks = readFrames( connection );
+                    for ( int i = 0; i < ticks; i++ )
+                    {
+                        if ( random.nextInt( TURN_ODDS ) != 0 )
+                            continue;
+                        turn.clear().put( (byte)random.nextInt( 4 ) ).flip();
+                        connection.channel.write( turn ); // Dropped if the socket is full
+                    }
+                }
+            }
+
+            double seconds = ( System.nanoTime() - start ) / 1e9;
+            long frames = 0;
+            for ( Connection connection : connections )
+                frames += connection.frames;
+            return new Result( clients, seconds, frames, bytes );
+        }
+        finally
+        {
+            for ( Connection connection : connections )
+                if ( connection != null )
+                    connection.channel.close();
+        }
+    }
+
+    /**
+     * Splits the complete frames off a player's inbound bytes.
+     *
+     * @return The number of tick frames received.
+     */
+    private static int readFrames( Connection connection ) throws IOException
+    {
+        ByteBuffer inbound = connection.inbound;
+        inbound.flip();
+        int ticks = 0;
+        while ( inbound.remaining() >= 4 )
+        {
+            int length = inbound.getInt( inbound.position() );
+            if ( length < 1 || length > ArenaProtocol.MAX_FRAME )
+                throw new IOException( "Invalid frame length " + length );
+            if ( inbound.remaining() < 4 + length )
+                break;
+
+            int start = inbound.position() + 4;
+            if ( inbound.get( start ) == ArenaProtocol.TICK )
+                ticks++;
+            if ( connection.view != null )
+                connection.view.apply( inbound.slice( start, length ) );
+            connection.frames++;
+            inbound.position( start + length );
+        }
+
+        // Keep the start of the next frame, making room for all of it if needed
+        if ( inbound.remaining() >= 4 && 4 + inbound.getInt( inbound.position() ) > inbound.capacity() )
+        {
+            ByteBuffer larger = ByteBuffer.allocate( 4 + inbound.getInt( inbound.position() ) );
+            larger.put( inbound );
+            connection.inbound = larger;
+        }
+        else
+            inbound.compact();
+        return ticks;
+    }
+}
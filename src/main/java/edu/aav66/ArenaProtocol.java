@@ -0,0 +1,115 @@
+package edu.aav66;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code ArenaProtocol} class defines the binary protocol spoken between an
+ * {@link ArenaServer} and its players over TCP.
+ *
+ * A player sends single bytes, each the code of a direction to turn to
+ * ({@code 0}-{@code 3} for up, down, left and right). The server sends frames, each a
+ * four-byte length followed by a type byte and a payload of variable-length integers:
+ *
+ * <ul>
+ * <li>{@link #WELCOME}, sent once when a player joins: the player's id, the board size,
+ * the tick, the apples and every snake, so the player starts with the full state.
+ * The other players learn of the new one when its snake spawns.</li>
+ * <li>{@link #TICK}, sent after every tick: the tick number, then only what changed,
+ * as a list of events. A snake that moved takes one byte for the direction of its new
+ * head and whether its tail was dropped, plus its id; apples eaten are implied by a
+ * head entering their cell.</li>
+ * </ul>
+ */
+public final class ArenaProtocol
+{
+    // Frame types
+    public static final byte WELCOME = 1;
+    public static final byte TICK = 2;
+
+    // Bytes before the payload of a frame: length, then type
+    static final int FRAME_HEADER = 5;
+
+    // Largest frame a player accepts
+    public static final int MAX_FRAME = 16 << 20;
+
+    // Events of a TICK frame; codes below MOVE_LIMIT are moves: direction | TAIL_KEPT
+    static final int MOVE_LIMIT = 8;
+    static final int TAIL_KEPT = 4;
+    static final int ALIVE = 4;      // in a WELCOME frame, with a snake's direction
+    static final int DIE = 8;
+    static final int SPAWN = 9;
+    static final int APPLE = 10;
+    static final int LEAVE = 11;
+
+    private ArenaProtocol() {}
+
+    /**
+     * Builds frames in a direct buffer that grows as needed and is reused between
+     * frames, so a frame can be written to any number of channels without being
+     * allocated or copied.
+     */
+    static final class Writer
+    {
+        private ByteBuffer buffer = ByteBuffer.allocateDirect( 1024 );
+
+        /**
+         * Starts a frame, leaving room for its length.
+         */
+        void begin( byte type )
+        {
+            buffer.clear();
+            buffer.putInt( 0 ).put( type );
+        }
+
+        void putByte( int value )
+        {
+            ensure( 1 );
+            buffer.put( (byte)value );
+        }
+
+        void putVarInt( long value )
+        {
+            ensure( VarInt.MAX_SIZE );
+            VarInt.putVarLong( buffer, value );
+        }
+
+        /**
+         * Finishes the frame.
+         *
+         * @return A read-only view of the frame, which is overwritten by the next frame
+         *         begun with this writer.
+         */
+        ByteBuffer finish()
+        {
+            buffer.putInt( 0, buffer.position() - 4 );
+            return buffer.asReadOnlyBuffer().flip();
+        }
+
+        private void ensure( int bytes )
+        {
+            if ( buffer.remaining() >= bytes )
+                return;
+
+            ByteBuffer larger = ByteBuffer.allocateDirect( Math.max( buffer.capacity() * 2, buffer.position() + bytes ) );
+            buffer.flip();
+            larger.put( buffer );
+            buffer = larger;
+        }
+    }
+
+    /**
+     * Returns the code a player sends to turn.
+     *
+     * @param direction The direction ('U', 'D', 'L' or 'R').
+     * @return The code, or -1 for an unknown direction.
+     */
+    public static int directionCode( char direction ) { return ArenaSnake.DIRECTIONS.indexOf( direction ); }
+
+    /**
+     * Returns the direction a code sent by a player stands for.
+     *
+     * @param code The code.
+     * @return The direction, or {@link InputBuffer#NONE} for an unknown code.
+     */
+    public static char directionOf( int code ) { return code >= 0 && code < 4 ? ArenaSnake.DIRECTIONS.charAt( code ) : InputBuffer.NONE; }
+}
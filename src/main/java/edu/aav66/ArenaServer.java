@@ -0,0 +1,374 @@
+package edu.aav66;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code ArenaServer} class runs an {@link Arena} authoritatively for players
+ * connected over TCP, speaking the {@link ArenaProtocol}. One thread does everything:
+ * a non-blocking {@link Selector} accepts players and reads their turns between ticks,
+ * the arena is ticked at a fixed rate, and each tick's frame is encoded once and
+ * written to every player from the same direct buffer.
+ *
+ * What a player's socket cannot take at once is copied to a direct buffer of that
+ * player's, kept and grown only as needed, and written as the socket drains. A
+ * player that falls more than {@link #MAX_QUEUED_BYTES} behind is disconnected, so
+ * one slow player cannot hold up the others or use up the memory.
+ * With a tick length of zero the server ticks as fast as its players can take the
+ * frames, ticking again only once every frame has been written, to measure how many
+ * players a core can serve.
+ */
+public final class ArenaServer implements Closeable
+{
+    // Bytes of frames a player may fall behind before being dropped
+    public static final int MAX_QUEUED_BYTES = 4 << 20;
+
+    private final Arena arena;
+    private final long tickNanos;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final List<Player> players = new ArrayList<>();
+    private int backlogged; // players with frames queued
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect( 256 );
+    private final LatencyHistogram tickTimes = new LatencyHistogram();
+    private volatile boolean running;
+    private volatile long bytesSent;
+    private Thread thread;
+
+    // Size of a player's first backlog buffer
+    private static final int INITIAL_BACKLOG_BYTES = 4096;
+
+    /**
+     * One connected player and the bytes of frames waiting to be written to it.
+     */
+    private static final class Player
+    {
+        final SocketChannel channel;
+        final int id;
+        ByteBuffer backlog; // bytes waiting, from the start; null until a frame is first held back
+
+        Player( SocketChannel channel, int id )
+        {
+            this.channel = channel;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Constructs a new {@code ArenaServer} listening on an address.
+     *
+     * @param arena The arena to run.
+     * @param tickMillis The length of a tick in milliseconds, or 0 to tick as fast as possible.
+     * @param address The address to listen on; port 0 picks a free port.
+     * @throws IOException If the server socket cannot be opened.
+     */
+    public ArenaServer( Arena arena, int tickMillis, InetSocketAddress address ) throws IOException
+    {
+        if ( tickMillis < 0 )
+            throw new IllegalArgumentException( "Tick length must not be negative: " + tickMillis );
+
+        this.arena = arena;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos( tickMillis );
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try
+        {
+            server.bind( address );
+            server.configureBlocking( false );
+            server.register( selector, SelectionKey.OP_ACCEPT );
+        }
+        catch ( IOException e )
+        {
+            server.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port.
+     * @throws IOException If the server socket has been closed.
+     */
+    public int getPort() throws IOException { return ( (InetSocketAddress)server.getLocalAddress() ).getPort(); }
+
+    /**
+     * Starts serving on a new thread.
+     */
+    public synchronized void start()
+    {
+        if ( thread != null )
+            return;
+
+        running = true;
+        thread = new Thread( this::run, "arena-server" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    /**
+     * Stops serving, disconnects every player and closes the server socket.
+     */
+    @Override public void close()
+    {
+        Thread serving;
+        synchronized ( this )
+        {
+            running = false;
+            serving = thread;
+            thread = null;
+        }
+        selector.wakeup();
+        if ( serving != null && serving != Thread.currentThread() )
+        {
+            try
+            {
+                serving.join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for ( Player player : players )
+            closeQuietly( player.channel );
+        players.clear();
+        closeQuietly( server );
+        closeQuietly( selector );
+    }
+
+    /**
+     * Returns the times the arena took to tick.
+     *
+     * @return The histogram of tick times in nanoseconds, written by the server thread.
+     */
+    public LatencyHistogram getTickTimes() { return tickTimes; }
+
+    public long getBytesSent() { return bytesSent; }
+
+    /**
+     * Accepts players, reads their turns and ticks the arena until closed.
+     */
+    private void run()
+    {
+        long nextTick = System.nanoTime() + tickNanos;
+        try
+        {
+            while ( running )
+            {
+                long wait = nextTick - System.nanoTime();
+                if ( wait > 0 || ( tickNanos == 0 && backlogged > 0 ) )
+                    selector.select( Math.max( 1, TimeUnit.NANOSECONDS.toMillis( wait ) ) ); // Or until sockets drain
+                else
+                    selector.selectNow();
+                handleKeys();
+
+                long now = System.nanoTime();
+                if ( now - nextTick >= 0 && ( tickNanos > 0 || backlogged == 0 ) )
+                {
+                    tick( now );
+                    nextTick += tickNanos;
+                    if ( now - nextTick > tickNanos )
+                        nextTick = now; // Too far behind to catch up; drop the backlog
+                }
+            }
+        }
+        catch ( IOException | ClosedSelectorException e )
+        {
+            if ( running )
+                System.err.println( "Arena server stopped: " + e.getMessage() );
+        }
+    }
+
+    private void handleKeys() throws IOException
+    {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while ( keys.hasNext() )
+        {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if ( !key.isValid() )
+                continue;
+
+            if ( key.isAcceptable() )
+                accept();
+            else
+            {
+                Player player = (Player)key.attachment();
+                if ( key.isReadable() )
+                    read( player, key );
+                if ( key.isValid() && key.isWritable() )
+                    flush( player, key );
+            }
+        }
+    }
+
+    private void accept() throws IOException
+    {
+        SocketChannel channel;
+        while ( ( channel = server.accept() ) != null )
+        {
+            channel.configureBlocking( false );
+            channel.setOption( StandardSocketOptions.TCP_NODELAY, true );
+            Player player = new Player( channel, arena.addPlayer() );
+            SelectionKey key = channel.register( selector, SelectionKey.OP_READ, player );
+            players.add( player );
+            send( player, key, arena.welcome( player.id ) );
+        }
+    }
+
+    /**
+     * Reads a player's turns, one byte each, and queues them in the arena.
+     */
+    private void read( Player player, SelectionKey key )
+    {
+        try
+        {
+            int read;
+            while ( ( read = player.channel.read( readBuffer.clear() ) ) > 0 )
+            {
+                readBuffer.flip();
+                while ( readBuffer.hasRemaining() )
+                {
+                    char direction = ArenaProtocol.directionOf( readBuffer.get() );
+                    if ( direction != InputBuffer.NONE )
+                        arena.steer( player.id, direction );
+                }
+            }
+            if ( read < 0 )
+                disconnect( player, key );
+        }
+        catch ( IOException e )
+        {
+            disconnect( player, key );
+        }
+    }
+
+    /**
+     * Ticks the arena and sends the frame to every player.
+     */
+    private void tick( long start )
+    {
+        ByteBuffer frame = arena.tick();
+        tickTimes.record( System.nanoTime() - start );
+
+        for ( int i = players.size() - 1; i >= 0; i-- )
+        {
+            Player player = players.get( i );
+            send( player, player.channel.keyFor( selector ), frame.duplicate() );
+        }
+    }
+
+    /**
+     * Writes a frame to a player, copying what the socket does not take to the
+     * player's backlog.
+     */
+    private void send( Player player, SelectionKey key, ByteBuffer frame )
+    {
+        if ( key == null || !key.isValid() )
+            return;
+
+        boolean caughtUp = queuedBytes( player ) == 0;
+        if ( caughtUp )
+        {
+            try
+            {
+                bytesSent += player.channel.write( frame );
+            }
+            catch ( IOException e )
+            {
+                disconnect( player, key );
+                return;
+            }
+            if ( !frame.hasRemaining() )
+                return;
+        }
+
+        if ( queuedBytes( player ) + frame.remaining() > MAX_QUEUED_BYTES )
+        {
+            disconnect( player, key );
+            return;
+        }
+
+        if ( player.backlog == null || player.backlog.remaining() < frame.remaining() )
+        {
+            int needed = queuedBytes( player ) + frame.remaining();
+            ByteBuffer larger = ByteBuffer.allocateDirect( Math.max( needed, player.backlog == null ? INITIAL_BACKLOG_BYTES
+                                                                                                     : player.backlog.capacity() * 2 ) );
+            if ( player.backlog != null )
+                larger.put( player.backlog.flip() );
+            player.backlog = larger;
+        }
+        player.backlog.put( frame );
+        if ( caughtUp )
+        {
+            backlogged++;
+            key.interestOps( SelectionKey.OP_READ | SelectionKey.OP_WRITE );
+        }
+    }
+
+    private static int queuedBytes( Player player ) { return player.backlog == null ? 0 : player.backlog.position(); }
+
+    /**
+     * Writes a player's backlog to its socket once the socket has drained.
+     */
+    private void flush( Player player, SelectionKey key )
+    {
+        try
+        {
+            ByteBuffer backlog = player.backlog.flip();
+            bytesSent += player.channel.write( backlog );
+            backlog.compact();
+            if ( backlog.position() > 0 )
+                return;
+
+            backlogged--;
+            key.interestOps( SelectionKey.OP_READ );
+        }
+        catch ( IOException e )
+        {
+            disconnect( player, key );
+        }
+    }
+
+    private void disconnect( Player player, SelectionKey key )
+    {
+        key.cancel();
+        closeQuietly( player.channel );
+        if ( !players.remove( player ) )
+            return;
+
+        arena.removePlayer( player.id );
+        if ( queuedBytes( player ) > 0 )
+        {
+            player.backlog.clear();
+            backlogged--;
+        }
+    }
+
+    private static void closeQuietly( Closeable closeable )
+    {
+        try
+        {
+            closeable.close();
+        }
+        catch ( IOException e )
+        {
+            // Nothing more to do
+        }
+    }
+}
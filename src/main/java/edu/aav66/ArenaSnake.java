@@ -0,0 +1,179 @@
+package edu.aav66;
+
+import java.util.Arrays;
+
+/**
+ * The {@code ArenaSnake} class is one player's snake in an {@link Arena}: a ring of
+ * board cell indices from tail to head that grows as the snake does, plus the
+ * direction it is moving in and the turns queued for the next ticks.
+ *
+ * Unlike {@link SnakeBody}, which is sized for a snake that fills the board, the ring
+ * starts small and doubles when full, since an arena holds many snakes that each
+ * cover a small part of a large board. The same class holds the copies of the snakes
+ * kept by {@link ArenaView} on the client side.
+ */
+public final class ArenaSnake
+{
+    // Directions in the order of their codes
+    static final String DIRECTIONS = "UDLR";
+
+    // Turns that can be queued ahead of the ticks that apply them
+    private static final int MAX_QUEUED = 3;
+
+    private final int id;
+    private int cells[] = new int[8]; // ring of cell indices, capacity a power of two
+    private int head = -1;            // index of the head in the ring
+    private int size;
+    private char direction = 'R';
+    private boolean alive;
+    private int score;
+
+    // Owned by the arena
+    private int growth;               // ticks left in which the tail stays put
+    private long respawnTick;
+    private final char queued[] = new char[MAX_QUEUED];
+    private int queuedCount;
+
+    ArenaSnake( int id ) { this.id = id; }
+
+    public int getId() { return id; }
+
+    public int size() { return size; }
+
+    public boolean isAlive() { return alive; }
+
+    public char getDirection() { return direction; }
+
+    public int getScore() { return score; }
+
+    /**
+     * Returns the cell a segment covers.
+     *
+     * @param i The segment number, where {@code 0} is the head.
+     * @return The index of the cell.
+     */
+    public int getCell( int i )
+    {
+        if ( i < 0 || i >= size )
+            throw new IndexOutOfBoundsException( "Segment " + i + " out of bounds for length " + size );
+        return cells[( head - i ) & ( cells.length - 1 )];
+    }
+
+    public int getHeadCell() { return getCell( 0 ); }
+
+    public int getTailCell() { return getCell( size - 1 ); }
+
+    /**
+     * Adds a new head, doubling the ring if it is full.
+     */
+    void addHead( int cell )
+    {
+        if ( size == cells.length )
+        {
+            // Unroll the ring so the tail is at 0, then double it
+            int unrolled[] = new int[cells.length * 2];
+            for ( int i = 0; i < size; i++ )
+                unrolled[i] = getCell( size - 1 - i );
+            cells = unrolled;
+            head = size - 1;
+        }
+        head = ( head + 1 ) & ( cells.length - 1 );
+        cells[head] = cell;
+        size++;
+    }
+
+    /**
+     * Removes the tail.
+     *
+     * @return The cell the tail covered.
+     */
+    int removeTail()
+    {
+        int tail = getTailCell();
+        size--;
+        return tail;
+    }
+
+    /**
+     * Puts the snake on the board as a single segment, alive.
+     */
+    void spawn( int cell, char direction, int growth )
+    {
+        head = -1;
+        size = 0;
+        addHead( cell );
+        this.direction = direction;
+        this.growth = growth;
+        alive = true;
+        queuedCount = 0;
+    }
+
+    /**
+     * Takes the snake off the board.
+     */
+    void kill( long respawnTick )
+    {
+        size = 0;
+        alive = false;
+        this.respawnTick = respawnTick;
+        queuedCount = 0;
+    }
+
+    /**
+     * Queues a turn, validated against the last turn queued. Turns beyond the queue's
+     * capacity, repeats and reversals are dropped.
+     */
+    void steer( char turn )
+    {
+        char last = queuedCount == 0 ? direction : queued[queuedCount - 1];
+        if ( queuedCount < MAX_QUEUED && turn != last && SnakeEngine.isValidTurn( last, turn ) )
+            queued[queuedCount++] = turn;
+    }
+
+    /**
+     * Turns to the oldest queued direction, if any.
+     */
+    void applyTurn()
+    {
+        if ( queuedCount == 0 )
+            return;
+
+        direction = queued[0];
+        queuedCount--;
+        System.arraycopy( queued, 1, queued, 0, queuedCount );
+    }
+
+    /**
+     * Returns whether the tail stays put this tick, using up one tick of growth.
+     */
+    boolean grow()
+    {
+        if ( growth == 0 )
+            return false;
+        growth--;
+        return true;
+    }
+
+    void feed()
+    {
+        growth++;
+        score++;
+    }
+
+    void setDirection( char direction ) { this.direction = direction; }
+
+    void setAlive( boolean alive ) { this.alive = alive; }
+
+    long getRespawnTick() { return respawnTick; }
+
+    /**
+     * Forgets every segment, for {@link ArenaView}.
+     */
+    void clear()
+    {
+        head = -1;
+        size = 0;
+        Arrays.fill( queued, (char)0 );
+        queuedCount = 0;
+    }
+}
@@ -0,0 +1,199 @@
+package edu.aav66;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The {@code ArenaView} class is a player's copy of an {@link Arena}, kept up to date
+ * by applying the frames the {@link ArenaServer} sends. It follows the server's
+ * decisions without checking any rules itself: snakes move, grow, die and spawn as the
+ * frames say, and an apple is eaten when a head enters its cell.
+ */
+public final class ArenaView
+{
+    private static final int DX[] = { 0, 0, -1, 1 };
+    private static final int DY[] = { -1, 1, 0, 0 };
+
+    private int playerId = -1;
+    private int columns;
+    private int rows;
+    private long tick;
+    private OccupancyGrid apples;
+    private ArenaSnake snakes[] = new ArenaSnake[0];
+
+    /**
+     * Applies a frame.
+     *
+     * @param frame The frame from its type byte on, positioned at the type byte and
+     *              limited to the end of the frame.
+     * @throws IOException If the frame is malformed or does not fit the view.
+     */
+    public void apply( ByteBuffer frame ) throws IOException
+    {
+        try
+        {
+            byte type = frame.get();
+            if ( type == ArenaProtocol.WELCOME )
+                applyWelcome( frame );
+            else if ( type == ArenaProtocol.TICK )
+                applyTick( frame );
+            else
+                throw new IOException( "Unknown frame type " + type );
+        }
+        catch ( BufferUnderflowException | IndexOutOfBoundsException e )
+        {
+            throw new IOException( "Malformed frame", e );
+        }
+    }
+
+    private void applyWelcome( ByteBuffer frame ) throws IOException
+    {
+        playerId = (int)VarInt.getVarLong( frame );
+        columns = (int)VarInt.getVarLong( frame );
+        rows = (int)VarInt.getVarLong( frame );
+        if ( columns < 1 || rows < 1 || columns > GameConfig.MAX_DIMENSION || rows > GameConfig.MAX_DIMENSION )
+            throw new IOException( "Invalid board size " + columns + "x" + rows );
+        tick = VarInt.getVarLong( frame );
+
+        apples = new OccupancyGrid( columns * rows );
+        for ( long count = VarInt.getVarLong( frame ); count > 0; count-- )
+            apples.set( cell( frame ) );
+
+        snakes = new ArenaSnake[0];
+        for ( long count = VarInt.getVarLong( frame ); count > 0; count-- )
+        {
+            ArenaSnake snake = snakeFor( (int)VarInt.getVarLong( frame ) );
+            int flags = frame.get();
+            int score = (int)VarInt.getVarLong( frame );
+            for ( int i = 0; i < score; i++ )
+                snake.feed();
+
+            int length = (int)VarInt.getVarLong( frame );
+            int cells[] = new int[length];
+            for ( int i = 0; i < length; i++ )
+                cells[i] = cell( frame );
+            for ( int i = length - 1; i >= 0; i-- )
+                snake.addHead( cells[i] );
+            snake.setDirection( ArenaProtocol.directionOf( flags & 3 ) );
+            snake.setAlive( ( flags & ArenaProtocol.ALIVE ) != 0 );
+        }
+    }
+
+    private void applyTick( ByteBuffer frame ) throws IOException
+    {
+        if ( apples == null )
+            throw new IOException( "Tick before welcome" );
+
+        tick = VarInt.getVarLong( frame );
+        while ( frame.hasRemaining() )
+        {
+            int event = frame.get();
+            int id = event == ArenaProtocol.APPLE ? -1 : (int)VarInt.getVarLong( frame );
+            if ( event >= 0 && event < ArenaProtocol.MOVE_LIMIT )
+            {
+                ArenaSnake snake = existing( id );
+                int direction = event & 3;
+                int head = snake.getHeadCell();
+                int x = head % columns + DX[direction];
+                int y = head / columns + DY[direction];
+                if ( x < 0 || x >= columns || y < 0 || y >= rows )
+                    throw new IOException( "Snake " + id + " moved off the board" );
+
+                if ( ( event & ArenaProtocol.TAIL_KEPT ) == 0 )
+                    snake.removeTail();
+                int cell = y * columns + x;
+                snake.addHead( cell );
+                snake.setDirection( ArenaProtocol.directionOf( direction ) );
+                if ( apples.isOccupied( cell ) )
+                {
+                    apples.clear( cell );
+                    snake.feed();
+                }
+            }
+            else if ( event == ArenaProtocol.DIE )
+            {
+                ArenaSnake snake = existing( id );
+                snake.clear();
+                snake.setAlive( false );
+            }
+            else if ( event == ArenaProtocol.SPAWN )
+            {
+                int cell = cell( frame );
+                char direction = ArenaProtocol.directionOf( frame.get() & 3 );
+                snakeFor( id ).spawn( cell, direction, 0 );
+            }
+            else if ( event == ArenaProtocol.APPLE )
+                apples.set( cell( frame ) );
+            else if ( event == ArenaProtocol.LEAVE )
+            {
+                if ( id < snakes.length )
+                    snakes[id] = null;
+            }
+            else
+                throw new IOException( "Unknown event " + event );
+        }
+    }
+
+    private int cell( ByteBuffer frame ) throws IOException
+    {
+        long cell = VarInt.getVarLong( frame );
+        if ( cell >= (long)columns * rows )
+            throw new IOException( "Cell " + cell + " is off the board" );
+        return (int)cell;
+    }
+
+    private ArenaSnake existing( int id ) throws IOException
+    {
+        ArenaSnake snake = getSnake( id );
+        if ( snake == null || !snake.isAlive() )
+            throw new IOException( "Event for unknown snake " + id );
+        return snake;
+    }
+
+    /**
+     * Returns the snake with an id, replacing any earlier snake with a new one.
+     */
+    private ArenaSnake snakeFor( int id ) throws IOException
+    {
+        if ( id < 0 || id > 1 << 24 )
+            throw new IOException( "Invalid snake id " + id );
+        if ( id >= snakes.length )
+            snakes = Arrays.copyOf( snakes, Math.max( id + 1, snakes.length * 2 ) );
+
+        ArenaSnake snake = snakes[id];
+        if ( snake == null )
+            snakes[id] = snake = new ArenaSnake( id );
+        return snake;
+    }
+
+    /**
+     * Returns the id of the player's own snake.
+     *
+     * @return The id, or -1 before the welcome frame.
+     */
+    public int getPlayerId() { return playerId; }
+
+    public int getColumns() { return columns; }
+
+    public int getRows() { return rows; }
+
+    public long getTick() { return tick; }
+
+    /**
+     * Returns a snake.
+     *
+     * @param id The id of the snake.
+     * @return The snake, or {@code null} if there is no snake with the id.
+     */
+    public ArenaSnake getSnake( int id ) { return id >= 0 && id < snakes.length ? snakes[id] : null; }
+
+    /**
+     * Returns whether an apple lies in a cell.
+     *
+     * @param cell The index of the cell.
+     * @return {@code true} if the cell holds an apple.
+     */
+    public boolean isApple( int cell ) { return apples != null && apples.isOccupied( cell ); }
+}
@@ -0,0 +1,128 @@
+package edu.aav66;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.ImageIO;
+
+/**
+ * The {@code AssetManager} class loads the game's images and sounds from the
+ * classpath, so they are found in the assembled jar as well as in
+ * {@code target/classes}. Images are decoded in the background, each on its own task,
+ * and cached once decoded; the game shows its first frame without waiting and picks
+ * them up as they arrive. How long each image took to decode is kept for the startup
+ * report.
+ */
+public final class AssetManager
+{
+    public static final String APPLE_SPRITE = "appleSprite.png";
+    public static final String MUSIC = "DRIVE(chosic.com).mp3";
+
+    static
+    {
+        // Decode straight from memory rather than through a temporary file
+        ImageIO.setUseCache( false );
+    }
+
+    private final Executor executor;
+    private final Map<String, CompletableFuture<BufferedImage>> images = new ConcurrentHashMap<>();
+    private final Map<String, Long> decodeNanos = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code AssetManager} that decodes on the common
+     * {@link ForkJoinPool}.
+     */
+    public AssetManager() { this( ForkJoinPool.commonPool() ); }
+
+    /**
+     * Constructs a new {@code AssetManager}.
+     *
+     * @param executor Where images are decoded.
+     */
+    public AssetManager( Executor executor ) { this.executor = executor; }
+
+    /**
+     * Returns where an asset is on the classpath.
+     *
+     * @param name The name of the asset, relative to the root of the classpath.
+     * @return The asset's URL, or {@code null} if there is no such asset.
+     */
+    public static URL getUrl( String name ) { return AssetManager.class.getResource( "/" + name ); }
+
+    /**
+     * Starts decoding images in the background, unless they are already loading.
+     *
+     * @param names The names of the images.
+     */
+    public void preload( String... names )
+    {
+        for ( String name : names )
+            loadImage( name );
+    }
+
+    /**
+     * Returns an image, decoding it in the background the first time it is asked for.
+     *
+     * @param name The name of the image.
+     * @return A future completed with the image, or with {@code null} if it cannot be loaded.
+     */
+    public CompletableFuture<BufferedImage> loadImage( String name )
+    {
+        return images.computeIfAbsent( name, key -> CompletableFuture.supplyAsync( () -> decode( key ), executor ) );
+    }
+
+    /**
+     * Returns an image, waiting for it to be decoded if needed.
+     *
+     * @param name The name of the image.
+     * @return The image, or {@code null} if it cannot be loaded.
+     */
+    public BufferedImage getImage( String name ) { return loadImage( name ).join(); }
+
+    /**
+     * Returns an image if it has been decoded, without waiting. Starts decoding it if
+     * it has not been asked for yet.
+     *
+     * @param name The name of the image.
+     * @return The image, or {@code null} if it is not ready or cannot be loaded.
+     */
+    public BufferedImage getImageIfLoaded( String name ) { return loadImage( name ).getNow( null ); }
+
+    /**
+     * Returns how long an image took to decode.
+     *
+     * @param name The name of the image.
+     * @return The time in nanoseconds, or -1 if it has not been decoded.
+     */
+    public long getDecodeNanos( String name ) { return decodeNanos.getOrDefault( name, -1L ); }
+
+    private BufferedImage decode( String name )
+    {
+        long start = System.nanoTime();
+        URL url = getUrl( name );
+        if ( url == null )
+        {
+            System.err.println( "Missing asset " + name );
+            return null;
+        }
+
+        try
+        {
+            BufferedImage image = ImageIO.read( url );
+            if ( image == null )
+                System.err.println( "Unable to decode " + name );
+            decodeNanos.put( name, System.nanoTime() - start );
+            return image;
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "Unable to load " + name + ": " + e.getMessage() );
+            return null;
+        }
+    }
+}
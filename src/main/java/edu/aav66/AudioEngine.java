@@ -0,0 +1,452 @@
+package edu.aav66;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BooleanSupplier;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderException;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+
+/**
+ * The {@code AudioEngine} class plays looping background music with short sound
+ * effects mixed on top. The music is decoded from MP3 once into a PCM buffer, and a
+ * single mixer thread feeds one {@link SourceDataLine} for as long as the engine runs,
+ * wrapping around the buffer so the loop has no gap. Effects are queued from any
+ * thread and mixed into the next small chunk written to the line, which keeps their
+ * latency to a few tens of milliseconds.
+ */
+public final class AudioEngine
+{
+    /**
+     * A short synthesized tone sweeping from one frequency to another.
+     */
+    public static final class Effect
+    {
+        private final double startHz;
+        private final double endHz;
+        private final int millis;
+        private final double volume;
+
+        // Rendered the first time it is played; effects are shared by every engine
+        private volatile Rendered rendered;
+
+        /**
+         * Constructs a new {@code Effect}.
+         *
+         * @param startHz The frequency the tone starts at.
+         * @param endHz The frequency the tone ends at.
+         * @param millis The length of the tone in milliseconds.
+         * @param volume The volume of the tone, from 0 to 1.
+         */
+        public Effect( double startHz, double endHz, int millis, double volume )
+        {
+            this.startHz = startHz;
+            this.endHz = endHz;
+            this.millis = millis;
+            this.volume = volume;
+        }
+
+        /**
+         * Returns the tone as interleaved PCM samples, rendering it on first use.
+         *
+         * @param format The format of the line the tone is played on.
+         * @return The samples.
+         */
+        private short[] render( AudioFormat format )
+        {
+            Rendered cached = rendered;
+            if ( cached != null && cached.rate == format.getSampleRate() && cached.channels == format.getChannels() )
+                return cached.samples;
+
+            int channels = format.getChannels();
+            int frames = (int)( format.getSampleRate() * millis / 1000 );
+            short samples[] = new short[frames * channels];
+            double phase = 0;
+            for ( int i = 0; i < frames; i++ )
+            {
+                double t = (double)i / frames;
+                phase += 2 * Math.PI * ( startHz + ( endHz - startHz ) * t ) / format.getSampleRate();
+                double envelope = Math.min( 1.0, Math.min( t * 20, ( 1 - t ) * 5 ) ); // Soft attack and release
+                short value = (short)( Math.sin( phase ) * envelope * volume * Short.MAX_VALUE );
+                Arrays.fill( samples, i * channels, ( i + 1 ) * channels, value );
+            }
+
+            rendered = new Rendered( samples, format.getSampleRate(), channels );
+            return samples;
+        }
+
+        /**
+         * The samples of a tone and the format they were rendered for, published
+         * together so a thread never sees samples paired with another format.
+         */
+        private static final class Rendered
+        {
+            final short samples[];
+            final float rate;
+            final int channels;
+
+            Rendered( short samples[], float rate, int channels )
+            {
+                this.samples = samples;
+                this.rate = rate;
+                this.channels = channels;
+            }
+        }
+    }
+
+    /**
+     * Mixes the looping music and the effects playing over it into chunks of
+     * little-endian 16-bit samples, clamping where they add up past the range of a
+     * sample. Used by one thread at a time.
+     */
+    public static final class Mixer
+    {
+        private final short music[];
+        private final AudioFormat format;
+        private int musicPosition;
+        private final short voices[][] = new short[MAX_VOICES][];
+        private final int voicePositions[] = new int[MAX_VOICES];
+        private int mix[] = new int[0];
+
+        /**
+         * Constructs a new {@code Mixer}.
+         *
+         * @param music The interleaved samples to loop, or {@code null} for silence.
+         * @param format The format of the samples, and of the line they are played on.
+         */
+        public Mixer( short music[], AudioFormat format )
+        {
+            this.music = music == null || music.length == 0 ? null : music;
+            this.format = format;
+        }
+
+        public AudioFormat getFormat() { return format; }
+
+        /**
+         * Starts an effect from its first sample in the next chunk.
+         *
+         * @param effect The effect to play.
+         * @return {@code false} if every voice is busy and the effect is dropped.
+         */
+        public boolean play( Effect effect )
+        {
+            for ( int v = 0; v < MAX_VOICES; v++ )
+            {
+                if ( voices[v] == null )
+                {
+                    voices[v] = effect.render( format );
+                    voicePositions[v] = 0;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Mixes the next chunk.
+         *
+         * @param bytes Where the chunk is written; its length sets the chunk size and
+         *              must be a whole number of samples.
+         */
+        public void mix( byte bytes[] )
+        {
+            int samples = bytes.length / 2;
+            if ( mix.length != samples )
+                mix = new int[samples];
+
+            // Music, wrapping around the end of the buffer for a seamless loop
+            if ( music != null )
+            {
+                for ( int i = 0; i < samples; i++ )
+                {
+                    mix[i] = music[musicPosition];
+                    if ( ++musicPosition == music.length )
+                        musicPosition = 0;
+                }
+            }
+            else
+            {
+                Arrays.fill( mix, 0 );
+            }
+
+            for ( int v = 0; v < MAX_VOICES; v++ )
+            {
+                short voice[] = voices[v];
+                if ( voice == null )
+                    continue;
+
+                int position = voicePositions[v];
+                int count = Math.min( samples, voice.length - position );
+                for ( int i = 0; i < count; i++ )
+                    mix[i] += voice[position + i];
+
+                voicePositions[v] = position + count;
+                if ( voicePositions[v] == voice.length )
+                    voices[v] = null;
+            }
+
+            for ( int i = 0; i < samples; i++ )
+            {
+                int sample = Math.max( Short.MIN_VALUE, Math.min( Short.MAX_VALUE, mix[i] ) );
+                bytes[2 * i] = (byte)sample;
+                bytes[2 * i + 1] = (byte)( sample >> 8 );
+            }
+        }
+    }
+
+    // Sound effects played by the game
+    public static final Effect EAT = new Effect( 660, 990, 80, 0.35 );
+    public static final Effect GAME_OVER = new Effect( 440, 110, 600, 0.45 );
+
+    // Frames mixed and written per chunk; the line buffers a few chunks
+    private static final int CHUNK_FRAMES = 512;
+    private static final int LINE_CHUNKS = 4;
+
+    // Most effects played at the same time
+    private static final int MAX_VOICES = 8;
+
+    // Format used when there is no music to take it from
+    private static final AudioFormat DEFAULT_FORMAT = new AudioFormat( 44100, 16, 2, true, false );
+
+    private final URL musicUrl;
+    private final ConcurrentLinkedQueue<Effect> pendingEffects = new ConcurrentLinkedQueue<>();
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Constructs a new {@code AudioEngine}.
+     *
+     * @param musicPath The MP3 file to loop as background music, or {@code null} for none.
+     */
+    public AudioEngine( String musicPath ) { this( musicPath == null ? null : toUrl( musicPath ) ); }
+
+    private AudioEngine( URL music ) { this.musicUrl = music; }
+
+    /**
+     * Returns a new {@code AudioEngine} playing music from a URL, such as a resource
+     * on the classpath.
+     *
+     * @param music The MP3 to loop as background music, or {@code null} for none.
+     * @return The engine, not yet started.
+     */
+    public static AudioEngine fromUrl( URL music ) { return new AudioEngine( music ); }
+
+    private static URL toUrl( String path )
+    {
+        try
+        {
+            return Path.of( path ).toUri().toURL();
+        }
+        catch ( MalformedURLException e )
+        {
+            throw new IllegalArgumentException( "Invalid music path " + path, e );
+        }
+    }
+
+    /**
+     * Starts the mixer thread, which decodes the music and then plays it until
+     * {@link #close()} is called. If no audio line is available the engine stays silent.
+     */
+    public synchronized void start()
+    {
+        if ( running )
+            return;
+
+        running = true;
+        thread = new Thread( this::run, "audio-mixer" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    /**
+     * Queues a sound effect to be mixed over the music. Does nothing if the engine
+     * is not running.
+     *
+     * @param effect The effect to play.
+     */
+    public void play( Effect effect )
+    {
+        if ( running )
+            pendingEffects.offer( effect );
+    }
+
+    /**
+     * Stops playback, closes the audio line and waits for the mixer thread to finish.
+     */
+    public synchronized void close()
+    {
+        running = false;
+        if ( thread != null )
+        {
+            try
+            {
+                thread.join( 1000 );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        pendingEffects.clear();
+    }
+
+    public boolean isRunning() { return running; }
+
+    /**
+     * Decodes the music, opens the line and mixes chunks into it until stopped.
+     */
+    private void run()
+    {
+        AudioFormat format = DEFAULT_FORMAT;
+        short music[] = null;
+        if ( musicUrl != null )
+        {
+            try ( InputStream in = new BufferedInputStream( musicUrl.openStream() ) )
+            {
+                Decoded decoded = decode( in, () -> running ); // Closing the engine stops a long decode
+                music = decoded.getSamples();
+                format = decoded.getFormat();
+            }
+            catch ( IOException e )
+            {
+                System.err.println( "Problem playing " + musicUrl + ": " + e.getMessage() );
+            }
+        }
+
+        if ( !running )
+            return;
+
+        SourceDataLine line;
+        try
+        {
+            line = AudioSystem.getSourceDataLine( format );
+            line.open( format, CHUNK_FRAMES * LINE_CHUNKS * format.getFrameSize() );
+        }
+        catch ( LineUnavailableException | IllegalArgumentException e )
+        {
+            System.err.println( "No audio line available: " + e.getMessage() );
+            running = false;
+            return;
+        }
+
+        Mixer mixer = new Mixer( music, format );
+        byte bytes[] = new byte[CHUNK_FRAMES * format.getChannels() * 2];
+
+        line.start();
+        try
+        {
+            while ( running )
+            {
+                Effect effect;
+                while ( ( effect = pendingEffects.poll() ) != null )
+                    mixer.play( effect );
+
+                mixer.mix( bytes );
+                line.write( bytes, 0, bytes.length ); // Blocks while the line is full
+            }
+        }
+        finally
+        {
+            line.stop();
+            line.flush();
+            line.close();
+        }
+    }
+
+    /**
+     * PCM samples decoded from an MP3 stream and their format.
+     */
+    public static final class Decoded
+    {
+        private final short samples[];
+        private final AudioFormat format;
+
+        Decoded( short samples[], AudioFormat format )
+        {
+            this.samples = samples;
+            this.format = format;
+        }
+
+        /**
+         * Returns the decoded samples.
+         *
+         * @return The samples, interleaved by channel.
+         */
+        public short[] getSamples() { return samples; }
+
+        public AudioFormat getFormat() { return format; }
+    }
+
+    /**
+     * Decodes an MP3 stream into interleaved 16-bit PCM samples.
+     *
+     * @param in The MP3 stream.
+     * @return The decoded samples and their format.
+     * @throws IOException If the stream cannot be read or a frame cannot be decoded.
+     */
+    public static Decoded decode( InputStream in ) throws IOException { return decode( in, () -> true ); }
+
+    /**
+     * Decodes an MP3 stream into interleaved 16-bit PCM samples, stopping early if
+     * asked to.
+     *
+     * @param in The MP3 stream.
+     * @param keepGoing Checked before each frame; decoding stops once it is {@code false}.
+     * @return The samples decoded so far and their format.
+     * @throws IOException If the stream cannot be read or a frame cannot be decoded.
+     */
+    private static Decoded decode( InputStream in, BooleanSupplier keepGoing ) throws IOException
+    {
+        Bitstream bitstream = new Bitstream( in );
+        Decoder decoder = new Decoder();
+        short samples[] = new short[1 << 16];
+        int length = 0;
+
+        try
+        {
+            Header header;
+            while ( keepGoing.getAsBoolean() && ( header = bitstream.readFrame() ) != null )
+            {
+                SampleBuffer output = (SampleBuffer)decoder.decodeFrame( header, bitstream );
+                int count = output.getBufferLength();
+                if ( length + count > samples.length )
+                    samples = Arrays.copyOf( samples, Math.max( samples.length * 2, length + count ) );
+                System.arraycopy( output.getBuffer(), 0, samples, length, count );
+                length += count;
+                bitstream.closeFrame();
+            }
+        }
+        catch ( BitstreamException | DecoderException e )
+        {
+            throw new IOException( "Invalid MP3 stream: " + e.getMessage(), e );
+        }
+        finally
+        {
+            try
+            {
+                bitstream.close();
+            }
+            catch ( BitstreamException e )
+            {
+                // Nothing was left to read
+            }
+        }
+
+        AudioFormat format = new AudioFormat( decoder.getOutputFrequency(), 16, decoder.getOutputChannels(), true, false );
+        return new Decoded( Arrays.copyOf( samples, length ), format );
+    }
+}
@@ -0,0 +1,434 @@
+package edu.aav66;
+
+import java.util.Arrays;
+
+/**
+ * The {@code AutopilotController} class steers the snake along a shortest path to the
+ * apple, found with an A* search guided by the Manhattan distance. Every step costs
+ * one, so a step either keeps a cell's estimate of the whole path or raises it by
+ * two, and the open list is just two stacks: cells with the estimate being expanded,
+ * taken newest first so the search heads straight for the target, and cells for the
+ * next estimate. On an open board only the cells between the head and the apple are
+ * expanded.
+ *
+ * A path to the apple is only taken if the snake could still reach its own tail once
+ * it has eaten, since a snake that can follow its tail can never be trapped. This is
+ * checked without copying the board: the cells of the path, which become body, and
+ * the cells the tail leaves while the path is followed, which become free, are
+ * marked in an overlay on the engine's occupancy, so the check costs time in
+ * proportion to the path rather than the board. If the path is unsafe the snake
+ * chases its tail. If the tail cannot be reached either, the body has closed the head
+ * off, and the snake looks for moves that keep it alive until part of that wall has
+ * moved on; only when there are none does it move to the neighbouring cell with the
+ * most room around it.
+ *
+ * Every search works on primitive arrays sized to the board once and reused: the open
+ * stacks, the cost and parent of each cell reached, and visit stamps per cell that are
+ * compared against a counter bumped per search, so no array has to be cleared and no
+ * object is created per tick.
+ */
+public final class AutopilotController implements SnakeController
+{
+    private static final String DIRECTIONS = "UDLR";
+    private static final int DX[] = { 0, 0, -1, 1 };
+    private static final int DY[] = { -1, 1, 0, 0 };
+
+    // Most moves tried when looking for a way out of an area the body has closed off
+    private static final int MAX_ESCAPE_MOVES = 1 << 16;
+
+    private int columns;
+    private int rows;
+    private int queue[] = new int[0];   // open cells of the estimate being expanded, or a flood fill's queue
+    private int later[] = new int[0];   // open cells of the next estimate
+    private int visited[] = new int[0]; // stamp of the last search that reached each cell
+    private int closed[] = new int[0];  // stamp of the last search that expanded each cell
+    private int costs[] = new int[0];
+    private int parents[] = new int[0];
+    private int path[] = new int[0];
+    private int stamp;
+    private int overlay[] = new int[0]; // stamp of the last check that flipped each cell's occupancy
+    private int overlayStamp;
+    private boolean overlaid;           // whether the last check's flipped cells apply
+
+    @Override public void reset( SnakeEngine engine ) { resize( engine ); }
+
+    @Override public char nextDirection( SnakeEngine engine )
+    {
+        resize( engine );
+
+        int head = cellOf( engine.getHeadX(), engine.getHeadY() );
+        int tail = cellOf( engine.getBody().getTailX(), engine.getBody().getTailY() );
+        OccupancyGrid occupancy = engine.getOccupancy();
+
+        if ( engine.getAppleX() >= 0 )
+        {
+            int apple = cellOf( engine.getAppleX(), engine.getAppleY() );
+            int move = search( occupancy, head, apple );
+            if ( move >= 0 && isSafe( engine, head, apple ) )
+                return DIRECTIONS.charAt( move );
+        }
+
+        int move = longestMoveToTail( occupancy, head, tail );
+        if ( move < 0 )
+            move = escapeMove( engine, head );
+        if ( move >= 0 )
+            return DIRECTIONS.charAt( move );
+
+        return roomiestMove( occupancy, head, engine.getDirection() );
+    }
+
+    /**
+     * Returns whether the snake can still reach its tail after following the path to
+     * the apple found by the last search. The path only crosses free cells and the
+     * apple stays put until it is eaten, so following it is always possible; what is
+     * left to check is whether the new tail can be reached from the apple with the
+     * snake laid out as it will be then: the path as its newest segments, grown by
+     * one, followed by as many of the current segments as still fit.
+     *
+     * @param engine The engine.
+     * @param head The cell of the head.
+     * @param apple The cell of the apple.
+     */
+    private boolean isSafe( SnakeEngine engine, int head, int apple )
+    {
+        // Walk back from the apple to list the path, newest cell first
+        int length = 0;
+        for ( int cell = apple; cell != head; cell = parents[cell] )
+            path[length++] = cell;
+
+        SnakeBody body = engine.getBody();
+        int parts = body.size() + 1; // grown by the apple
+        int kept = Math.max( 0, parts - length ); // current segments still part of the body
+        int tail = kept > 0 ? cellOf( body.getX( kept - 1 ), body.getY( kept - 1 ) ) : path[parts - 1];
+
+        if ( ++overlayStamp == 0 )
+        {
+            Arrays.fill( overlay, 0 );
+            overlayStamp = 1;
+        }
+        int mark = overlayStamp;
+        for ( int i = 0; i < Math.min( length, parts ); i++ )
+            overlay[path[i]] = mark; // Free now, body then
+        for ( int i = kept; i < body.size(); i++ )
+        {
+            // Segments stacked at the start of a game share a cell, which the new tail may still cover
+            int cell = cellOf( body.getX( i ), body.getY( i ) );
+            if ( cell != tail )
+                overlay[cell] = mark; // Body now, free then
+        }
+
+        overlaid = true;
+        try
+        {
+            return search( engine.getOccupancy(), apple, tail ) >= 0;
+        }
+        finally
+        {
+            overlaid = false;
+        }
+    }
+
+    private char directionBetween( int from, int to )
+    {
+        int delta = to - from;
+        return delta == -columns ? 'U' : delta == columns ? 'D' : delta == -1 ? 'L' : 'R';
+    }
+
+    /**
+     * Finds the first move of a shortest path between two cells through free cells,
+     * with A*. The parent of every cell on the path is left in {@code parents}.
+     *
+     * @param occupancy The cells covered by the snake.
+     * @param from The cell to start from.
+     * @param target The cell to reach; it may be occupied.
+     * @return The index of the first move in {@code DIRECTIONS}, or -1 if there is no
+     *         path or the cells are the same.
+     */
+    private int search( OccupancyGrid occupancy, int from, int target )
+    {
+        if ( from == target )
+            return -1;
+
+        int mark = nextStamp();
+        int targetX = target % columns;
+        int targetY = target / columns;
+        int estimate = distance( from, targetX, targetY ); // cost plus distance of the cells being expanded
+        visited[from] = mark;
+        costs[from] = 0;
+        queue[0] = from;
+        int open = 1;
+        int next = 0;
+
+        while ( true )
+        {
+            if ( open == 0 )
+            {
+                if ( next == 0 )
+                    return -1;
+
+                int swap[] = queue;
+                queue = later;
+                later = swap;
+                open = next;
+                next = 0;
+                estimate += 2;
+            }
+
+            int cell = queue[--open];
+            if ( closed[cell] == mark )
+                continue; // Reached again more cheaply and expanded already
+            closed[cell] = mark;
+            if ( cell == target )
+                return firstMove( from, target );
+
+            int distance = distance( cell, targetX, targetY );
+            int cost = costs[cell] + 1;
+            for ( int d = 0; d < 4; d++ )
+            {
+                int neighbour = neighbour( cell, d );
+                if ( neighbour < 0 || ( neighbour != target && isOccupied( occupancy, neighbour ) ) )
+                    continue;
+                if ( visited[neighbour] == mark && costs[neighbour] <= cost )
+                    continue;
+
+                visited[neighbour] = mark;
+                costs[neighbour] = cost;
+                parents[neighbour] = cell;
+                if ( distance( neighbour, targetX, targetY ) < distance )
+                    queue[open++] = neighbour; // Same estimate
+                else
+                    later[next++] = neighbour; // Two more
+            }
+        }
+    }
+
+    private int distance( int cell, int x, int y ) { return Math.abs( cell % columns - x ) + Math.abs( cell / columns - y ); }
+
+    /**
+     * Returns whether a cell is covered by the snake, as laid out by the overlay
+     * while a path is being checked.
+     */
+    private boolean isOccupied( OccupancyGrid occupancy, int cell )
+    {
+        return occupancy.isOccupied( cell ) != ( overlaid && overlay[cell] == overlayStamp );
+    }
+
+    /**
+     * Follows parents back from a cell to the start of the search and returns the
+     * direction of the first step.
+     */
+    private int firstMove( int from, int cell )
+    {
+        while ( parents[cell] != from )
+            cell = parents[cell];
+        return firstDirection( from, cell );
+    }
+
+    /**
+     * Picks the free neighbouring cell from which the tail is furthest away while
+     * still reachable. Taking the long way round leaves the snake more room and
+     * changes its shape, so a path to the apple tends to open up again, where
+     * following the tail closely would circle in place.
+     *
+     * @return The index of the move, or -1 if the tail cannot be reached.
+     */
+    private int longestMoveToTail( OccupancyGrid occupancy, int head, int tail )
+    {
+        int best = -1;
+        int bestLength = -1;
+        for ( int d = 0; d < 4; d++ )
+        {
+            int cell = neighbour( head, d );
+            if ( cell < 0 || ( occupancy.isOccupied( cell ) && cell != tail ) )
+                continue;
+
+            int length = cell == tail ? 0 : pathLength( occupancy, cell, tail );
+            if ( length > bestLength )
+            {
+                best = d;
+                bestLength = length;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the length of the shortest path found by {@link #search}, or -1 if
+     * there is none.
+     */
+    private int pathLength( OccupancyGrid occupancy, int from, int target )
+    {
+        if ( search( occupancy, from, target ) < 0 )
+            return -1;
+
+        int length = 0;
+        for ( int cell = target; cell != from; cell = parents[cell] )
+            length++;
+        return length;
+    }
+
+    /**
+     * Looks for a way out of an area the body has closed off, by trying sequences of
+     * moves depth first. A cell of the body can be entered once the tail has passed
+     * it, and from there the snake can chase its tail along the cells the body left,
+     * so a sequence that gets there, or that lasts until every segment has moved on,
+     * is a way out. At most {@link #MAX_ESCAPE_MOVES} moves are tried.
+     *
+     * @return The index of the first move of the way out, or -1 if none was found.
+     */
+    private int escapeMove( SnakeEngine engine, int head )
+    {
+        // Ticks until each cell of the body is free, kept in costs; the segment nearest the head wins a shared cell
+        SnakeBody body = engine.getBody();
+        int parts = body.size();
+        int segment = nextStamp();
+        for ( int i = parts - 1; i > 0; i-- )
+        {
+            int cell = cellOf( body.getX( i ), body.getY( i ) );
+            visited[cell] = segment;
+            costs[cell] = parts - i;
+        }
+
+        // The cells of the sequence being tried are in path, with the next direction to try from each in queue
+        int onPath = nextStamp();
+        int depth = 0;
+        path[0] = head;
+        queue[0] = 0;
+        closed[head] = onPath;
+        int moves = 0;
+        while ( depth >= 0 && moves < MAX_ESCAPE_MOVES )
+        {
+            int d = queue[depth]++;
+            if ( d == 4 )
+            {
+                closed[path[depth--]] = 0; // Every move from here failed
+                continue;
+            }
+
+            int cell = neighbour( path[depth], d );
+            if ( cell < 0 || closed[cell] == onPath )
+                continue;
+
+            moves++;
+            int tick = depth + 1;
+            if ( visited[cell] == segment )
+            {
+                if ( tick < costs[cell] )
+                    continue; // Still body when the head gets there
+                return firstDirection( head, depth == 0 ? cell : path[1] );
+            }
+            if ( tick >= parts )
+                return firstDirection( head, depth == 0 ? cell : path[1] );
+
+            closed[cell] = onPath;
+            path[++depth] = cell;
+            queue[depth] = 0;
+        }
+        return -1;
+    }
+
+    private int firstDirection( int from, int to ) { return DIRECTIONS.indexOf( directionBetween( from, to ) ); }
+
+    /**
+     * Picks the free neighbouring cell with the largest area of free cells reachable
+     * from it, a last resort when neither the apple nor the tail can be reached safely.
+     *
+     * @return The direction of the move, or the current direction if every neighbour is blocked.
+     */
+    private char roomiestMove( OccupancyGrid occupancy, int head, char current )
+    {
+        char best = current;
+        int bestRoom = -1;
+        for ( int d = 0; d < 4; d++ )
+        {
+            int cell = neighbour( head, d );
+            if ( cell < 0 || occupancy.isOccupied( cell ) )
+                continue;
+
+            int room = floodCount( occupancy, cell );
+            if ( room > bestRoom )
+            {
+                best = DIRECTIONS.charAt( d );
+                bestRoom = room;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts the free cells reachable from a free cell, including it.
+     */
+    private int floodCount( OccupancyGrid occupancy, int from )
+    {
+        int mark = nextStamp();
+        visited[from] = mark;
+        queue[0] = from;
+        int head = 0;
+        int size = 1;
+        while ( head < size )
+        {
+            int cell = queue[head++];
+            for ( int d = 0; d < 4; d++ )
+            {
+                int next = neighbour( cell, d );
+                if ( next < 0 || visited[next] == mark || occupancy.isOccupied( next ) )
+                    continue;
+
+                visited[next] = mark;
+                queue[size++] = next;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the cell next to another in a direction.
+     *
+     * @return The index of the cell, or -1 if it is off the board.
+     */
+    private int neighbour( int cell, int direction )
+    {
+        int x = cell % columns + DX[direction];
+        int y = cell / columns + DY[direction];
+        return x >= 0 && x < columns && y >= 0 && y < rows ? y * columns + x : -1;
+    }
+
+    private int cellOf( int x, int y ) { return y * columns + x; }
+
+    /**
+     * Starts a new search, clearing the visit stamps once the counter wraps.
+     */
+    private int nextStamp()
+    {
+        if ( ++stamp == 0 )
+        {
+            Arrays.fill( visited, 0 );
+            Arrays.fill( closed, 0 );
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Sizes the search arrays for the engine's board, reusing them if it has not changed.
+     */
+    private void resize( SnakeEngine engine )
+    {
+        if ( engine.getColumns() == columns && engine.getRows() == rows )
+            return;
+
+        columns = engine.getColumns();
+        rows = engine.getRows();
+        int cells = columns * rows;
+        queue = new int[cells];
+        later = new int[cells];
+        visited = new int[cells];
+        closed = new int[cells];
+        costs = new int[cells];
+        parents = new int[cells];
+        path = new int[cells];
+        overlay = new int[cells];
+        stamp = 0;
+        overlayStamp = 0;
+    }
+}
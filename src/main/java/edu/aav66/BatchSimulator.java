@@ -0,0 +1,211 @@
+package edu.aav66;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * The {@code BatchSimulator} class plays many independent headless games in parallel
+ * and summarizes their results. Game {@code i} of a batch is played on a
+ * {@link SnakeEngine} seeded with {@code firstSeed + i}, so a batch gives the same
+ * results however many threads run it.
+ *
+ * The games are split recursively over a {@link ForkJoinPool}. Each leaf task reuses
+ * one engine and one controller for all of its games and adds their results to its
+ * own {@link Statistics}, and the statistics are merged as the tasks join, so the
+ * threads share nothing while games are running.
+ */
+public final class BatchSimulator
+{
+    // Games played by one leaf task
+    private static final int GAMES_PER_TASK = 16;
+
+    /**
+     * Summary of the results of a number of games.
+     */
+    public static final class Statistics
+    {
+        private long games;
+        private long unfinished; // games stopped at the tick limit
+        private long totalScore;
+        private int minScore = Integer.MAX_VALUE;
+        private int maxScore;
+        private long totalLength;
+        private int maxLength;
+        private long totalTicks;
+        private long maxTicks;
+
+        /**
+         * Adds the result of a game.
+         *
+         * @param engine The engine the game was played on, at its end.
+         */
+        void add( SnakeEngine engine )
+        {
+            games++;
+            if ( engine.isRunning() )
+                unfinished++;
+
+            int score = engine.getApplesEaten();
+            totalScore += score;
+            minScore = Math.min( minScore, score );
+            maxScore = Math.max( maxScore, score );
+            totalLength += engine.getBodyParts();
+            maxLength = Math.max( maxLength, engine.getBodyParts() );
+            totalTicks += engine.getTicks();
+            maxTicks = Math.max( maxTicks, engine.getTicks() );
+        }
+
+        /**
+         * Adds the results summarized by other statistics.
+         *
+         * @param other The statistics to merge into these.
+         */
+        void combine( Statistics other )
+        {
+            games += other.games;
+            unfinished += other.unfinished;
+            totalScore += other.totalScore;
+            minScore = Math.min( minScore, other.minScore );
+            maxScore = Math.max( maxScore, other.maxScore );
+            totalLength += other.totalLength;
+            maxLength = Math.max( maxLength, other.maxLength );
+            totalTicks += other.totalTicks;
+            maxTicks = Math.max( maxTicks, other.maxTicks );
+        }
+
+        public long getGames() { return games; }
+
+        public long getUnfinished() { return unfinished; }
+
+        public int getMinScore() { return games == 0 ? 0 : minScore; }
+
+        public int getMaxScore() { return maxScore; }
+
+        public double getMeanScore() { return games == 0 ? 0 : (double)totalScore / games; }
+
+        public int getMaxLength() { return maxLength; }
+
+        public double getMeanLength() { return games == 0 ? 0 : (double)totalLength / games; }
+
+        public long getTotalTicks() { return totalTicks; }
+
+        public long getMaxTicks() { return maxTicks; }
+
+        public double getMeanTicks() { return games == 0 ? 0 : (double)totalTicks / games; }
+
+        @Override public String toString()
+        {
+            return String.format( "%d games (%d unfinished): score mean %.2f min %d max %d, length mean %.2f max %d, "
+                                      + "ticks mean %.1f max %d",
+                                  games, unfinished, getMeanScore(), getMinScore(), maxScore, getMeanLength(), maxLength,
+                                  getMeanTicks(), maxTicks );
+        }
+    }
+
+    private final int columns;
+    private final int rows;
+    private final long maxTicks;
+    private final Supplier<? extends SnakeController> controllers;
+
+    /**
+     * Constructs a new {@code BatchSimulator}.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @param maxTicks The tick at which a game that has not ended is stopped.
+     * @param controllers Creates the controllers that play the games; each is used by one thread only.
+     */
+    public BatchSimulator( int columns, int rows, long maxTicks, Supplier<? extends SnakeController> controllers )
+    {
+        if ( columns < 1 || rows < 1 )
+            throw new IllegalArgumentException( "Board must be at least one cell: " + columns + "x" + rows );
+        if ( maxTicks < 1 )
+            throw new IllegalArgumentException( "Tick limit must be positive: " + maxTicks );
+
+        this.columns = columns;
+        this.rows = rows;
+        this.maxTicks = maxTicks;
+        this.controllers = controllers;
+    }
+
+    /**
+     * Plays a batch of games on the common fork/join pool.
+     *
+     * @param firstSeed The seed of the first game; the others follow it.
+     * @param games The number of games to play.
+     * @return The summary of the games.
+     */
+    public Statistics run( long firstSeed, int games ) { return run( firstSeed, games, ForkJoinPool.commonPool() ); }
+
+    /**
+     * Plays a batch of games on the given pool.
+     *
+     * @param firstSeed The seed of the first game; the others follow it.
+     * @param games The number of games to play.
+     * @param pool The pool to run the games on.
+     * @return The summary of the games.
+     */
+    public Statistics run( long firstSeed, int games, ForkJoinPool pool )
+    {
+        return pool.invoke( new Batch( firstSeed, 0, games ) );
+    }
+
+    /**
+     * Plays one game to its end or the tick limit.
+     *
+     * @param engine The engine, just reset.
+     * @param controller The controller, just reset.
+     */
+    private void play( SnakeEngine engine, SnakeController controller )
+    {
+        while ( engine.getTicks() < maxTicks && engine.step( controller.nextDirection( engine ) ) )
+            ;
+    }
+
+    /**
+     * Plays the games in a range of a batch, splitting it in halves until it is
+     * small enough to play on one thread.
+     */
+    private final class Batch extends RecursiveTask<Statistics>
+    {
+        private final long firstSeed;
+        private final int from;
+        private final int to;
+
+        Batch( long firstSeed, int from, int to )
+        {
+            this.firstSeed = firstSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override protected Statistics compute()
+        {
+            if ( to - from > GAMES_PER_TASK )
+            {
+                int middle = ( from + to ) >>> 1;
+                Batch left = new Batch( firstSeed, from, middle );
+                left.fork();
+                Statistics statistics = new Batch( firstSeed, middle, to ).compute();
+                statistics.combine( left.join() );
+                return statistics;
+            }
+
+            Statistics statistics = new Statistics();
+            if ( from == to )
+                return statistics;
+
+            SnakeEngine engine = new SnakeEngine( columns, rows, firstSeed + from );
+            SnakeController controller = controllers.get();
+            for ( int i = from; i < to; i++ )
+            {
+                engine.reset( firstSeed + i );
+                controller.reset( engine );
+                play( engine, controller );
+                statistics.add( engine );
+            }
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package edu.aav66;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * The {@code BoardRenderer} class keeps an image of the board that is updated
+ * incrementally after every tick. Only the cells that changed are redrawn: the cell
+ * the head left becomes body, the cell the tail vacated is cleared and the apple is
+ * moved when it is eaten. The head itself is drawn on top of the image every frame so
+ * it can be interpolated between cells. A full redraw is done after a reset or when
+ * the image is invalidated.
+ *
+ * Rainbow body colors come from a palette built once up front, and every cell is
+ * copied from a {@link SpriteAtlas} of pre-scaled tiles, so drawing allocates
+ * nothing once the game is running.
+ */
+public final class BoardRenderer
+{
+    // Number of random colors in the rainbow palette
+    private static final int PALETTE_SIZE = 256;
+
+    private final int columns;
+    private final int rows;
+    private final int unitSize;
+    private final BufferedImage image;
+    private final Graphics imageGraphics; // kept open so updates do not create a context per tick
+
+    private boolean rainbowBody;
+    private final Random random;
+    private final Color palette[] = new Color[PALETTE_SIZE];
+    private SpriteAtlas atlas;
+
+    // State of the engine when the image was last updated
+    private boolean valid;
+    private int lastHeadX;
+    private int lastHeadY;
+    private int lastTailX;
+    private int lastTailY;
+    private int lastAppleX;
+    private int lastAppleY;
+
+    /**
+     * Constructs a new {@code BoardRenderer} for a board of the given size.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @param unitSize The size of one cell in pixels.
+     * @param random The random number generator used for rainbow body colors.
+     */
+    public BoardRenderer( int columns, int rows, int unitSize, Random random )
+    {
+        this.columns = columns;
+        this.rows = rows;
+        this.unitSize = unitSize;
+        this.random = random;
+        for ( int i = 0; i < PALETTE_SIZE; i++ )
+            palette[i] = new Color( random.nextInt( 255 ), random.nextInt( 255 ), random.nextInt( 255 ), 220 );
+        atlas = new SpriteAtlas( unitSize, null, palette );
+        image = SpriteAtlas.createCompatibleImage( columns * unitSize, rows * unitSize, Transparency.OPAQUE );
+        imageGraphics = image.createGraphics();
+    }
+
+    /**
+     * Sets the apple image, scaling it into the atlas once. The board is redrawn
+     * with the new apple on the next update.
+     *
+     * @param appleSprite The apple image, or {@code null} to draw a colored oval.
+     */
+    public void setAppleSprite( BufferedImage appleSprite )
+    {
+        atlas = new SpriteAtlas( unitSize, appleSprite, palette );
+        invalidate();
+    }
+
+    /**
+     * Switches between random rainbow body colors and the plain body color. The
+     * board is redrawn with the new colors on the next update.
+     *
+     * @param rainbowBody {@code true} for rainbow colors.
+     */
+    public void setRainbowBody( boolean rainbowBody )
+    {
+        if ( this.rainbowBody != rainbowBody )
+        {
+            this.rainbowBody = rainbowBody;
+            invalidate();
+        }
+    }
+
+    public BufferedImage getImage() { return image; }
+
+    /**
+     * Forces the next {@link #update(SnakeEngine)} to redraw the whole board.
+     */
+    public void invalidate() { valid = false; }
+
+    /**
+     * Brings the board image up to date with the engine, redrawing only the cells
+     * that changed since the last update.
+     *
+     * @param engine The engine to draw.
+     */
+    public void update( SnakeEngine engine )
+    {
+        SnakeBody body = engine.getBody();
+        if ( !valid || body.size() < 2 )
+        {
+            redrawAll( engine );
+            return;
+        }
+
+        Graphics g = imageGraphics;
+
+        // The apple moves only when it is eaten, so its old cell now holds the head
+        if ( engine.getAppleX() != lastAppleX || engine.getAppleY() != lastAppleY )
+        {
+            clearCell( g, lastAppleX, lastAppleY );
+            drawApple( g, engine.getAppleX(), engine.getAppleY() );
+        }
+
+        // The cell the head left becomes part of the body
+        if ( body.getX( 1 ) == lastHeadX && body.getY( 1 ) == lastHeadY )
+        {
+            clearCell( g, lastHeadX, lastHeadY );
+            drawBodyCell( g, lastHeadX, lastHeadY );
+        }
+        else
+        {
+            redrawAll( engine ); // More than one tick passed since the last update
+            return;
+        }
+
+        // The cell the tail left is cleared, unless the snake grew or is still unfolding;
+        // the head is drawn every frame, so its cell is kept clear as well
+        boolean tailKept = isOnBoard( lastTailX, lastTailY ) &&
+                           engine.getOccupancy().isOccupied( lastTailY * columns + lastTailX );
+        if ( !tailKept || ( lastTailX == body.getHeadX() && lastTailY == body.getHeadY() ) )
+            clearCell( g, lastTailX, lastTailY );
+
+        remember( engine );
+    }
+
+    /**
+     * Redraws the whole board image.
+     *
+     * @param engine The engine to draw.
+     */
+    private void redrawAll( SnakeEngine engine )
+    {
+        Graphics g = imageGraphics;
+        g.setColor( GamePanel.BACKGROUND_COLOR );
+        g.fillRect( 0, 0, image.getWidth(), image.getHeight() );
+
+        drawApple( g, engine.getAppleX(), engine.getAppleY() );
+
+        // The head is drawn separately every frame
+        SnakeBody body = engine.getBody();
+        for ( int i = body.size() - 1; i > 0; i-- )
+            drawBodyCell( g, body.getX( i ), body.getY( i ) );
+
+        valid = true;
+        remember( engine );
+    }
+
+    /**
+     * Draws the board image and the snake's head, with the head interpolated between
+     * the cell it left and the cell it is entering.
+     *
+     * @param g The Graphics context to draw on.
+     * @param engine The engine to draw.
+     * @param alpha How far the frame is between the last tick (0) and the next one (1).
+     */
+    public void draw( Graphics g, SnakeEngine engine, double alpha )
+    {
+        g.drawImage( image, 0, 0, null );
+
+        SnakeBody body = engine.getBody();
+        int headX = body.getHeadX() * unitSize;
+        int headY = body.getHeadY() * unitSize;
+        if ( body.size() > 1 )
+        {
+            // Slide the head from the cell it left towards the cell it is entering
+            int fromX = body.getX( 1 ) * unitSize;
+            int fromY = body.getY( 1 ) * unitSize;
+            headX = (int)Math.round( fromX + ( headX - fromX ) * alpha );
+            headY = (int)Math.round( fromY + ( headY - fromY ) * alpha );
+        }
+
+        atlas.draw( g, SpriteAtlas.HEAD, headX, headY );
+    }
+
+    private void remember( SnakeEngine engine )
+    {
+        SnakeBody body = engine.getBody();
+        lastHeadX = body.getHeadX();
+        lastHeadY = body.getHeadY();
+        lastTailX = body.getTailX();
+        lastTailY = body.getTailY();
+        lastAppleX = engine.getAppleX();
+        lastAppleY = engine.getAppleY();
+    }
+
+    private void clearCell( Graphics g, int x, int y )
+    {
+        if ( !isOnBoard( x, y ) )
+            return;
+
+        g.setColor( GamePanel.BACKGROUND_COLOR );
+        g.fillRect( x * unitSize, y * unitSize, unitSize, unitSize );
+    }
+
+    private void drawBodyCell( Graphics g, int x, int y )
+    {
+        int tile = rainbowBody ? SpriteAtlas.FIRST_RAINBOW + random.nextInt( PALETTE_SIZE ) : SpriteAtlas.BODY;
+        atlas.draw( g, tile, x * unitSize, y * unitSize );
+    }
+
+    private void drawApple( Graphics g, int x, int y )
+    {
+        if ( !isOnBoard( x, y ) )
+            return;
+
+        atlas.draw( g, SpriteAtlas.APPLE, x * unitSize, y * unitSize );
+    }
+
+    private boolean isOnBoard( int x, int y ) { return x >= 0 && x < columns && y >= 0 && y < rows; }
+}
@@ -0,0 +1,178 @@
+package edu.aav66;
+
+import java.nio.file.Path;
+
+/**
+ * The {@code GameConfig} class holds the settings a game is started with. The board
+ * size is given in cells and is independent of how many pixels each cell is drawn
+ * with, so large arenas can be simulated without recompiling. The simulation tick
+ * length and the rendering frame rate are set separately, as is the directory
+ * the leaderboard and other data files are kept in.
+ *
+ * Settings are read from system properties, for example
+ * {@code java -Dsnake.columns=256 -Dsnake.rows=256 -jar SnakeGame.jar}.
+ */
+public final class GameConfig
+{
+    public static final int DEFAULT_COLUMNS = 32;
+    public static final int DEFAULT_ROWS = 32;
+    public static final int DEFAULT_UNIT_SIZE = 25;
+    public static final int DEFAULT_TICK_MILLIS = 75;
+    public static final int DEFAULT_FRAME_RATE = 60;
+
+    // Largest board side supported; segment coordinates are packed into 16 bits each
+    public static final int MAX_DIMENSION = 4096;
+
+    // Largest panel side the default unit size is shrunk to fit into
+    private static final int MAX_SCREEN_SIZE = 800;
+
+    private final int columns;
+    private final int rows;
+    private final int unitSize;
+    private final int tickMillis;
+    private final int frameRate;
+    private final Path dataDirectory;
+
+    /**
+     * Constructs a new {@code GameConfig}.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @param unitSize The size of one cell on screen in pixels.
+     * @param tickMillis The length of one simulation tick in milliseconds.
+     * @param frameRate The number of frames rendered per second.
+     * @param dataDirectory The directory data files are kept in.
+     * @throws IllegalArgumentException If a value is out of range.
+     */
+    public GameConfig( int columns, int rows, int unitSize, int tickMillis, int frameRate, Path dataDirectory )
+    {
+        if ( columns < 2 || columns > MAX_DIMENSION || rows < 1 || rows > MAX_DIMENSION )
+            throw new IllegalArgumentException( "Board size must be between 2x1 and " + MAX_DIMENSION + "x" +
+                                                MAX_DIMENSION + " cells: " + columns + "x" + rows );
+        if ( unitSize < 1 )
+            throw new IllegalArgumentException( "Unit size must be positive: " + unitSize );
+        if ( tickMillis < 1 )
+            throw new IllegalArgumentException( "Tick length must be positive: " + tickMillis );
+        if ( frameRate < 1 )
+            throw new IllegalArgumentException( "Frame rate must be positive: " + frameRate );
+
+        this.columns = columns;
+        this.rows = rows;
+        this.unitSize = unitSize;
+        this.tickMillis = tickMillis;
+        this.frameRate = frameRate;
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * Constructs a new {@code GameConfig} keeping data files in the default directory.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @param unitSize The size of one cell on screen in pixels.
+     * @param tickMillis The length of one simulation tick in milliseconds.
+     * @param frameRate The number of frames rendered per second.
+     */
+    public GameConfig( int columns, int rows, int unitSize, int tickMillis, int frameRate )
+    {
+        this( columns, rows, unitSize, tickMillis, frameRate, defaultDataDirectory() );
+    }
+
+    /**
+     * Constructs a new {@code GameConfig} with the default tick length and frame rate.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @param unitSize The size of one cell on screen in pixels.
+     */
+    public GameConfig( int columns, int rows, int unitSize )
+    {
+        this( columns, rows, unitSize, DEFAULT_TICK_MILLIS, DEFAULT_FRAME_RATE );
+    }
+
+    /**
+     * Constructs a new {@code GameConfig} for a board of the given size, drawn with
+     * the default unit size or smaller so the panel fits on screen.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     */
+    public GameConfig( int columns, int rows ) { this( columns, rows, fittingUnitSize( columns, rows ) ); }
+
+    /**
+     * Constructs the default 32x32 configuration.
+     */
+    public GameConfig() { this( DEFAULT_COLUMNS, DEFAULT_ROWS, DEFAULT_UNIT_SIZE ); }
+
+    /**
+     * Creates a configuration from the {@code snake.columns}, {@code snake.rows},
+     * {@code snake.unitSize}, {@code snake.tickMillis}, {@code snake.frameRate} and
+     * {@code snake.dataDir} system properties, using defaults for missing values.
+     *
+     * @return The configuration.
+     * @throws IllegalArgumentException If a property is not a valid number or out of range.
+     */
+    public static GameConfig fromSystemProperties()
+    {
+        int columns = intProperty( "snake.columns", DEFAULT_COLUMNS );
+        int rows = intProperty( "snake.rows", DEFAULT_ROWS );
+        int unitSize = intProperty( "snake.unitSize", fittingUnitSize( columns, rows ) );
+        int tickMillis = intProperty( "snake.tickMillis", DEFAULT_TICK_MILLIS );
+        int frameRate = intProperty( "snake.frameRate", DEFAULT_FRAME_RATE );
+        String dataDir = System.getProperty( "snake.dataDir" );
+        Path dataDirectory = dataDir == null || dataDir.isBlank() ? defaultDataDirectory() : Path.of( dataDir );
+        return new GameConfig( columns, rows, unitSize, tickMillis, frameRate, dataDirectory );
+    }
+
+    /**
+     * Reads an integer system property.
+     *
+     * @param name The name of the property.
+     * @param defaultValue The value to use if the property is not set.
+     * @return The value of the property.
+     */
+    static int intProperty( String name, int defaultValue )
+    {
+        String value = System.getProperty( name );
+        if ( value == null || value.isBlank() )
+            return defaultValue;
+
+        try
+        {
+            return Integer.parseInt( value.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IllegalArgumentException( "Invalid value for " + name + ": " + value, e );
+        }
+    }
+
+    /**
+     * Returns the default data directory, {@code .snakegame} in the user's home directory.
+     *
+     * @return The default data directory.
+     */
+    public static Path defaultDataDirectory() { return Path.of( System.getProperty( "user.home" ), ".snakegame" ); }
+
+    private static int fittingUnitSize( int columns, int rows )
+    {
+        int largest = Math.max( Math.max( columns, rows ), 1 );
+        return Math.max( 1, Math.min( DEFAULT_UNIT_SIZE, MAX_SCREEN_SIZE / largest ) );
+    }
+
+    public int getColumns() { return columns; }
+
+    public int getRows() { return rows; }
+
+    public int getUnitSize() { return unitSize; }
+
+    public int getTickMillis() { return tickMillis; }
+
+    public int getFrameRate() { return frameRate; }
+
+    public Path getDataDirectory() { return dataDirectory; }
+
+    public int getScreenWidth() { return columns * unitSize; }
+
+    public int getScreenHeight() { return rows * unitSize; }
+}
@@ -1,5 +1,7 @@
 package edu.aav66;
 
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import javax.swing.JFrame;
 
 /**
@@ -23,7 +25,8 @@ public class GameFrame extends JFrame
     public GameFrame()
     {
         // Add an instance of GamePanel to this frame
-        this.add( new GamePanel() );
+        GamePanel gamePanel = new GamePanel();
+        this.add( gamePanel );
 
         // Set the title of the frame to "Snake"
         this.setTitle( "Snake" );
@@ -31,6 +34,11 @@ public class GameFrame extends JFrame
         // Ensure the application exits when the frame is closed
         this.setDefaultCloseOperation( JFrame.EXIT_ON_CLOSE );
 
+        // Let the game finish writing its files before the application exits
+        this.addWindowListener( new WindowAdapter() {
+            @Override public void windowClosing( WindowEvent e ) { gamePanel.shutdown(); }
+        } );
+
         // Disable resizing of the frame to maintain consistent gameplay
         this.setResizable( false );
 
@@ -0,0 +1,180 @@
+package edu.aav66;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code GameLoop} class drives a game from a dedicated thread. The simulation
+ * advances in fixed time steps independent of how often frames are drawn, and every
+ * frame is told how far it is between the last tick and the next one so rendering
+ * can interpolate. Ticks that fall behind are caught up, up to a limit, so the
+ * simulation rate does not drift when the machine is busy.
+ */
+public final class GameLoop
+{
+    /**
+     * Callbacks invoked from the loop thread.
+     */
+    public interface Handler
+    {
+        /**
+         * Advances the simulation by one fixed time step.
+         *
+         * @return {@code false} to stop the loop after this tick.
+         */
+        boolean tick();
+
+        /**
+         * Draws a frame.
+         *
+         * @param alpha How far the frame is between the last tick (0) and the next one (1).
+         */
+        void render( double alpha );
+    }
+
+    // Most ticks run back to back before a frame is forced, so a stall cannot spiral
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final long tickNanos;
+    private final long frameNanos;
+    private final Handler handler;
+    private final GameMetrics metrics;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Constructs a new {@code GameLoop}.
+     *
+     * @param tickMillis The length of one simulation tick in milliseconds.
+     * @param frameRate The number of frames to render per second.
+     * @param handler The callbacks for ticks and frames.
+     */
+    public GameLoop( int tickMillis, int frameRate, Handler handler ) { this( tickMillis, frameRate, handler, null ); }
+
+    /**
+     * Constructs a new {@code GameLoop} that times every tick and frame.
+     *
+     * @param tickMillis The length of one simulation tick in milliseconds.
+     * @param frameRate The number of frames to render per second.
+     * @param handler The callbacks for ticks and frames.
+     * @param metrics Where tick and frame times are recorded, or {@code null} to not time them.
+     */
+    public GameLoop( int tickMillis, int frameRate, Handler handler, GameMetrics metrics )
+    {
+        if ( tickMillis < 1 )
+            throw new IllegalArgumentException( "Tick length must be positive: " + tickMillis );
+        if ( frameRate < 1 )
+            throw new IllegalArgumentException( "Frame rate must be positive: " + frameRate );
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos( tickMillis );
+        this.frameNanos = TimeUnit.SECONDS.toNanos( 1 ) / frameRate;
+        this.handler = handler;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts the loop on a new daemon thread.
+     */
+    public synchronized void start()
+    {
+        if ( running )
+            return;
+
+        running = true;
+        thread = new Thread( this::run, "game-loop" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    /**
+     * Stops the loop and waits for its thread to finish, unless called from the loop
+     * thread itself.
+     */
+    public synchronized void stop()
+    {
+        running = false;
+        if ( thread != null && thread != Thread.currentThread() )
+        {
+            LockSupport.unpark( thread );
+            try
+            {
+                thread.join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread = null;
+    }
+
+    public boolean isRunning() { return running; }
+
+    private boolean tick()
+    {
+        if ( metrics == null )
+            return handler.tick();
+
+        long start = metrics.beginTick();
+        boolean keepRunning = handler.tick();
+        metrics.endTick( start );
+        return keepRunning;
+    }
+
+    private void render( double alpha )
+    {
+        if ( metrics == null )
+        {
+            handler.render( alpha );
+            return;
+        }
+
+        long start = metrics.beginFrame();
+        handler.render( alpha );
+        metrics.endFrame( start );
+    }
+
+    /**
+     * Runs ticks at the fixed rate and renders frames in between until stopped.
+     */
+    private void run()
+    {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long nextFrame = previous;
+
+        while ( running )
+        {
+            long now = System.nanoTime();
+            accumulator += now - previous;
+            previous = now;
+
+            int ticks = 0;
+            while ( accumulator >= tickNanos && running )
+            {
+                if ( !tick() )
+                    running = false;
+                accumulator -= tickNanos;
+
+                if ( ++ticks == MAX_CATCH_UP_TICKS )
+                {
+                    if ( metrics != null )
+                        metrics.dropTicks( accumulator / tickNanos );
+                    accumulator %= tickNanos; // Drop the backlog rather than fall further behind
+                    break;
+                }
+            }
+
+            render( Math.min( (double)accumulator / tickNanos, 1.0 ) );
+
+            // Sleep until the next frame, or the next tick if that comes sooner
+            nextFrame += frameNanos;
+            now = System.nanoTime();
+            if ( nextFrame < now )
+                nextFrame = now;
+            long wake = Math.min( nextFrame, now + ( tickNanos - accumulator ) );
+            while ( running && ( now = System.nanoTime() ) < wake )
+                LockSupport.parkNanos( wake - now );
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package edu.aav66;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@code GameMetrics} class measures the game loop: a latency histogram each for
+ * ticks and frames, the number of ticks dropped when the loop fell too far behind,
+ * and garbage collections since the game started. The loop thread records; the
+ * performance overlay, JMX clients and JFR recordings read.
+ *
+ * Every tick and frame is also emitted as a JFR event, {@code edu.aav66.Tick} and
+ * {@code edu.aav66.Frame}, when a recording that enables them is running, so they can
+ * be lined up with GC and safepoint pauses in Mission Control.
+ */
+public final class GameMetrics implements GameMetricsMBean
+{
+    public static final String OBJECT_NAME = "edu.aav66:type=GameMetrics";
+
+    @Name( "edu.aav66.Tick" )
+    @Label( "Game Tick" )
+    @Category( "Snake" )
+    @Description( "One step of the game simulation" )
+    @StackTrace( false )
+    static final class TickEvent extends Event
+    {
+        @Label( "Tick" ) long tick;
+    }
+
+    @Name( "edu.aav66.Frame" )
+    @Label( "Game Frame" )
+    @Category( "Snake" )
+    @Description( "One frame drawn by the game loop" )
+    @StackTrace( false )
+    static final class FrameEvent extends Event
+    {
+        @Label( "Frame" ) long frame;
+    }
+
+    // Looked up once, so checking whether a recording wants the events costs no allocation
+    private static final EventType TICK_EVENT = EventType.getEventType( TickEvent.class );
+    private static final EventType FRAME_EVENT = EventType.getEventType( FrameEvent.class );
+
+    private final LatencyHistogram ticks = new LatencyHistogram();
+    private final LatencyHistogram frames = new LatencyHistogram();
+    private volatile long droppedTicks;
+    private volatile boolean resetRequested;
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private volatile long gcCountBase;
+    private volatile long gcTimeBase;
+    private volatile long startupMillis = -1; // from JVM launch to the first frame
+    private ObjectName registeredName;
+
+    // Events being timed, only created while a recording enables them
+    private TickEvent tickEvent;
+    private FrameEvent frameEvent;
+
+    /**
+     * Constructs a new {@code GameMetrics} counting garbage collections from now on.
+     */
+    public GameMetrics()
+    {
+        gcCountBase = totalGcCount();
+        gcTimeBase = totalGcTime();
+    }
+
+    /**
+     * Starts timing a tick. Called by the loop thread.
+     *
+     * @return The start time, to pass to {@link #endTick(long)}.
+     */
+    public long beginTick()
+    {
+        if ( resetRequested )
+            clear();
+        if ( TICK_EVENT.isEnabled() )
+        {
+            tickEvent = new TickEvent();
+            tickEvent.begin();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a tick that started at {@code start}. Called by the loop thread.
+     *
+     * @param start The time returned by {@link #beginTick()}.
+     */
+    public void endTick( long start )
+    {
+        ticks.record( System.nanoTime() - start );
+
+        if ( tickEvent != null )
+        {
+            tickEvent.tick = ticks.getCount();
+            tickEvent.commit();
+            tickEvent = null;
+        }
+    }
+
+    /**
+     * Starts timing a frame. Called by the loop thread.
+     *
+     * @return The start time, to pass to {@link #endFrame(long)}.
+     */
+    public long beginFrame()
+    {
+        if ( FRAME_EVENT.isEnabled() )
+        {
+            frameEvent = new FrameEvent();
+            frameEvent.begin();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a frame that started at {@code start}. Called by the loop thread.
+     *
+     * @param start The time returned by {@link #beginFrame()}.
+     */
+    public void endFrame( long start )
+    {
+        frames.record( System.nanoTime() - start );
+
+        if ( frameEvent != null )
+        {
+            frameEvent.frame = frames.getCount();
+            frameEvent.commit();
+            frameEvent = null;
+        }
+    }
+
+    /**
+     * Records ticks skipped because the loop fell too far behind. Called by the loop thread.
+     *
+     * @param count The number of ticks dropped.
+     */
+    public void dropTicks( long count ) { droppedTicks = droppedTicks + count; }
+
+    /**
+     * Records how long after the JVM was launched the first frame was drawn. Only the
+     * first call counts.
+     *
+     * @return {@code true} if this was the first call.
+     */
+    public boolean markFirstFrame()
+    {
+        if ( startupMillis >= 0 )
+            return false;
+
+        startupMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        return true;
+    }
+
+    public LatencyHistogram getTickHistogram() { return ticks; }
+
+    public LatencyHistogram getFrameHistogram() { return frames; }
+
+    @Override public long getTickCount() { return ticks.getCount(); }
+
+    @Override public long getFrameCount() { return frames.getCount(); }
+
+    @Override public long getDroppedTicks() { return droppedTicks; }
+
+    @Override public double getTickMeanMicros() { return ticks.getMean() / 1000; }
+
+    @Override public long getTickP50Micros() { return ticks.getValueAtPercentile( 50 ) / 1000; }
+
+    @Override public long getTickP99Micros() { return ticks.getValueAtPercentile( 99 ) / 1000; }
+
+    @Override public long getTickMaxMicros() { return ticks.getMax() / 1000; }
+
+    @Override public double getFrameMeanMicros() { return frames.getMean() / 1000; }
+
+    @Override public long getFrameP50Micros() { return frames.getValueAtPercentile( 50 ) / 1000; }
+
+    @Override public long getFrameP99Micros() { return frames.getValueAtPercentile( 99 ) / 1000; }
+
+    @Override public long getFrameMaxMicros() { return frames.getMax() / 1000; }
+
+    @Override public long getGcCount() { return totalGcCount() - gcCountBase; }
+
+    @Override public long getGcTimeMillis() { return totalGcTime() - gcTimeBase; }
+
+    @Override public long getStartupMillis() { return startupMillis; }
+
+    @Override public void reset() { resetRequested = true; }
+
+    /**
+     * Registers these metrics with the platform MBean server, replacing any metrics
+     * registered by another game in the same JVM.
+     */
+    public synchronized void register()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName( OBJECT_NAME );
+            if ( server.isRegistered( name ) )
+                server.unregisterMBean( name );
+            server.registerMBean( this, name );
+            registeredName = name;
+        }
+        catch ( JMException e )
+        {
+            System.err.println( "Problem registering game metrics: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server if they were registered.
+     */
+    public synchronized void unregister()
+    {
+        if ( registeredName == null )
+            return;
+
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean( registeredName );
+        }
+        catch ( JMException e )
+        {
+            // Already replaced by another game's metrics
+        }
+        registeredName = null;
+    }
+
+    private void clear()
+    {
+        resetRequested = false;
+        ticks.reset();
+        frames.reset();
+        droppedTicks = 0;
+        gcCountBase = totalGcCount();
+        gcTimeBase = totalGcTime();
+    }
+
+    private long totalGcCount()
+    {
+        long total = 0;
+        for ( int i = 0; i < collectors.size(); i++ )
+            total += Math.max( 0, collectors.get( i ).getCollectionCount() );
+        return total;
+    }
+
+    private long totalGcTime()
+    {
+        long total = 0;
+        for ( int i = 0; i < collectors.size(); i++ )
+            total += Math.max( 0, collectors.get( i ).getCollectionTime() );
+        return total;
+    }
+}
@@ -0,0 +1,46 @@
+package edu.aav66;
+
+/**
+ * The management interface of {@link GameMetrics}, registered with the platform MBean
+ * server as {@code edu.aav66:type=GameMetrics} so the counters can be watched from
+ * JConsole or Mission Control while the game runs. Times are in microseconds.
+ */
+public interface GameMetricsMBean
+{
+    long getTickCount();
+
+    long getFrameCount();
+
+    long getDroppedTicks();
+
+    double getTickMeanMicros();
+
+    long getTickP50Micros();
+
+    long getTickP99Micros();
+
+    long getTickMaxMicros();
+
+    double getFrameMeanMicros();
+
+    long getFrameP50Micros();
+
+    long getFrameP99Micros();
+
+    long getFrameMaxMicros();
+
+    long getGcCount();
+
+    long getGcTimeMillis();
+
+    /**
+     * Returns the time from the launch of the JVM to the first frame, in milliseconds,
+     * or -1 before the first frame.
+     */
+    long getStartupMillis();
+
+    /**
+     * Clears the histograms and counters at the start of the next tick.
+     */
+    void reset();
+}
@@ -2,31 +2,55 @@ package edu.aav66;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.net.URL;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.*;
-import javax.imageio.ImageIO;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import javax.swing.*;
-import javax.swing.Timer;
-import javazoom.jl.player.Player;
 
 /**
  * The {@code GamePanel} class encapsulates the main gameplay area of the Snake game.
  * It is responsible for handling game logic, rendering the game state, and processing
- * player input. This class extends {@link JPanel} and implements {@link ActionListener}
- * to respond to game events.
+ * player input. This class extends {@link JPanel}; while a game is running it is
+ * driven by a {@link GameLoop} thread that ticks the engine at a fixed rate and draws
+ * frames into a page-flipped {@link BufferStrategy} on a {@link Canvas}.
  */
-public class GamePanel extends JPanel implements ActionListener
+public class GamePanel extends JPanel
 {
-    // Deque to store the directions of the snake
-    private Deque<Character> directionQueue = new ArrayDeque<>();
+    // Directions entered on the event dispatch thread, taken by the game loop
+    private static final int INPUT_CAPACITY = 8;
+    private final InputBuffer input = new InputBuffer( INPUT_CAPACITY, 'R' );
+    private volatile long inputLatencyNanos; // from key press to the tick that applied it
+
+    // Steers instead of the keyboard when set; toggled with P for the autopilot or H for the perfect game
+    private volatile SnakeController controller;
+    private SnakeController activeController; // the controller last reset, owned by the game loop
+    private final SnakeController autopilot = new AutopilotController();
+    private final SnakeController solver = new HamiltonianController();
+
+    // Tick, frame and GC timings, shown in an overlay toggled with F3
+    private final GameMetrics metrics = new GameMetrics();
+    private volatile boolean hudVisible;
+    private final String hudLines[] = new String[5];
+    private long hudUpdatedNanos;
+    private static final long HUD_REFRESH_NANOS = 250_000_000L;
+    private static final Font HUD_FONT = new Font( Font.MONOSPACED, Font.PLAIN, 12 );
+    private static final Color HUD_BACKGROUND = new Color( 0, 0, 0, 170 );
+    private static final int HUD_X = 8;
+    private static final int HUD_Y = 8;
+    private static final int HUD_WIDTH = 320;
+    private static final int HUD_LINE_HEIGHT = 15;
 
     // Dimensions of the game panel
-    public static final int SCREEN_WIDTH = 800;
-    static final int SCREEN_HEIGHT = 800;
-    public static final int UNIT_SIZE = 25;
-    static final int GAME_UNITS = ( SCREEN_WIDTH * SCREEN_HEIGHT ) / UNIT_SIZE;
-    static final int DELAY = 75;
+    private final int screenWidth;
+    private final int screenHeight;
+    private final int unitSize;
 
     // Colors used in the game
     static final Color BACKGROUND_COLOR = Color.black;
@@ -44,56 +68,133 @@ public class GamePanel extends JPanel implements ActionListener
     private static final Font LARGE_FONT = new Font( "Futura", Font.BOLD, 75 );
     private static final Font MEDIUM_FONT = new Font( "Futura", Font.BOLD, 40 );
 
-    // Snake variables
-    public final int x[] = new int[GAME_UNITS]; // x coordinates of the snake
-    public final int y[] = new int[GAME_UNITS]; // y coordinates of the snake
+    // Score shown while playing, rendered again only when it changes
+    private final TextSprite scoreText = new TextSprite( "Score: ", MEDIUM_FONT, SCORE_COLOR );
+
+    // Game state and rules
+    private final SnakeEngine engine;
+
+    // Active rendering surface and the loop that drives it
+    private final Canvas canvas;
+    private final BoardRenderer boardRenderer;
+    private final GameLoop gameLoop;
+
+    // Images decoded in the background, shared by every panel
+    private static final AssetManager ASSETS = new AssetManager();
+    private boolean appleSpriteApplied; // whether the board has been given the sprite or told it failed
 
     // Game variables
-    private BufferedImage appleSprite;
-    public int bodyParts = 6;
-    public int applesEaten;
-    public int appleX;
-    public int appleY;
-    public char direction = 'R';
-    public boolean running = false;
-    Timer timer;
     Random random;
 
-    String resourcesPath = "/Users/andreaventi/Developer/GameDev/Snake/src/main/resources/";
+    private final CompletableFuture<Leaderboard> leaderboard; // read from disk in the background
+    private Leaderboard.Entry submitted; // the last game ended, replaced if it is taken back and ends again
+    private final Path replayFile;
+    private Replay.Recorder recorder; // null once a saved game is loaded, which no seed can reproduce
+    private final Path snapshotFile;
+    private volatile boolean saveRequested; // set by F5, handled by the next tick
 
-    private int highScore = 0;
-    private String highScorePath;
-    private String devPath = resourcesPath + "highscore.txt";
-    private String prodPath = "highscore.txt";
+    // The last ticks of the game, taken back a second at a time with Backspace
+    private static final int REWIND_SECONDS = 10;
+    private final RewindBuffer rewind;
+    private final int rewindStep; // ticks in a second
+    private volatile AudioEngine audio;
 
     // Additional getter methods needed for testing
-    public int getApplesEaten() { return applesEaten; }
+    public SnakeEngine getEngine() { return engine; }
+
+    public int getUnitSize() { return unitSize; }
+
+    public int getApplesEaten() { return engine.getApplesEaten(); }
+
+    /**
+     * Sets the controller that steers the snake, consulted by the game loop on
+     * every tick instead of the keyboard.
+     *
+     * @param controller The controller, or {@code null} to steer with the keyboard.
+     */
+    public void setController( SnakeController controller ) { this.controller = controller; }
+
+    public SnakeController getController() { return controller; }
+
+    /**
+     * Returns how long the last direction applied waited between its key press
+     * and the tick that applied it.
+     *
+     * @return The latency in nanoseconds, or 0 if no direction has been applied yet.
+     */
+    public long getInputLatencyNanos() { return inputLatencyNanos; }
 
-    public int getBodyParts() { return bodyParts; }
+    public int getBodyParts() { return engine.getBodyParts(); }
 
-    public boolean isRunning() { return running; }
+    public boolean isRunning() { return engine.isRunning(); }
 
-    public int[] getXCoordinates() { return x; }
+    /**
+     * Returns the apple image, waiting for it to be decoded if needed.
+     *
+     * @return The image, or {@code null} if it cannot be loaded.
+     */
+    public BufferedImage getAppleSprite() { return ASSETS.getImage( AssetManager.APPLE_SPRITE ); }
+
+    public GameMetrics getMetrics() { return metrics; }
 
-    public int[] getYCoordinates() { return y; }
+    /**
+     * Shows or hides the performance overlay.
+     *
+     * @param visible {@code true} to draw tick, frame and GC timings over the board.
+     */
+    public void setHudVisible( boolean visible ) { hudVisible = visible; }
 
-    public BufferedImage getAppleSprite() { return appleSprite; }
+    public boolean isHudVisible() { return hudVisible; }
 
     /**
      * Constructs a new GamePanel and initializes the game components including
      * setting up the UI and starting background music. This constructor also
      * sets the panel properties required for the game such as size, background color,
-     * and key listeners for controlling the snake.
+     * and key listeners for controlling the snake. The board size is read from
+     * system properties by {@link GameConfig#fromSystemProperties()}.
      */
-    public GamePanel()
+    public GamePanel() { this( GameConfig.fromSystemProperties() ); }
+
+    /**
+     * Constructs a new GamePanel for the board size given in the configuration.
+     * The game logic runs in cell coordinates; each cell is drawn
+     * {@link GameConfig#getUnitSize()} pixels wide.
+     *
+     * @param config The board size and unit size of the game.
+     */
+    public GamePanel( GameConfig config )
     {
-        random = new Random();
-        this.setPreferredSize( new Dimension( SCREEN_WIDTH, SCREEN_HEIGHT ) );
+        screenWidth = config.getScreenWidth();
+        screenHeight = config.getScreenHeight();
+        unitSize = config.getUnitSize();
+
+        random = new Random(); // Only picks the seed of each game
+        engine = new SnakeEngine( config.getColumns(), config.getRows(), random.nextLong() );
+        boardRenderer = new BoardRenderer( config.getColumns(), config.getRows(), unitSize, new Random() );
+        boardRenderer.setRainbowBody( useRainbowBodyColor );
+        this.setPreferredSize( new Dimension( screenWidth, screenHeight ) );
         this.setBackground( BACKGROUND_COLOR );
         this.setDoubleBuffered( true );            // Enable double buffering for smoother rendering
         this.setFocusable( true );                 // Allow the panel to receive keyboard input
         this.addKeyListener( new MyKeyAdapter() ); // Add key listener for controlling the snake
 
+        // Initialize the canvas the game is drawn on while it is running
+        canvas = new Canvas();
+        canvas.setBackground( BACKGROUND_COLOR );
+        canvas.setIgnoreRepaint( true ); // Frames are drawn by the game loop, not by AWT
+        canvas.setFocusable( false );    // Keep keyboard focus on the panel
+        this.add( canvas );
+
+        rewindStep = Math.max( 1, 1000 / config.getTickMillis() );
+        rewind = new RewindBuffer( REWIND_SECONDS * rewindStep );
+
+        // Initialize the loop that ticks the engine and renders frames
+        gameLoop = new GameLoop( config.getTickMillis(), config.getFrameRate(), new GameLoop.Handler() {
+            @Override public boolean tick() { return GamePanel.this.tick(); }
+
+            @Override public void render( double alpha ) { GamePanel.this.render( alpha ); }
+        }, metrics );
+
         // Initialize the color toggle button
         colorToggleButton = new JButton( "Rainbow Colors" );
         colorToggleButton.setFont( new Font( "Futura", Font.BOLD, 20 ) );
@@ -101,10 +202,11 @@ public class GamePanel extends JPanel implements ActionListener
             @Override public void actionPerformed( ActionEvent e )
             {
                 useRainbowBodyColor = !useRainbowBodyColor; // Toggle the color mode
+                boardRenderer.setRainbowBody( useRainbowBodyColor );
                 colorToggleButton.setText( useRainbowBodyColor ? "Rainbow Colors" : "Green Color" );
             }
         } );
-        colorToggleButton.setBounds( SCREEN_WIDTH / 2 - 75, SCREEN_HEIGHT - 180, 150, 40 );
+        colorToggleButton.setBounds( screenWidth / 2 - 75, screenHeight - 180, 150, 40 );
         colorToggleButton.setEnabled( false );
         colorToggleButton.setFocusable( false );
         this.add( colorToggleButton );
@@ -115,22 +217,30 @@ public class GamePanel extends JPanel implements ActionListener
         replayButton.addActionListener( new ActionListener() {
             @Override public void actionPerformed( ActionEvent e ) { restartGame(); }
         } );
-        replayButton.setBounds( SCREEN_WIDTH / 2 - 50, SCREEN_HEIGHT - 60, 100, 40 );
+        replayButton.setBounds( screenWidth / 2 - 50, screenHeight - 60, 100, 40 );
         replayButton.setEnabled( false );
         replayButton.setFocusable( true );
         this.add( replayButton );
 
-        initializeHighScore();
-        readHighScore();
+        // Nothing here waits for the disk: the first frames draw a plain apple until the sprite is decoded
+        ASSETS.preload( AssetManager.APPLE_SPRITE );
+        leaderboard = CompletableFuture.supplyAsync( () -> new Leaderboard( config.getDataDirectory() ) );
+        leaderboard.whenComplete( ( board, failure ) -> {
+            if ( failure != null )
+                System.err.println( "Problem loading the leaderboard, games will not be recorded: " + failure.getCause() );
+            repaint(); // Replace the placeholder if the game over screen is showing
+        } );
+        replayFile = config.getDataDirectory().resolve( Replay.LAST_GAME_FILE_NAME );
+        snapshotFile = config.getDataDirectory().resolve( GameSnapshot.QUICK_SAVE_FILE_NAME );
 
-        loadAppleSprite();
         startGame();
-        playMusic( resourcesPath + "DRIVE(chosic.com).mp3" );
+        playMusic( AssetManager.getUrl( AssetManager.MUSIC ) );
     }
 
     /**
-     * Initializes and starts the game by placing the first apple and starting
-     * the game timer which triggers periodic updates to the game state.
+     * Initializes and starts the game by resetting the engine and starting
+     * the game loop which triggers periodic updates to the game state.
+     * The loop only runs while the panel is displayable.
      */
     public void startGame()
     {
@@ -142,209 +252,405 @@ public class GamePanel extends JPanel implements ActionListener
         colorToggleButton.setEnabled( false );
         colorToggleButton.setVisible( false );
 
-        newApple();
-        running = true;
-        timer = new Timer( DELAY, this );
-        timer.start();
+        gameLoop.stop();
+        engine.reset( random.nextLong() );
+        recorder = new Replay.Recorder( engine );
+        rewind.clear();
+        input.reset( engine.getDirection() );
+        activeController = null; // Reset by the first tick of the new game
+        applyAppleSprite();
+        boardRenderer.invalidate();
+        boardRenderer.update( engine );
+        canvas.setVisible( true );
+        if ( isDisplayable() )
+            gameLoop.start();
+    }
+
+    /**
+     * Creates the canvas' buffer strategy, publishes the metrics over JMX and starts
+     * the game loop once the panel is shown in a window.
+     */
+    @Override public void addNotify()
+    {
+        super.addNotify();
+        metrics.register();
+        canvas.createBufferStrategy( 2 );
+        if ( engine.isRunning() )
+            gameLoop.start();
+    }
+
+    /**
+     * Stops the game loop when the panel is removed from its window.
+     */
+    @Override public void removeNotify()
+    {
+        gameLoop.stop();
+        metrics.unregister();
+        super.removeNotify();
     }
 
     /**
-     * Overrides the {@link JPanel#paintComponent(Graphics)} method to
-     * custom render the game's graphical elements such as the snake and apples.
-     * This method is called by the Swing framework whenever the panel needs redrawing.
+     * Lays out the buttons and stretches the canvas over the whole panel.
+     */
+    @Override public void doLayout()
+    {
+        super.doLayout();
+        canvas.setBounds( 0, 0, getWidth(), getHeight() );
+    }
+
+    /**
+     * Overrides the {@link JPanel#paintComponent(Graphics)} method to draw the game
+     * over screen. This method is called by the Swing framework whenever the panel
+     * needs redrawing, on the event dispatch thread. While the game loop runs it
+     * owns the engine and the board image and draws them on the canvas itself, so
+     * the board is only drawn here when the loop is stopped.
      *
      * @param g The {@link Graphics} context used for drawing.
      */
     public void paintComponent( Graphics g )
     {
         super.paintComponent( g );
-        draw( g );
+        if ( !engine.isRunning() )
+            gameOver( g ); // The loop changes nothing once the game is over
+        else if ( !gameLoop.isRunning() )
+            draw( g );
     }
 
     /**
      * Draws all game elements on this panel. If the game is running, it draws
      * the snake and the apple; if the game is over, it calls the gameOver method.
+     * Must not be called from another thread while the game loop is running.
      *
      * @param g The Graphics context used for drawing game elements.
      */
-    public void draw( Graphics g )
+    public void draw( Graphics g ) { draw( g, 1.0 ); }
+
+    /**
+     * Draws all game elements, with the snake's head interpolated between its
+     * previous cell and its current cell. The board is copied from the
+     * {@link BoardRenderer}'s image, which is kept up to date cell by cell.
+     *
+     * @param g The Graphics context used for drawing game elements.
+     * @param alpha How far the frame is between the last tick (0) and the next one (1).
+     */
+    private void draw( Graphics g, double alpha )
     {
-        if ( !running )
+        if ( !engine.isRunning() )
         {
             gameOver( g );
             return;
         }
 
-        // If the apple sprite is loaded, draw the apple sprite
-        if ( appleSprite != null )
-            g.drawImage( appleSprite, appleX, appleY, UNIT_SIZE, UNIT_SIZE, this );
-        else
-        { // Otherwise draw a colored oval
-            g.setColor( APPLE_COLOR );
-            g.fillOval( appleX, appleY, UNIT_SIZE, UNIT_SIZE );
-        }
+        boardRenderer.draw( g, engine, alpha );
+
+        // Draw the current score
+        scoreText.drawCentered( g, engine.getApplesEaten(), screenWidth, MEDIUM_FONT.getSize() );
+
+        if ( hudVisible )
+            drawHud( g );
+    }
 
-        // Draw the snake with the selected color mode
-        for ( int i = 0; i < bodyParts; i++ )
+    /**
+     * Draws the performance overlay in the top-left corner. The text is formatted
+     * again only a few times a second, so the numbers stay readable and drawing
+     * the overlay does not add to the frame times it reports.
+     *
+     * @param g The Graphics context used for drawing the overlay.
+     */
+    private void drawHud( Graphics g )
+    {
+        long now = System.nanoTime();
+        if ( hudLines[0] == null || now - hudUpdatedNanos >= HUD_REFRESH_NANOS )
         {
-            if ( useRainbowBodyColor )
-            {
-                Color randomBodyColor =
-                    new Color( random.nextInt( 255 ), random.nextInt( 255 ), random.nextInt( 255 ), 220 );
-                g.setColor( i == 0 ? HEAD_COLOR : randomBodyColor );
-            }
-            else
-            {
-                g.setColor( i == 0 ? HEAD_COLOR : BODY_COLOR );
-            }
-            g.fillRect( x[i], y[i], UNIT_SIZE, UNIT_SIZE );
+            LatencyHistogram ticks = metrics.getTickHistogram();
+            LatencyHistogram frames = metrics.getFrameHistogram();
+            hudLines[0] = String.format( "tick  p50 %6.2f  p99 %6.2f  max %6.2f ms", millis( ticks.getValueAtPercentile( 50 ) ),
+                                         millis( ticks.getValueAtPercentile( 99 ) ), millis( ticks.getMax() ) );
+            hudLines[1] = String.format( "frame p50 %6.2f  p99 %6.2f  max %6.2f ms", millis( frames.getValueAtPercentile( 50 ) ),
+                                         millis( frames.getValueAtPercentile( 99 ) ), millis( frames.getMax() ) );
+            hudLines[2] = "dropped ticks " + metrics.getDroppedTicks();
+            hudLines[3] = "gc " + metrics.getGcCount() + " collections, " + metrics.getGcTimeMillis() + " ms";
+            hudLines[4] = String.format( "input latency %.2f ms", millis( inputLatencyNanos ) );
+            hudUpdatedNanos = now;
         }
 
-        // // Draw the current score
-        drawCenteredText( g, "Score: " + applesEaten, MEDIUM_FONT, MEDIUM_FONT.getSize() );
+        g.setColor( HUD_BACKGROUND );
+        g.fillRect( HUD_X, HUD_Y, HUD_WIDTH, hudHeight() );
+        g.setFont( HUD_FONT );
+        g.setColor( Color.white );
+        for ( int i = 0; i < hudLines.length; i++ )
+            g.drawString( hudLines[i], HUD_X + 6, HUD_Y + ( i + 1 ) * HUD_LINE_HEIGHT );
     }
 
+    private int hudHeight() { return hudLines.length * HUD_LINE_HEIGHT + 6; }
+
+    private static double millis( long nanos ) { return nanos / 1_000_000.0; }
+
     /**
-     * Generates a new location for the apple randomly on the game panel.
-     * The method calculates random x and y coordinates within the game boundaries
-     * that align with the grid defined by UNIT_SIZE.
+     * Renders the game over screen.
+     * Displays the 'Game Over' text and the final score in the center of the panel.
+     * Also re-enables the replay button allowing the game to be restarted.
+     *
+     * @param g The Graphics context used for drawing the text and button.
      */
-    public void newApple()
+    public void gameOver( Graphics g )
     {
-        appleX = random.nextInt( (int)( SCREEN_WIDTH / UNIT_SIZE ) ) * UNIT_SIZE;
-        appleY = random.nextInt( (int)( SCREEN_HEIGHT / UNIT_SIZE ) ) * UNIT_SIZE;
+        int applesEaten = engine.getApplesEaten();
+
+        drawCenteredText( g, "Game Over", LARGE_FONT, screenHeight / 3 );
+        Leaderboard board = getLoadedLeaderboard();
+        String highScore = board != null ? Integer.toString( board.getHighScore() ) : leaderboard.isDone() ? "-" : "...";
+        drawCenteredText( g, "High Score: " + highScore, MEDIUM_FONT, screenHeight / 3 + LARGE_FONT.getSize() );
+        drawCenteredText( g, "Score: " + applesEaten, MEDIUM_FONT,
+                          screenHeight / 3 + LARGE_FONT.getSize() + MEDIUM_FONT.getSize() + 20 );
+
+        // Enable the color toggle button and replay button
+        setupReplayButton();
+        setupColorToggleButton();
     }
 
     /**
-     * Updates the position of the snake in the direction it is currently moving.
-     * This method shifts each segment of the snake forward in the array to simulate
-     * movement, with the head moving forward into the next grid position based on
-     * the current direction.
+     * Advances the engine by one tick with the next queued direction. Called from
+     * the game loop thread; once the game is over the game over screen is shown
+     * on the event dispatch thread, the game is submitted to the leaderboard, in
+     * place of its earlier result if it was taken back after ending, and the loop
+     * stops.
+     *
+     * @return {@code true} while the game is running.
      */
-    public void move()
+    private boolean tick()
     {
-        // Move the body parts of the snake
-        for ( int i = bodyParts; i > 0; i-- )
+        if ( saveRequested )
         {
-            x[i] = x[i - 1];
-            y[i] = y[i - 1];
+            saveRequested = false;
+            saveSnapshot();
         }
 
-        switch ( direction )
+        int applesEaten = engine.getApplesEaten();
+        char nextDirection = input.poll();
+        if ( nextDirection == InputBuffer.NONE )
+            nextDirection = engine.getDirection();
+        else
+            inputLatencyNanos = System.nanoTime() - input.getLastTimestamp();
+
+        SnakeController current = controller;
+        if ( current != null )
         {
-        case 'U':
-            y[0] = y[0] - UNIT_SIZE;
-            break;
+            if ( current != activeController )
+                current.reset( engine ); // Switched on, or a new game started
+            nextDirection = current.nextDirection( engine );
+        }
+        activeController = current;
 
-        case 'D':
-            y[0] = y[0] + UNIT_SIZE;
-            break;
+        rewind.record( engine );
+        boolean running = engine.step( nextDirection );
+        if ( recorder != null )
+            recorder.record( engine );
+        if ( running )
+        {
+            applyAppleSprite();
+            boardRenderer.update( engine );
+            if ( engine.getApplesEaten() != applesEaten )
+                playEffect( AudioEngine.EAT );
+            return true;
+        }
 
-        case 'L':
-            x[0] = x[0] - UNIT_SIZE;
-            break;
+        playEffect( AudioEngine.GAME_OVER );
 
-        case 'R':
-            x[0] = x[0] + UNIT_SIZE;
-            break;
-        }
+        // Written in the background, never while painting
+        Leaderboard.Entry entry = new Leaderboard.Entry( engine.getApplesEaten(), engine.getBodyParts(), engine.getTicks(),
+                                                         System.currentTimeMillis(), engine.getSeed() );
+        Leaderboard.Entry previous = submitted != null && submitted.getSeed() == entry.getSeed() ? submitted : null;
+        leaderboard.thenAccept( board -> { // At once unless it is still loading; never if it failed to load
+            if ( previous != null )
+                board.replace( previous, entry ); // Rewound or reloaded after it ended
+            else
+                board.submit( entry );
+        } );
+        submitted = entry;
+        saveReplay();
+        SwingUtilities.invokeLater( new Runnable() {
+            @Override public void run()
+            {
+                canvas.setVisible( false ); // Let Swing paint the game over screen and buttons
+                repaint();
+            }
+        } );
+        return false;
     }
 
     /**
-     * Checks if the snake's head has collided with an apple.
-     * If so, increases the length of the snake by one segment and increments the score.
-     * A new apple is then generated at a random location.
+     * Writes the replay of the game that just ended to the data directory,
+     * replacing the previous one. Called from the game loop thread once the game
+     * is over, so painting never waits for it.
      */
-    public void checkApple()
+    private void saveReplay()
     {
-        if ( ( x[0] == appleX ) && ( y[0] == appleY ) )
+        if ( recorder == null )
+            return;
+
+        try
         {
-            bodyParts++;
-            applesEaten++;
-            newApple();
+            recorder.toReplay( engine ).write( replayFile );
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "Problem writing replay file " + replayFile );
+            e.printStackTrace();
         }
     }
 
     /**
-     * Checks for collisions between the snake's head and its body or the borders of the game panel.
-     * If a collision is detected, it sets the running flag to false, effectively ending the game.
+     * Captures the game as it stands between two ticks, directions still queued
+     * included, and writes it to the quick save file in the background. Called from
+     * the game loop thread.
      */
-    public void checkCollisions()
+    private void saveSnapshot()
     {
-        // Check if the head of the snake collides with the body
-        for ( int i = bodyParts - 1; i > 0; i-- )
-        {
-            if ( ( x[0] == x[i] ) && ( y[0] == y[i] ) )
+        GameSnapshot snapshot = GameSnapshot.capture( engine, input.pending() );
+        ForkJoinPool.commonPool().execute( new Runnable() {
+            @Override public void run()
             {
-                running = false;
-                break; // No need to check further if collision is found
+                try
+                {
+                    snapshot.write( snapshotFile );
+                }
+                catch ( IOException e )
+                {
+                    System.err.println( "Problem writing snapshot file " + snapshotFile );
+                    e.printStackTrace();
+                }
             }
+        } );
+    }
+
+    /**
+     * Asks the game loop to save the game at the start of its next tick.
+     */
+    public void requestSave() { saveRequested = true; }
+
+    /**
+     * Replaces the game with the one in the quick save file and carries on playing it
+     * from there. Called on the event dispatch thread.
+     */
+    public void loadGame()
+    {
+        GameSnapshot snapshot;
+        try
+        {
+            snapshot = GameSnapshot.read( snapshotFile );
+        }
+        catch ( NoSuchFileException e )
+        {
+            return; // Nothing saved yet
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "Problem reading snapshot file " + snapshotFile + ": " + e.getMessage() );
+            return;
+        }
+        if ( snapshot.getColumns() != engine.getColumns() || snapshot.getRows() != engine.getRows() )
+        {
+            System.err.println( "Saved game is for a " + snapshot.getColumns() + "x" + snapshot.getRows() + " board" );
+            return;
         }
 
-        // Check if the head of the snake collides with left border
-        if ( x[0] < 0 )
-            running = false;
+        gameLoop.stop(); // Stop the current loop before touching the engine
 
-        // Check if the head of the snake collides with right border
-        else if ( x[0] >= SCREEN_WIDTH )
-            running = false;
+        snapshot.restore( engine );
+        recorder = null;
+        rewind.clear();
+        input.reset( engine.getDirection() );
+        char pending[] = snapshot.getPending();
+        for ( int i = 0; i < pending.length; i++ )
+            input.offer( pending[i], System.nanoTime() );
+        resumeGame();
+    }
 
-        // Check if the head of the snake collides with top border
-        else if ( y[0] < 0 )
-            running = false;
+    /**
+     * Takes the game back a second and carries on playing from there, even if the
+     * game was over. Called on the event dispatch thread.
+     *
+     * @return {@code false} if there was nothing to take back.
+     */
+    public boolean rewindGame()
+    {
+        gameLoop.stop(); // Stop the current loop before touching the engine
 
-        // Check if the head of the snake collides with bottom border
-        else if ( y[0] >= SCREEN_HEIGHT )
-            running = false;
+        if ( rewind.rewind( engine, rewindStep ) == 0 )
+        {
+            if ( engine.isRunning() && isDisplayable() )
+                gameLoop.start();
+            return false;
+        }
 
-        if ( !running )
-            timer.stop();
+        if ( recorder != null )
+            recorder.rewind( engine );
+        input.reset( engine.getDirection() );
+        resumeGame();
+        return true;
     }
 
     /**
-     * Renders the game over screen.
-     * Displays the 'Game Over' text and the final score in the center of the panel.
-     * Also re-enables the replay button allowing the game to be restarted.
-     *
-     * @param g The Graphics context used for drawing the text and button.
+     * Shows the board again and restarts the game loop after the engine was changed
+     * by loading or rewinding, hiding the game over buttons.
      */
-    public void gameOver( Graphics g )
+    private void resumeGame()
     {
-        highScore = Math.max( highScore, applesEaten );
-        writeHighScore();
+        activeController = null; // Reset by the next tick
+        boardRenderer.invalidate();
+        boardRenderer.update( engine );
 
-        drawCenteredText( g, "Game Over", LARGE_FONT, SCREEN_HEIGHT / 3 );
-        drawCenteredText( g, "High Score: " + readHighScore(), MEDIUM_FONT, SCREEN_HEIGHT / 3 + LARGE_FONT.getSize() );
-        drawCenteredText( g, "Score: " + applesEaten, MEDIUM_FONT,
-                          SCREEN_HEIGHT / 3 + LARGE_FONT.getSize() + MEDIUM_FONT.getSize() + 20 );
+        replayButton.setEnabled( false );
+        replayButton.setVisible( false );
+        colorToggleButton.setEnabled( false );
+        colorToggleButton.setVisible( false );
 
-        // Enable the color toggle button and replay button
-        setupReplayButton();
-        setupColorToggleButton();
+        canvas.setVisible( engine.isRunning() );
+        if ( isDisplayable() && engine.isRunning() )
+            gameLoop.start();
+
+        repaint();
     }
 
     /**
-     * Responds to timer events by updating the game state. This method
-     * moves the snake, checks for apples, and checks for collisions.
+     * Draws one frame from the game loop thread. Frames are drawn into the back
+     * buffer of the canvas and flipped onto the screen, the whole board copied from
+     * the {@link BoardRenderer}'s image each time. Until the canvas has a buffer
+     * strategy nothing is drawn, so Swing never paints from state the loop is
+     * changing. Once the game is over Swing paints the game over screen.
      *
-     * @param e The action event triggered by the timer.
+     * @param alpha How far the frame is between the last tick (0) and the next one (1).
      */
-    @Override public void actionPerformed( ActionEvent e )
+    private void render( double alpha )
     {
-        if ( running )
+        if ( !engine.isRunning() )
+            return;
+
+        BufferStrategy strategy = canvas.isDisplayable() ? canvas.getBufferStrategy() : null;
+        if ( strategy == null )
+            return;
+
+        do
         {
-            synchronized ( directionQueue )
+            do
             {
-                if ( !directionQueue.isEmpty() )
+                Graphics g = strategy.getDrawGraphics();
+                try
                 {
-                    direction = directionQueue.poll();
+                    draw( g, alpha ); // The board image covers the whole back buffer
                 }
-            }
-            move();
-            checkApple();
-            checkCollisions();
-        }
-        repaint();
+                finally
+                {
+                    g.dispose();
+                }
+            } while ( strategy.contentsRestored() );
+
+            strategy.show();
+        } while ( strategy.contentsLost() );
+
+        Toolkit.getDefaultToolkit().sync(); // Flush the frame now rather than when the window system gets to it
+        reportStartup();
     }
 
     /**
@@ -358,67 +664,108 @@ public class GamePanel extends JPanel implements ActionListener
          */
         @Override public void keyPressed( KeyEvent e )
         {
-            synchronized ( directionQueue )
+            char newDirection;
+            switch ( e.getKeyCode() )
             {
-                char newDirection = direction;
-                switch ( e.getKeyCode() )
+            case KeyEvent.VK_LEFT:
+            case KeyEvent.VK_A:
+                newDirection = 'L';
+                break;
+
+            case KeyEvent.VK_RIGHT:
+            case KeyEvent.VK_D:
+                newDirection = 'R';
+                break;
+
+            case KeyEvent.VK_UP:
+            case KeyEvent.VK_W:
+                newDirection = 'U';
+                break;
+
+            case KeyEvent.VK_DOWN:
+            case KeyEvent.VK_S:
+                newDirection = 'D';
+                break;
+
+            case KeyEvent.VK_SPACE:
+                if ( !engine.isRunning() && replayButton.isEnabled() )
                 {
-                case KeyEvent.VK_LEFT:
-                case KeyEvent.VK_A:
-                    newDirection = ( direction != 'R' ) ? 'L' : direction;
-                    break;
-
-                case KeyEvent.VK_RIGHT:
-                case KeyEvent.VK_D:
-                    newDirection = ( direction != 'L' ) ? 'R' : direction;
-                    break;
-
-                case KeyEvent.VK_UP:
-                case KeyEvent.VK_W:
-                    newDirection = ( direction != 'D' ) ? 'U' : direction;
-                    break;
-
-                case KeyEvent.VK_DOWN:
-                case KeyEvent.VK_S:
-                    newDirection = ( direction != 'U' ) ? 'D' : direction;
-                    break;
-
-                case KeyEvent.VK_SPACE:
-                    if ( !running && replayButton.isEnabled() )
-                    {
-                        restartGame();
-                    }
-                    return; // Skip direction queueing
+                    restartGame();
                 }
+                return; // Skip direction queueing
 
-                if ( newDirection != direction )
-                {
-                    if ( directionQueue.isEmpty() || directionQueue.getLast() != newDirection )
-                    {
-                        directionQueue.add( newDirection );
-                    }
-                }
+            case KeyEvent.VK_P:
+                setController( controller == autopilot ? null : autopilot );
+                return;
+
+            case KeyEvent.VK_H:
+                setController( controller == solver ? null : solver );
+                return;
+
+            case KeyEvent.VK_F3:
+                setHudVisible( !hudVisible );
+                return;
+
+            case KeyEvent.VK_F5:
+                if ( engine.isRunning() )
+                    requestSave();
+                return;
+
+            case KeyEvent.VK_F9:
+                loadGame();
+                return;
+
+            case KeyEvent.VK_BACK_SPACE:
+                rewindGame();
+                return;
+
+            default:
+                return;
             }
+
+            // Checked against the last queued direction, so quick turns can't reverse the snake
+            input.offer( newDirection, System.nanoTime() );
         }
     }
 
     /**
-     * Loads the apple sprite image from the resources directory.
-     * This method attempts to load the apple image file specified by {@code appleSprite.png}
-     * and assigns it to the {@code appleSprite} BufferedImage. If the image cannot be loaded,
-     * the error is printed to the standard error stream and the stack trace is printed.
+     * Gives the board the apple sprite once it has been decoded in the background.
+     * Called by whichever thread owns the board renderer: the game loop, or the event
+     * dispatch thread while the loop is stopped.
      */
-    private void loadAppleSprite()
+    private void applyAppleSprite()
     {
-        try
-        {
-            appleSprite = ImageIO.read( new File( resourcesPath + "appleSprite.png" ) );
-        }
-        catch ( IOException e )
-        {
-            System.err.println( "Unable to load apple sprite: " + e.getMessage() );
-            e.printStackTrace();
-        }
+        if ( appleSpriteApplied )
+            return;
+
+        CompletableFuture<BufferedImage> sprite = ASSETS.loadImage( AssetManager.APPLE_SPRITE );
+        if ( !sprite.isDone() )
+            return;
+
+        appleSpriteApplied = true;
+        BufferedImage image = sprite.join();
+        if ( image != null )
+            boardRenderer.setAppleSprite( image );
+    }
+
+    /**
+     * Prints how long the game took to show its first frame and to decode its
+     * images, once per run. With {@code -Dsnake.exitAfterStartup=true} the game then
+     * exits, which is how the class data sharing archive is trained.
+     */
+    private void reportStartup()
+    {
+        if ( !metrics.markFirstFrame() )
+            return;
+
+        // Called on the game loop thread, which must not wait for the decoder
+        BufferedImage sprite = ASSETS.getImageIfLoaded( AssetManager.APPLE_SPRITE );
+        long decodeNanos = ASSETS.getDecodeNanos( AssetManager.APPLE_SPRITE );
+        String status = sprite != null ? String.format( "decoded in %.1f ms", decodeNanos / 1e6 )
+                        : ASSETS.loadImage( AssetManager.APPLE_SPRITE ).isDone() ? "missing" : "still decoding";
+        System.out.printf( "First frame %d ms after launch; apple sprite %s%n", metrics.getStartupMillis(), status );
+        if ( Boolean.getBoolean( "snake.exitAfterStartup" ) )
+            System.exit( 0 );
     }
 
     /**
@@ -433,7 +780,7 @@ public class GamePanel extends JPanel implements ActionListener
         g.setFont( font );
         g.setColor( SCORE_COLOR );
         FontMetrics metrics = getFontMetrics( font );
-        int x = ( SCREEN_WIDTH - metrics.stringWidth( text ) ) / 2;
+        int x = ( screenWidth - metrics.stringWidth( text ) ) / 2;
         g.drawString( text, x, yPos );
     }
 
@@ -444,8 +791,8 @@ public class GamePanel extends JPanel implements ActionListener
     {
         int buttonWidth = 280;
         int buttonHeight = 50;
-        int buttonX = ( SCREEN_WIDTH - buttonWidth ) / 2;
-        int buttonY = SCREEN_HEIGHT - 180;
+        int buttonX = ( screenWidth - buttonWidth ) / 2;
+        int buttonY = screenHeight - 180;
 
         colorToggleButton.setBounds( buttonX, buttonY, buttonWidth, buttonHeight );
         colorToggleButton.setEnabled( true );
@@ -459,8 +806,8 @@ public class GamePanel extends JPanel implements ActionListener
     {
         int buttonWidth = 150;
         int buttonHeight = 50;
-        int buttonX = ( SCREEN_WIDTH - buttonWidth ) / 2;
-        int buttonY = SCREEN_HEIGHT - 120;
+        int buttonX = ( screenWidth - buttonWidth ) / 2;
+        int buttonY = screenHeight - 120;
 
         replayButton.setBounds( buttonX, buttonY, buttonWidth, buttonHeight );
         replayButton.setEnabled( true );
@@ -470,23 +817,21 @@ public class GamePanel extends JPanel implements ActionListener
     /**
      * Restarts the game by resetting the snake's body, score, and game state.
      * This method reinitializes the game components to their start conditions, hides the replay button,
-     * stops the current timer, and starts a new timer for fresh game updates.
+     * stops the current game loop, and starts it again for fresh game updates.
      */
     public void restartGame()
     {
-        // Reset the snake body parts
-        bodyParts = 6;
-        for ( int i = 0; i < bodyParts; i++ )
-        {
-            x[i] = 0; // Reset x position
-            y[i] = 0; // Reset y position
-        }
-
-        // Reset game state variables
-        applesEaten = 0;
-        directionQueue.clear();
-        direction = 'R';
-        running = true;
+        gameLoop.stop(); // Stop the current loop before touching the engine
+
+        // Reset the snake, score and game state variables
+        engine.reset( random.nextLong() );
+        recorder = new Replay.Recorder( engine );
+        rewind.clear();
+        input.reset( engine.getDirection() );
+        activeController = null; // Reset by the first tick of the new game
+        applyAppleSprite();
+        boardRenderer.invalidate();
+        boardRenderer.update( engine );
 
         // Disable the replay button until the game is over
         replayButton.setEnabled( false );
@@ -496,99 +841,72 @@ public class GamePanel extends JPanel implements ActionListener
         colorToggleButton.setEnabled( false );
         colorToggleButton.setVisible( false );
 
-        newApple();
-        timer.stop();                     // Stop the current timer
-        timer = new Timer( DELAY, this ); // Reinitialize the timer
-        timer.start();                    // Restart the timer
+        canvas.setVisible( true );
+        if ( isDisplayable() )
+            gameLoop.start(); // Restart the loop
 
         repaint(); // Repaint the game panel to refresh the screen
     }
 
     /**
-     * Plays background music from a specified file path. This method runs
-     * the music in a separate thread to ensure it does not block the GUI thread.
+     * Plays background music from a specified file path, looping it until the
+     * panel is shut down. The music is decoded and mixed on the audio engine's own
+     * thread, so this returns at once.
      *
      * @param filePath The path to the music file to be played.
      */
-    public void playMusic( String filePath )
+    public void playMusic( String filePath ) { playMusic( new AudioEngine( filePath ) ); }
+
+    /**
+     * Plays background music from a URL, such as a resource on the classpath.
+     *
+     * @param music The music to play, or {@code null} to play effects only.
+     */
+    public void playMusic( URL music ) { playMusic( AudioEngine.fromUrl( music ) ); }
+
+    private void playMusic( AudioEngine engine )
     {
-        new Thread( new Runnable() {
-            public void run()
-            {
-                try
-                {
-                    while ( true )
-                    { // Loop to allow the music to replay indefinitely
-                        FileInputStream fileInputStream = new FileInputStream( filePath );
-                        Player player = new Player( fileInputStream );
-                        player.play();
-                        player.close();
-                    }
-                }
-                catch ( Exception e )
-                {
-                    System.err.println( "Problem playing file " + filePath );
-                    e.printStackTrace();
-                }
-            }
-        } ).start();
+        if ( audio != null )
+            audio.close();
+
+        audio = engine;
+        audio.start();
     }
 
     /**
-     * Initializes high score management by setting the file path and reading the high score.
-     * This method determines the correct path for the high score file by checking if the
-     * development path exists; if not, it uses the production path. It then reads the
-     * high score from the determined file.
+     * Mixes a sound effect over the music, if music is playing.
+     *
+     * @param effect The effect to play.
      */
-    private void initializeHighScore()
+    private void playEffect( AudioEngine.Effect effect )
     {
-        highScorePath = new File( devPath ).exists() ? devPath : prodPath;
-        highScore = readHighScore(); // Adjust the readHighScore method to return int
+        AudioEngine current = audio;
+        if ( current != null )
+            current.play( effect );
     }
 
     /**
-     * Writes the current high score to the file.
-     * This method attempts to write the current high score to a designated file. If an error occurs
-     * during the file writing process, such as an IOException, the error is logged and the stack
-     * trace is printed. This ensures that the application can gracefully handle file system issues.
+     * Stops the game loop and the audio, withdraws the metrics from JMX and waits
+     * for the leaderboard to be written. Called when the window is closing.
      */
-    public void writeHighScore()
+    public void shutdown()
     {
-        try ( BufferedWriter writer = new BufferedWriter( new FileWriter( highScorePath ) ) )
-        {
-            writer.write( Integer.toString( highScore ) );
-        }
-        catch ( IOException e )
-        {
-            System.err.println( "Problem writing high score file " + highScorePath );
-            e.printStackTrace();
-        }
+        gameLoop.stop();
+        metrics.unregister();
+        if ( audio != null )
+            audio.close();
+        Leaderboard board = leaderboard.handle( ( loaded, failure ) -> loaded ).join(); // Wait for a load in progress
+        if ( board != null )
+            board.close();
     }
 
     /**
-     * Reads the high score from a file and returns it.
-     * This method checks if the high score file exists and reads the high score if available.
-     * If the file does not exist or no valid integer score is found, it returns 0. It handles
-     * the FileNotFoundException to ensure the application remains stable if the file is
-     * unexpectedly missing.
+     * Returns the leaderboard if it has been loaded, without waiting for it.
      *
-     * @return The high score read from the file, or 0 if the file does not exist or contains no valid score.
+     * @return The leaderboard, or {@code null} while it is loading or if it could not be loaded.
      */
-    private int readHighScore()
+    private Leaderboard getLoadedLeaderboard()
     {
-        File file = new File( highScorePath );
-        if ( !file.exists() )
-            return 0;
-
-        try ( Scanner scanner = new Scanner( file ) )
-        {
-            return scanner.hasNextInt() ? scanner.nextInt() : 0;
-        }
-        catch ( FileNotFoundException e )
-        {
-            System.err.println( "High score file not found: " + highScorePath );
-            e.printStackTrace();
-            return 0;
-        }
+        return leaderboard.state() == Future.State.SUCCESS ? leaderboard.resultNow() : null;
     }
 }
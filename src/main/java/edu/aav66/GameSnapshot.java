@@ -0,0 +1,451 @@
+package edu.aav66;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code GameSnapshot} class is the complete state of a game at the end of a tick:
+ * the board, the snake, the apple, the score, the state of the engine's random number
+ * generator and the directions still queued for the ticks to come. Restoring a
+ * snapshot into a seeded {@link SnakeEngine} continues the game exactly as it would
+ * have gone on, apples included.
+ *
+ * Snapshots are immutable. The body is kept as a window onto a history of the cells
+ * the head has entered, since the snake's body is always its last few head positions.
+ * A {@link Recorder} taking a snapshot every tick appends one cell to a history shared
+ * with the snapshots before it, so a snapshot costs a constant amount of memory and
+ * time however long the snake is. The history is copied only when it is full or when
+ * a game restored from an older snapshot goes a different way, which leaves the
+ * snapshots taken along the first way untouched.
+ *
+ * Snapshots are saved in a compact binary file: after a header come the board size,
+ * the seed and generator state, the score and tick, the apple, the head's cell and one
+ * four-bit code per other segment giving its direction from the segment before it,
+ * then the queued directions and a CRC32 of everything before it.
+ */
+public final class GameSnapshot
+{
+    // Name of the file in the data directory holding the quick save
+    public static final String QUICK_SAVE_FILE_NAME = "quick-save.snapshot";
+
+    // File layout
+    private static final int MAGIC = 0x534E5353; // "SNSS"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 8;    // magic, version, reserved
+
+    // Directions in the order of their codes
+    private static final String DIRECTIONS = "UDLR";
+
+    // History kept when a snapshot is taken of a game not recorded before
+    private static final int MIN_HISTORY = 64;
+
+    private final int columns;
+    private final int rows;
+    private final long seed;
+    private final long randomState;
+    private final long ticks;
+    private final int applesEaten;
+    private final int appleX;
+    private final int appleY;
+    private final char direction;
+    private final boolean running;
+    private final History history; // may be shared with other snapshots
+    private final int end;         // the body is the last length cells of the history before end
+    private final int length;
+    private final char pending[];  // directions queued for the next ticks, oldest first
+
+    /**
+     * The cells the head has entered, packed as in {@link SnakeBody}. Cells are only
+     * ever appended, by one {@link Recorder}, so every snapshot's window stays valid.
+     */
+    private static final class History
+    {
+        final int cells[];
+        int size;
+
+        History( int capacity ) { cells = new int[capacity]; }
+    }
+
+    /**
+     * Takes snapshots of a game, sharing the snake's history between snapshots of
+     * successive ticks. A recorder is used by one thread only.
+     */
+    public static final class Recorder
+    {
+        private History history;
+        private GameSnapshot last; // the snapshot the engine was last known to be at
+
+        /**
+         * Takes a snapshot of an engine. If the engine has made one tick since the
+         * last snapshot taken or restored by this recorder, only its new head is stored.
+         *
+         * @param engine The engine, which must have been built with a seed.
+         * @param pending The directions queued for the next ticks, oldest first.
+         * @return The snapshot.
+         */
+        public GameSnapshot take( SnakeEngine engine, char pending[] )
+        {
+            SnakeBody body = engine.getBody();
+            int length = body.size();
+
+            if ( follows( engine ) )
+            {
+                // Copy if full, or if the game went on differently from an older snapshot
+                if ( history.size != last.end || history.size == history.cells.length )
+                    history = copyOf( last.history, last.end, length - 1, length );
+                history.cells[history.size++] = SnakeBody.pack( body.getHeadX(), body.getHeadY() );
+            }
+            else
+            {
+                history = new History( Math.max( MIN_HISTORY, 2 * length ) );
+                for ( int i = length - 1; i >= 0; i-- )
+                    history.cells[history.size++] = SnakeBody.pack( body.getX( i ), body.getY( i ) );
+            }
+
+            last = new GameSnapshot( engine, history, history.size, length, pending.clone() );
+            return last;
+        }
+
+        /**
+         * Restores a snapshot into an engine; later snapshots taken by this recorder
+         * follow on from it.
+         *
+         * @param snapshot The snapshot to restore.
+         * @param engine The engine, which must have been built with a seed.
+         */
+        public void restore( GameSnapshot snapshot, SnakeEngine engine )
+        {
+            snapshot.restore( engine );
+            last = snapshot;
+            history = snapshot.history;
+        }
+
+        /**
+         * Returns whether the engine is one tick on from the last snapshot.
+         */
+        private boolean follows( SnakeEngine engine )
+        {
+            if ( last == null || !last.running || engine.getTicks() != last.ticks + 1 || engine.getSeed() != last.seed ||
+                 engine.getColumns() != last.columns || engine.getRows() != last.rows )
+                return false;
+
+            SnakeBody body = engine.getBody();
+            int length = body.size();
+            if ( length != last.length && length != last.length + 1 )
+                return false;
+
+            // The previous head must be the last cell of the snapshot's window
+            int previousHead = last.history.cells[last.end - 1];
+            return length < 2 || SnakeBody.pack( body.getX( 1 ), body.getY( 1 ) ) == previousHead;
+        }
+
+        /**
+         * Starts a new history with the last cells of a window onto another, with
+         * room for at least as many cells again.
+         */
+        private static History copyOf( History source, int end, int count, int length )
+        {
+            History copy = new History( Math.max( MIN_HISTORY, 2 * length ) );
+            System.arraycopy( source.cells, end - count, copy.cells, 0, count );
+            copy.size = count;
+            return copy;
+        }
+    }
+
+    /**
+     * Captures the state of an engine.
+     *
+     * @param engine The engine, which must have been built with a seed.
+     * @param pending The directions queued for the next ticks, oldest first.
+     * @return The snapshot.
+     */
+    public static GameSnapshot capture( SnakeEngine engine, char pending[] ) { return new Recorder().take( engine, pending ); }
+
+    private GameSnapshot( SnakeEngine engine, History history, int end, int length, char pending[] )
+    {
+        this( engine.getColumns(), engine.getRows(), engine.getSeed(), engine.getRandomState(), engine.getTicks(),
+              engine.getApplesEaten(), engine.getAppleX(), engine.getAppleY(), engine.getDirection(), engine.isRunning(),
+              history, end, length, pending );
+    }
+
+    private GameSnapshot( int columns, int rows, long seed, long randomState, long ticks, int applesEaten, int appleX,
+                          int appleY, char direction, boolean running, History history, int end, int length,
+                          char pending[] )
+    {
+        this.columns = columns;
+        this.rows = rows;
+        this.seed = seed;
+        this.randomState = randomState;
+        this.ticks = ticks;
+        this.applesEaten = applesEaten;
+        this.appleX = appleX;
+        this.appleY = appleY;
+        this.direction = direction;
+        this.running = running;
+        this.history = history;
+        this.end = end;
+        this.length = length;
+        this.pending = pending;
+    }
+
+    /**
+     * Restores the snapshot into an engine, which then plays on exactly as the game
+     * the snapshot was taken of.
+     *
+     * @param engine The engine, which must have been built with a seed.
+     * @throws IllegalArgumentException If the engine is of a different size or was built without a seed.
+     */
+    public void restore( SnakeEngine engine ) { engine.restore( this ); }
+
+    public int getColumns() { return columns; }
+
+    public int getRows() { return rows; }
+
+    public long getSeed() { return seed; }
+
+    long getRandomState() { return randomState; }
+
+    public long getTicks() { return ticks; }
+
+    public int getApplesEaten() { return applesEaten; }
+
+    public int getAppleX() { return appleX; }
+
+    public int getAppleY() { return appleY; }
+
+    public char getDirection() { return direction; }
+
+    public boolean isRunning() { return running; }
+
+    public int getBodyParts() { return length; }
+
+    /**
+     * Returns the column of a segment.
+     *
+     * @param i The segment number, where {@code 0} is the head.
+     * @return The column of the segment.
+     */
+    public int getX( int i ) { return SnakeBody.xOf( segment( i ) ); }
+
+    /**
+     * Returns the row of a segment.
+     *
+     * @param i The segment number, where {@code 0} is the head.
+     * @return The row of the segment.
+     */
+    public int getY( int i ) { return SnakeBody.yOf( segment( i ) ); }
+
+    /**
+     * Returns the directions that were queued for the ticks after the snapshot.
+     *
+     * @return A copy of the directions, oldest first.
+     */
+    public char[] getPending() { return pending.clone(); }
+
+    private int segment( int i )
+    {
+        if ( i < 0 || i >= length )
+            throw new IndexOutOfBoundsException( "Segment " + i + " out of bounds for length " + length );
+        return history.cells[end - 1 - i];
+    }
+
+    /**
+     * Encodes the snapshot in the binary file format.
+     *
+     * @return The encoded snapshot.
+     */
+    public byte[] toBytes()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( HEADER_SIZE + 18 + 10 * VarInt.MAX_SIZE + length / 2 + pending.length + 4 );
+        buffer.putInt( MAGIC ).putShort( VERSION ).putShort( (short)0 );
+        VarInt.putVarLong( buffer, columns );
+        VarInt.putVarLong( buffer, rows );
+        buffer.putLong( seed );
+        buffer.putLong( randomState );
+        VarInt.putVarLong( buffer, ticks );
+        VarInt.putVarLong( buffer, applesEaten );
+        VarInt.putSignedVarLong( buffer, appleX );
+        VarInt.putSignedVarLong( buffer, appleY );
+        buffer.put( (byte)DIRECTIONS.indexOf( direction ) );
+        buffer.put( (byte)( running ? 1 : 0 ) );
+
+        // The head, then each segment as a step from the one before: 0 for the same cell, 1 + direction otherwise
+        VarInt.putVarLong( buffer, length );
+        VarInt.putSignedVarLong( buffer, getX( 0 ) );
+        VarInt.putSignedVarLong( buffer, getY( 0 ) );
+        int packed = 0;
+        for ( int i = 1; i < length; i++ )
+        {
+            int code = stepCode( getX( i ) - getX( i - 1 ), getY( i ) - getY( i - 1 ) );
+            if ( i % 2 == 1 )
+                packed = code;
+            else
+                buffer.put( (byte)( packed | code << 4 ) );
+        }
+        if ( length % 2 == 0 )
+            buffer.put( (byte)packed );
+
+        VarInt.putVarLong( buffer, pending.length );
+        for ( int i = 0; i < pending.length; i++ )
+            buffer.put( (byte)DIRECTIONS.indexOf( pending[i] ) );
+
+        CRC32 crc = new CRC32();
+        crc.update( buffer.array(), 0, buffer.position() );
+        buffer.putInt( (int)crc.getValue() );
+        return Arrays.copyOf( buffer.array(), buffer.position() );
+    }
+
+    private static int stepCode( int dx, int dy )
+    {
+        if ( dx == 0 && dy == 0 )
+            return 0;
+        if ( Math.abs( dx ) + Math.abs( dy ) != 1 )
+            throw new IllegalStateException( "Segments are not adjacent" );
+        return 1 + ( dy < 0 ? 0 : dy > 0 ? 1 : dx < 0 ? 2 : 3 );
+    }
+
+    /**
+     * Decodes a snapshot from the binary file format.
+     *
+     * @param bytes The encoded snapshot.
+     * @return The snapshot.
+     * @throws IOException If the bytes are not a valid snapshot.
+     */
+    public static GameSnapshot fromBytes( byte bytes[] ) throws IOException
+    {
+        if ( bytes.length < HEADER_SIZE + 4 )
+            throw new IOException( "Snapshot is truncated" );
+
+        CRC32 crc = new CRC32();
+        crc.update( bytes, 0, bytes.length - 4 );
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        if ( buffer.getInt( bytes.length - 4 ) != (int)crc.getValue() )
+            throw new IOException( "Snapshot checksum does not match" );
+        if ( buffer.getInt() != MAGIC || buffer.getShort() != VERSION )
+            throw new IOException( "Not a snapshot file" );
+        buffer.getShort(); // Reserved
+        buffer.limit( bytes.length - 4 );
+
+        try
+        {
+            long columns = VarInt.getVarLong( buffer );
+            long rows = VarInt.getVarLong( buffer );
+            if ( columns < 2 || rows < 1 || columns > GameConfig.MAX_DIMENSION || rows > GameConfig.MAX_DIMENSION )
+                throw new IOException( "Invalid board size " + columns + "x" + rows );
+
+            long seed = buffer.getLong();
+            long randomState = buffer.getLong();
+            long ticks = VarInt.getVarLong( buffer );
+            int applesEaten = (int)VarInt.getVarLong( buffer );
+            int appleX = (int)VarInt.getSignedVarLong( buffer );
+            int appleY = (int)VarInt.getSignedVarLong( buffer );
+            char direction = DIRECTIONS.charAt( buffer.get() & 3 );
+            boolean running = buffer.get() != 0;
+
+            long length = VarInt.getVarLong( buffer );
+            if ( length < 1 || length > SnakeEngine.getMaxBodyParts( (int)columns, (int)rows ) || length / 2 > buffer.remaining() )
+                throw new IOException( "Invalid snake length " + length );
+
+            History history = new History( (int)length );
+            int x = (int)VarInt.getSignedVarLong( buffer );
+            int y = (int)VarInt.getSignedVarLong( buffer );
+            int cells[] = history.cells;
+            cells[(int)length - 1] = SnakeBody.pack( x, y );
+            int packed = 0;
+            for ( int i = 1; i < length; i++ )
+            {
+                if ( i % 2 == 1 )
+                    packed = buffer.get();
+                int code = ( i % 2 == 1 ? packed : packed >> 4 ) & 0xF;
+                if ( code > 4 )
+                    throw new IOException( "Invalid segment in snapshot" );
+                if ( code > 0 )
+                {
+                    x += code == 3 ? -1 : code == 4 ? 1 : 0;
+                    y += code == 1 ? -1 : code == 2 ? 1 : 0;
+                }
+                if ( x < 0 || x >= columns || y < 0 || y >= rows )
+                    throw new IOException( "Segment off the board in snapshot" );
+                cells[(int)length - 1 - i] = SnakeBody.pack( x, y );
+            }
+            history.size = (int)length;
+
+            int pendingCount = (int)VarInt.getVarLong( buffer );
+            if ( pendingCount < 0 || pendingCount > buffer.remaining() )
+                throw new IOException( "Snapshot is truncated" );
+            char pending[] = new char[pendingCount];
+            for ( int i = 0; i < pendingCount; i++ )
+                pending[i] = DIRECTIONS.charAt( buffer.get() & 3 );
+
+            return new GameSnapshot( (int)columns, (int)rows, seed, randomState, ticks, applesEaten, appleX, appleY,
+                                     direction, running, history, (int)length, (int)length, pending );
+        }
+        catch ( BufferUnderflowException e )
+        {
+            throw new IOException( "Snapshot is truncated", e );
+        }
+    }
+
+    /**
+     * Writes the snapshot to a file through a temporary file moved over it, creating
+     * its directory if needed, so a crash never leaves half a snapshot behind.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write( Path file ) throws IOException
+    {
+        Path target = file.toAbsolutePath();
+        Files.createDirectories( target.getParent() );
+        ByteBuffer buffer = ByteBuffer.wrap( toBytes() );
+
+        Path temp = target.resolveSibling( target.getFileName() + ".tmp" );
+        try ( FileChannel channel = FileChannel.open( temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                      StandardOpenOption.TRUNCATE_EXISTING ) )
+        {
+            while ( buffer.hasRemaining() )
+                channel.write( buffer );
+            channel.force( false );
+        }
+
+        try
+        {
+            Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+    /**
+     * Reads a snapshot from a file.
+     *
+     * @param file The file to read.
+     * @return The snapshot.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static GameSnapshot read( Path file ) throws IOException
+    {
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            long size = channel.size();
+            if ( size > Integer.MAX_VALUE )
+                throw new IOException( "Snapshot is too large" );
+
+            ByteBuffer buffer = ByteBuffer.allocate( (int)size );
+            while ( buffer.hasRemaining() && channel.read( buffer ) >= 0 )
+                ;
+            return fromBytes( buffer.array() );
+        }
+    }
+}
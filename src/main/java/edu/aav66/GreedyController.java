@@ -0,0 +1,50 @@
+package edu.aav66;
+
+/**
+ * The {@code GreedyController} class steers the snake straight toward the apple,
+ * preferring the move that closes the distance most and skipping any move that would
+ * hit a wall or the body on the next tick. It looks no further ahead than that, so
+ * it is cheap and a useful baseline for smarter controllers.
+ */
+public final class GreedyController implements SnakeController
+{
+    private static final String DIRECTIONS = "UDLR";
+    private static final int DX[] = { 0, 0, -1, 1 };
+    private static final int DY[] = { -1, 1, 0, 0 };
+
+    @Override public char nextDirection( SnakeEngine engine )
+    {
+        int headX = engine.getHeadX();
+        int headY = engine.getHeadY();
+        char current = engine.getDirection();
+        char best = current;
+        int bestDistance = Integer.MAX_VALUE;
+
+        for ( int d = 0; d < 4; d++ )
+        {
+            char direction = DIRECTIONS.charAt( d );
+            int x = headX + DX[d];
+            int y = headY + DY[d];
+            if ( !SnakeEngine.isValidTurn( current, direction ) || !isFree( engine, x, y ) )
+                continue;
+
+            int distance = Math.abs( engine.getAppleX() - x ) + Math.abs( engine.getAppleY() - y );
+            if ( distance < bestDistance )
+            {
+                best = direction;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns whether the head can move into a cell next tick. The tail cell counts
+     * as occupied, since it stays put if the snake eats.
+     */
+    private static boolean isFree( SnakeEngine engine, int x, int y )
+    {
+        return x >= 0 && x < engine.getColumns() && y >= 0 && y < engine.getRows() &&
+            !engine.getOccupancy().isOccupied( y * engine.getColumns() + x );
+    }
+}
@@ -0,0 +1,191 @@
+package edu.aav66;
+
+/**
+ * The {@code HamiltonianController} class plays a perfect game: it steers the snake
+ * along a {@link HamiltonianCycle}, so the snake can never run into itself, and cuts
+ * across the cycle toward the apple where that is safe.
+ *
+ * As long as the snake only ever moves forward along the cycle, its body lies in
+ * cycle order from tail to head, and every cell ahead of the head and before the tail
+ * is free. A shortcut to a neighbouring cell in that stretch keeps the body in order,
+ * so it is always safe; of those, the one closest to the apple along the cycle
+ * without passing it is taken. Every decision looks at four cells and does a few
+ * subtractions against the precomputed cycle, whatever the size of the board.
+ *
+ * The body is in order when the steps along the cycle from each segment to the one
+ * before it add up to no more than the distance from the tail to the head, and that
+ * sum is kept up to date as the head moves and the tail drops. A snake handed over in
+ * the middle of a game, after another controller or the player steered it, is usually
+ * not in order. It is then steered by the {@link AutopilotController} until its
+ * segments are far enough along the cycle ahead of the head that following the cycle
+ * reaches each of them only after the tail has left it; from there it follows the
+ * cycle, and once the old segments have gone the body is in order again. The same
+ * fallback plays on boards with no Hamiltonian cycle.
+ */
+public final class HamiltonianController implements SnakeController
+{
+    private static final int DX[] = { 0, 0, -1, 1 };
+    private static final int DY[] = { -1, 1, 0, 0 };
+
+    private HamiltonianCycle cycle;
+    private final AutopilotController autopilot = new AutopilotController();
+
+    // Sum of the steps along the cycle between successive segments, as of the last decision
+    private long span;
+    private long lastTicks = -1;
+    private int lastHead;
+    private int lastTail;
+    private int lastParts;
+
+    private boolean following; // following the cycle until the body is back in order
+
+    @Override public void reset( SnakeEngine engine )
+    {
+        prepare( engine );
+        autopilot.reset( engine );
+        lastTicks = -1;
+        following = false;
+    }
+
+    @Override public char nextDirection( SnakeEngine engine )
+    {
+        prepare( engine );
+        if ( cycle == null )
+            return autopilot.nextDirection( engine );
+
+        int columns = engine.getColumns();
+        int headX = engine.getHeadX();
+        int headY = engine.getHeadY();
+        int head = headY * columns + headX;
+        SnakeBody body = engine.getBody();
+        int tail = body.getTailY() * columns + body.getTailX();
+        int successor = cycle.next( head );
+
+        track( engine, head, tail );
+        if ( span != cycle.distance( tail, head ) )
+            return regainOrder( engine, head, tail, successor );
+        following = false;
+
+        // Stacked starting segments free their cell late, so don't cut ahead of them
+        if ( engine.getBodyParts() != engine.getOccupancy().getOccupiedCount() )
+            return directionTo( head, successor, columns );
+
+        int room = cycle.distance( head, tail ); // Free cells ahead, plus one
+        int apple = engine.getAppleX() < 0 ? -1 : engine.getAppleY() * columns + engine.getAppleX();
+        int toApple = apple < 0 ? 0 : cycle.distance( head, apple );
+
+        int best = successor;
+        int bestSkip = 1;
+        for ( int d = 0; d < 4; d++ )
+        {
+            int x = headX + DX[d];
+            int y = headY + DY[d];
+            if ( x < 0 || x >= columns || y < 0 || y >= engine.getRows() )
+                continue;
+
+            int cell = y * columns + x;
+            int skip = cycle.distance( head, cell );
+            if ( skip > bestSkip && skip < room && skip <= toApple )
+            {
+                best = cell;
+                bestSkip = skip;
+            }
+        }
+        return directionTo( head, best, columns );
+    }
+
+    /**
+     * Brings the sum of the steps between segments up to date, from the cells the head
+     * entered and the tail left since the last decision, or by adding up every step if
+     * the engine did not make exactly one tick since.
+     */
+    private void track( SnakeEngine engine, int head, int tail )
+    {
+        SnakeBody body = engine.getBody();
+        int columns = engine.getColumns();
+        int parts = body.size();
+        boolean oneTick = lastTicks >= 0 && engine.getTicks() == lastTicks + 1 && parts >= 2 &&
+                          body.getY( 1 ) * columns + body.getX( 1 ) == lastHead;
+
+        if ( oneTick && parts == lastParts )
+            span += cycle.distance( lastHead, head ) - cycle.distance( lastTail, tail );
+        else if ( oneTick && parts == lastParts + 1 && tail == lastTail )
+            span += cycle.distance( lastHead, head ); // Grew, so the tail stayed
+        else
+        {
+            span = 0;
+            for ( int i = 1; i < parts; i++ )
+                span += cycle.distance( body.getY( i ) * columns + body.getX( i ), body.getY( i - 1 ) * columns + body.getX( i - 1 ) );
+        }
+
+        lastTicks = engine.getTicks();
+        lastHead = head;
+        lastTail = tail;
+        lastParts = parts;
+    }
+
+    /**
+     * Steers a snake whose body is out of cycle order. Following the cycle from the
+     * head is started once it is safe, and kept up while the next cell is free;
+     * otherwise the autopilot steers.
+     */
+    private char regainOrder( SnakeEngine engine, int head, int tail, int successor )
+    {
+        int columns = engine.getColumns();
+        if ( !following )
+            following = canFollow( engine, head );
+
+        // The tail leaves its cell this tick, unless segments are stacked on it
+        boolean free = !engine.getOccupancy().isOccupied( successor ) ||
+                       ( successor == tail && engine.getBodyParts() == engine.getOccupancy().getOccupiedCount() );
+        if ( following && free )
+            return directionTo( head, successor, columns );
+
+        following = false;
+        return autopilot.nextDirection( engine );
+    }
+
+    /**
+     * Returns whether the head can follow the cycle until every current segment has
+     * gone: a segment {@code j} places behind the head leaves its cell after the tail
+     * has made {@code parts - j} more steps, one more if the apple is eaten on the way,
+     * and the head must not reach the cell before then.
+     */
+    private boolean canFollow( SnakeEngine engine, int head )
+    {
+        SnakeBody body = engine.getBody();
+        int columns = engine.getColumns();
+        int parts = body.size();
+        int toApple = engine.getAppleX() < 0 ? Integer.MAX_VALUE
+                                             : cycle.distance( head, engine.getAppleY() * columns + engine.getAppleX() );
+        for ( int j = 1; j < parts; j++ )
+        {
+            int reached = cycle.distance( head, body.getY( j ) * columns + body.getX( j ) );
+            int leaves = parts - j + ( toApple < reached ? 1 : 0 );
+            if ( reached < leaves )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Looks up the cycle for the engine's board, or leaves it unset if the board has none.
+     */
+    private void prepare( SnakeEngine engine )
+    {
+        int columns = engine.getColumns();
+        int rows = engine.getRows();
+        if ( cycle != null && cycle.getColumns() == columns && cycle.getRows() == rows )
+            return;
+
+        cycle = HamiltonianCycle.exists( columns, rows ) ? HamiltonianCycle.forBoard( columns, rows ) : null;
+        lastTicks = -1;
+        following = false;
+    }
+
+    private static char directionTo( int from, int to, int columns )
+    {
+        int delta = to - from;
+        return delta == -columns ? 'U' : delta == columns ? 'D' : delta == -1 ? 'L' : 'R';
+    }
+}
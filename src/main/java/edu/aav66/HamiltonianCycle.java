@@ -0,0 +1,139 @@
+package edu.aav66;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code HamiltonianCycle} class is a closed path through every cell of a board,
+ * moving one cell at a time, stored as two primitive tables: the position of each
+ * cell along the cycle and the cell at each position. The distance from one cell to
+ * another along the cycle is then a subtraction.
+ *
+ * A cycle exists when the board is at least 2x2 and has an even number of rows or
+ * columns. Cycles are immutable and built once per board size, then shared.
+ */
+public final class HamiltonianCycle
+{
+    private static final ConcurrentHashMap<Long, HamiltonianCycle> CACHE = new ConcurrentHashMap<>();
+
+    private final int columns;
+    private final int rows;
+    private final int order[]; // position of each cell along the cycle
+    private final int cells[]; // cell at each position along the cycle
+    private int size;
+
+    /**
+     * Returns whether a board has a Hamiltonian cycle.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @return {@code true} if {@link #forBoard(int, int)} can build a cycle.
+     */
+    public static boolean exists( int columns, int rows )
+    {
+        return columns >= 2 && rows >= 2 && ( columns % 2 == 0 || rows % 2 == 0 );
+    }
+
+    /**
+     * Returns the cycle for a board size, building it on first use.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @return The cycle, which starts in the top-left cell and continues to its right or below it.
+     * @throws IllegalArgumentException If the board has no Hamiltonian cycle.
+     */
+    public static HamiltonianCycle forBoard( int columns, int rows )
+    {
+        if ( !exists( columns, rows ) )
+            throw new IllegalArgumentException( "A " + columns + "x" + rows + " board has no Hamiltonian cycle" );
+
+        return CACHE.computeIfAbsent( (long)columns << 32 | rows, key -> new HamiltonianCycle( columns, rows ) );
+    }
+
+    /**
+     * Builds a cycle that runs along the first row, snakes back and forth through the
+     * rest of the board leaving the first column free, and returns up the first
+     * column. If the number of rows is odd the same shape is built transposed.
+     */
+    private HamiltonianCycle( int columns, int rows )
+    {
+        this.columns = columns;
+        this.rows = rows;
+        order = new int[columns * rows];
+        cells = new int[columns * rows];
+
+        if ( rows % 2 == 0 )
+        {
+            for ( int x = 0; x < columns; x++ )
+                add( x, 0 );
+            for ( int y = 1; y < rows; y++ )
+                for ( int i = 1; i < columns; i++ )
+                    add( y % 2 == 1 ? columns - i : i, y );
+            for ( int y = rows - 1; y >= 1; y-- )
+                add( 0, y );
+        }
+        else
+        {
+            for ( int y = 0; y < rows; y++ )
+                add( 0, y );
+            for ( int x = 1; x < columns; x++ )
+                for ( int i = 1; i < rows; i++ )
+                    add( x, x % 2 == 1 ? rows - i : i );
+            for ( int x = columns - 1; x >= 1; x-- )
+                add( x, 0 );
+        }
+    }
+
+    private void add( int x, int y )
+    {
+        int cell = y * columns + x;
+        order[cell] = size;
+        cells[size++] = cell;
+    }
+
+    /**
+     * Returns the position of a cell along the cycle.
+     *
+     * @param cell The index of the cell.
+     * @return The position, from 0 for the top-left cell.
+     */
+    public int getOrder( int cell ) { return order[cell]; }
+
+    /**
+     * Returns the cell at a position along the cycle.
+     *
+     * @param position The position.
+     * @return The index of the cell.
+     */
+    public int getCell( int position ) { return cells[position]; }
+
+    /**
+     * Returns the cell after another along the cycle.
+     *
+     * @param cell The index of the cell.
+     * @return The index of the next cell.
+     */
+    public int next( int cell )
+    {
+        int position = order[cell] + 1;
+        return cells[position == size ? 0 : position];
+    }
+
+    /**
+     * Returns how many steps along the cycle lead from one cell to another.
+     *
+     * @param from The index of the cell to start from.
+     * @param to The index of the cell to reach.
+     * @return The distance, from 0 to {@code size() - 1}.
+     */
+    public int distance( int from, int to )
+    {
+        int distance = order[to] - order[from];
+        return distance < 0 ? distance + size : distance;
+    }
+
+    public int size() { return size; }
+
+    public int getColumns() { return columns; }
+
+    public int getRows() { return rows; }
+}
@@ -0,0 +1,141 @@
+package edu.aav66;
+
+/**
+ * The {@code InputBuffer} class passes direction changes from the thread reading the
+ * keyboard to the thread stepping the game without locks or allocation. It is a
+ * bounded ring of byte-encoded directions, each with the time it was entered, for one
+ * producer and one consumer: the producer publishes a slot by advancing the volatile
+ * write index after filling it, and the consumer frees it by advancing the volatile
+ * read index after reading it.
+ *
+ * A direction is validated against the last one queued rather than the one the snake
+ * is moving in, since that is the direction the snake will have turned to by the time
+ * the new one is applied. Fast key sequences such as up then left while moving right
+ * are kept, and no sequence can reverse the snake into its body.
+ */
+public final class InputBuffer
+{
+    // Returned by poll() when no direction is queued
+    public static final char NONE = 0;
+
+    // Directions in the order of their byte codes
+    private static final String DIRECTIONS = "UDLR";
+
+    private final byte directions[];
+    private final long timestamps[];
+    private final int mask;
+
+    private volatile long writeIndex; // next slot to fill, written by the producer only
+    private volatile long readIndex;  // next slot to read, written by the consumer only
+
+    // Owned by the producer
+    private char lastQueued;
+
+    // Owned by the consumer
+    private long lastTimestamp;
+
+    /**
+     * Constructs a new {@code InputBuffer}.
+     *
+     * @param capacity The number of directions that can be queued; rounded up to a power of two.
+     * @param direction The direction the snake starts in.
+     */
+    public InputBuffer( int capacity, char direction )
+    {
+        if ( capacity < 1 || capacity > 1 << 16 )
+            throw new IllegalArgumentException( "Capacity must be between 1 and 65536: " + capacity );
+
+        int size = capacity == 1 ? 1 : Integer.highestOneBit( capacity - 1 ) << 1;
+        directions = new byte[size];
+        timestamps = new long[size];
+        mask = size - 1;
+        lastQueued = direction;
+    }
+
+    /**
+     * Queues a direction. Called by the producer only. The direction is dropped if it
+     * is the same as or the reverse of the last direction queued, or if the buffer is full.
+     *
+     * @param direction The direction ('U', 'D', 'L' or 'R').
+     * @param timestamp When the direction was entered, from {@link System#nanoTime()}.
+     * @return {@code true} if the direction was queued.
+     */
+    public boolean offer( char direction, long timestamp )
+    {
+        if ( direction == lastQueued || !SnakeEngine.isValidTurn( lastQueued, direction ) )
+            return false;
+
+        long write = writeIndex;
+        if ( write - readIndex == directions.length )
+            return false;
+
+        int slot = (int)write & mask;
+        directions[slot] = (byte)DIRECTIONS.indexOf( direction );
+        timestamps[slot] = timestamp;
+        writeIndex = write + 1; // Publishes the slot
+        lastQueued = direction;
+        return true;
+    }
+
+    /**
+     * Takes the oldest queued direction. Called by the consumer only.
+     *
+     * @return The direction, or {@link #NONE} if none is queued.
+     */
+    public char poll()
+    {
+        long read = readIndex;
+        if ( read == writeIndex )
+            return NONE;
+
+        int slot = (int)read & mask;
+        char direction = DIRECTIONS.charAt( directions[slot] );
+        lastTimestamp = timestamps[slot];
+        readIndex = read + 1; // Frees the slot
+        return direction;
+    }
+
+    /**
+     * Returns the queued directions without taking them. Called by the consumer only.
+     *
+     * @return The directions, oldest first.
+     */
+    public char[] pending()
+    {
+        long read = readIndex;
+        char pending[] = new char[(int)( writeIndex - read )];
+        for ( int i = 0; i < pending.length; i++ )
+            pending[i] = DIRECTIONS.charAt( directions[(int)( read + i ) & mask] );
+        return pending;
+    }
+
+    /**
+     * Returns when the direction last returned by {@link #poll()} was entered.
+     * Called by the consumer only.
+     *
+     * @return The timestamp, from {@link System#nanoTime()}.
+     */
+    public long getLastTimestamp() { return lastTimestamp; }
+
+    /**
+     * Returns the number of directions queued. Exact only when called by the
+     * producer or the consumer.
+     *
+     * @return The number of directions queued.
+     */
+    public int size() { return (int)( writeIndex - readIndex ); }
+
+    public int getCapacity() { return directions.length; }
+
+    /**
+     * Drops every queued direction and starts validating against a new direction.
+     * Neither the producer nor the consumer may be using the buffer at the same time.
+     *
+     * @param direction The direction the snake starts in.
+     */
+    public void reset( char direction )
+    {
+        readIndex = writeIndex;
+        lastQueued = direction;
+    }
+}
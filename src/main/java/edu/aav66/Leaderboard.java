@@ -0,0 +1,435 @@
+package edu.aav66;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code Leaderboard} class keeps the best games played, highest score first, and
+ * persists them in an append-only binary log in the data directory.
+ *
+ * The log starts with a header and holds fixed-size records, each ending in a CRC32 of
+ * its fields. A finished game that makes the leaderboard is appended as one record in
+ * the background, so a crash can at worst tear the last record, which is then skipped
+ * when the log is read. Once the log holds many more records than the leaderboard
+ * keeps, it is compacted into a new file with only the current entries, which replaces
+ * the old one with an atomic move. At startup the log is memory-mapped and scanned in
+ * one pass.
+ */
+public final class Leaderboard
+{
+    public static final int DEFAULT_CAPACITY = 10;
+    public static final String FILE_NAME = "leaderboard.log";
+
+    // Log layout
+    private static final int MAGIC = 0x534E4C42; // "SNLB"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 8;    // magic, version, reserved
+    private static final int RECORD_SIZE = 36;   // score, length, ticks, timestamp, seed, crc
+
+    // Compact once the log holds this many times more records than the leaderboard keeps
+    private static final int COMPACT_FACTOR = 4;
+
+    /**
+     * A finished game on the leaderboard.
+     */
+    public static final class Entry implements Comparable<Entry>
+    {
+        private final int score;
+        private final int length;
+        private final long ticks;
+        private final long timestamp;
+        private final long seed;
+
+        /**
+         * Constructs a new {@code Entry}.
+         *
+         * @param score The number of apples eaten.
+         * @param length The length of the snake at the end of the game.
+         * @param ticks The number of ticks the game lasted.
+         * @param timestamp When the game ended, in milliseconds since the epoch.
+         * @param seed The seed the game was played with, or 0 if unknown.
+         */
+        public Entry( int score, int length, long ticks, long timestamp, long seed )
+        {
+            this.score = score;
+            this.length = length;
+            this.ticks = ticks;
+            this.timestamp = timestamp;
+            this.seed = seed;
+        }
+
+        public int getScore() { return score; }
+
+        public int getLength() { return length; }
+
+        public long getTicks() { return ticks; }
+
+        public long getTimestamp() { return timestamp; }
+
+        public long getSeed() { return seed; }
+
+        /**
+         * Orders entries best first: higher score, then fewer ticks, then earlier.
+         */
+        @Override public int compareTo( Entry other )
+        {
+            if ( score != other.score )
+                return Integer.compare( other.score, score );
+            if ( ticks != other.ticks )
+                return Long.compare( ticks, other.ticks );
+            return Long.compare( timestamp, other.timestamp );
+        }
+    }
+
+    private final Path file;
+    private final int capacity;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Entry> logged = new ArrayList<>(); // entries as of the log, owned by the writer
+    private final ExecutorService writer;
+    private int records;     // records in the log, including ones no longer on the leaderboard
+    private boolean damaged; // the log has a torn or corrupt record and must be rewritten
+
+    /**
+     * Constructs a new {@code Leaderboard} keeping the default number of entries and
+     * loads it from the data directory.
+     *
+     * @param directory The directory the log is kept in.
+     */
+    public Leaderboard( Path directory ) { this( directory, DEFAULT_CAPACITY ); }
+
+    /**
+     * Constructs a new {@code Leaderboard} and loads it from the data directory.
+     *
+     * @param directory The directory the log is kept in.
+     * @param capacity The number of entries to keep.
+     */
+    public Leaderboard( Path directory, int capacity )
+    {
+        this.file = directory.resolve( FILE_NAME );
+        this.capacity = capacity;
+        this.writer = Executors.newSingleThreadExecutor( runnable -> {
+            Thread thread = new Thread( runnable, "leaderboard-writer" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        load();
+        logged.addAll( entries );
+    }
+
+    /**
+     * Returns the best score on the leaderboard.
+     *
+     * @return The high score, or 0 if no game has been recorded.
+     */
+    public synchronized int getHighScore() { return entries.isEmpty() ? 0 : entries.get( 0 ).getScore(); }
+
+    /**
+     * Returns the entries on the leaderboard, best first.
+     *
+     * @return An unmodifiable copy of the entries.
+     */
+    public synchronized List<Entry> getEntries() { return Collections.unmodifiableList( new ArrayList<>( entries ) ); }
+
+    /**
+     * Records a finished game. If it makes the leaderboard it is added in memory at
+     * once and appended to the log in the background.
+     *
+     * @param entry The finished game.
+     * @return {@code true} if the game made the leaderboard.
+     */
+    public synchronized boolean submit( Entry entry )
+    {
+        if ( !insert( entries, entry, capacity ) )
+            return false;
+
+        writer.execute( () -> append( entry ) );
+        return true;
+    }
+
+    /**
+     * Records a game that was submitted before, taken back and finished again, in
+     * place of its earlier result. The log is rewritten without the earlier record,
+     * which only happens when a game is replaced.
+     *
+     * @param previous The entry submitted for the game before, as passed to {@link #submit}.
+     * @param entry The game as it finished this time.
+     * @return {@code true} if the game made the leaderboard.
+     */
+    public synchronized boolean replace( Entry previous, Entry entry )
+    {
+        if ( !entries.remove( previous ) )
+            return submit( entry ); // Pushed off the leaderboard since, so it can never be loaded again
+
+        boolean added = insert( entries, entry, capacity );
+        writer.execute( () -> rewrite( previous, added ? entry : null ) );
+        return added;
+    }
+
+    /**
+     * Waits until every queued write has finished.
+     */
+    public void flush()
+    {
+        try
+        {
+            writer.submit( () -> {} ).get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( ExecutionException e )
+        {
+            throw new IllegalStateException( e.getCause() );
+        }
+    }
+
+    /**
+     * Finishes any queued writes and stops the writer thread.
+     */
+    public void close()
+    {
+        writer.shutdown();
+        try
+        {
+            writer.awaitTermination( 5, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Inserts an entry in order, dropping the worst entry if the list is full.
+     *
+     * @param entries The entries, best first.
+     * @param entry The entry to insert.
+     * @param capacity The number of entries to keep.
+     * @return {@code true} if the entry made the list.
+     */
+    private static boolean insert( List<Entry> entries, Entry entry, int capacity )
+    {
+        if ( entries.size() == capacity && entry.compareTo( entries.get( capacity - 1 ) ) >= 0 )
+            return false;
+
+        int index = Collections.binarySearch( entries, entry );
+        entries.add( index < 0 ? -index - 1 : index, entry );
+        if ( entries.size() > capacity )
+            entries.remove( capacity );
+        return true;
+    }
+
+    /**
+     * Appends one record to the log, creating the log if needed, and compacts the
+     * log when it has grown too long. Runs on the writer thread.
+     *
+     * @param entry The entry to append.
+     */
+    private void append( Entry entry )
+    {
+        insert( logged, entry, capacity );
+        try
+        {
+            Files.createDirectories( file.getParent() );
+            if ( !Files.exists( file ) || damaged || records >= capacity * COMPACT_FACTOR )
+            {
+                compact();
+                return; // The compacted log holds the new entry
+            }
+
+            try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.WRITE, StandardOpenOption.APPEND ) )
+            {
+                ByteBuffer buffer = ByteBuffer.allocate( RECORD_SIZE );
+                putRecord( buffer, entry );
+                buffer.flip();
+                while ( buffer.hasRemaining() )
+                    channel.write( buffer );
+                channel.force( false );
+            }
+            records++;
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "Problem writing leaderboard file " + file );
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Drops an entry from the log and adds its replacement, by compacting the log.
+     * Runs on the writer thread.
+     *
+     * @param previous The entry to drop.
+     * @param entry The entry to add, or {@code null} if it did not make the leaderboard.
+     */
+    private void rewrite( Entry previous, Entry entry )
+    {
+        logged.remove( previous );
+        if ( entry != null )
+            insert( logged, entry, capacity );
+        try
+        {
+            Files.createDirectories( file.getParent() );
+            compact();
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "Problem writing leaderboard file " + file );
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Rewrites the log with only the entries appended so far into a temporary file
+     * and moves it over the old log. Runs on the writer thread.
+     *
+     * @throws IOException If the log cannot be written.
+     */
+    private void compact() throws IOException
+    {
+        List<Entry> snapshot = logged;
+        ByteBuffer buffer = ByteBuffer.allocate( HEADER_SIZE + snapshot.size() * RECORD_SIZE );
+        buffer.putInt( MAGIC ).putShort( VERSION ).putShort( (short)0 );
+        for ( Entry entry : snapshot )
+            putRecord( buffer, entry );
+        buffer.flip();
+
+        Path temp = file.resolveSibling( FILE_NAME + ".tmp" );
+        try ( FileChannel channel = FileChannel.open( temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                      StandardOpenOption.TRUNCATE_EXISTING ) )
+        {
+            while ( buffer.hasRemaining() )
+                channel.write( buffer );
+            channel.force( false );
+        }
+
+        try
+        {
+            Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING );
+        }
+        records = snapshot.size();
+        damaged = false;
+    }
+
+    /**
+     * Loads the leaderboard by memory-mapping the log and reading every record whose
+     * checksum matches. If there is no log yet, the score in a legacy
+     * {@code highscore.txt} in the working directory is imported.
+     */
+    private void load()
+    {
+        if ( !Files.exists( file ) )
+        {
+            importLegacyHighScore( Path.of( "highscore.txt" ) );
+            return;
+        }
+
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            long size = channel.size();
+            if ( size < HEADER_SIZE )
+            {
+                damaged = true;
+                return;
+            }
+
+            MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+            if ( buffer.getInt() != MAGIC || buffer.getShort() != VERSION )
+            {
+                System.err.println( "Unrecognized leaderboard file " + file );
+                damaged = true; // Replaced by the first game recorded
+                return;
+            }
+            buffer.getShort(); // Reserved
+
+            CRC32 crc = new CRC32();
+            while ( buffer.remaining() >= RECORD_SIZE )
+            {
+                int start = buffer.position();
+                crc.reset();
+                crc.update( buffer.slice( start, RECORD_SIZE - 4 ) );
+
+                Entry entry = new Entry( buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getLong(),
+                                         buffer.getLong() );
+                if ( buffer.getInt() == (int)crc.getValue() )
+                    insert( entries, entry, capacity );
+                else
+                    damaged = true;
+                records++;
+            }
+
+            // A torn record at the end would misalign every record appended after it
+            if ( buffer.hasRemaining() )
+                damaged = true;
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "Problem reading leaderboard file " + file );
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Seeds an empty leaderboard with the single score kept by older versions.
+     *
+     * @param legacyFile The old high score file.
+     */
+    private void importLegacyHighScore( Path legacyFile )
+    {
+        if ( !Files.exists( legacyFile ) )
+            return;
+
+        try
+        {
+            int score = Integer.parseInt( new String( Files.readAllBytes( legacyFile ), StandardCharsets.UTF_8 ).trim() );
+            // Written to the new log along with the first game recorded
+            if ( score > 0 )
+                insert( entries, new Entry( score, 0, 0, Files.getLastModifiedTime( legacyFile ).toMillis(), 0 ), capacity );
+        }
+        catch ( IOException | NumberFormatException e )
+        {
+            System.err.println( "Ignoring legacy high score file " + legacyFile + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Writes one record, with its checksum, at the buffer's position.
+     *
+     * @param buffer The buffer to write to.
+     * @param entry The entry to write.
+     */
+    private static void putRecord( ByteBuffer buffer, Entry entry )
+    {
+        int start = buffer.position();
+        buffer.putInt( entry.getScore() )
+            .putInt( entry.getLength() )
+            .putLong( entry.getTicks() )
+            .putLong( entry.getTimestamp() )
+            .putLong( entry.getSeed() );
+
+        CRC32 crc = new CRC32();
+        crc.update( buffer.slice( start, RECORD_SIZE - 4 ) );
+        buffer.putInt( (int)crc.getValue() );
+    }
+}
@@ -0,0 +1,213 @@
+package edu.aav66;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The {@code OccupancyGrid} class is a bitmap with one bit per board cell recording
+ * whether the snake covers that cell. {@link SnakeEngine} keeps it up to date as the
+ * head moves and the tail drops, so a self-collision check is a single bit test and
+ * apples can be placed on free cells only.
+ *
+ * The free cells are also counted per block of 64 words and per group of 64 blocks,
+ * so the k-th free cell is found by looking at no more than 64 counts on each level
+ * however full the board is, and placing an apple takes the same time on an empty
+ * board as on a nearly full one. The cell picked depends only on which cells are
+ * free, never on the order they were freed in, so a game restored from a
+ * {@link GameSnapshot} places the same apples as the one it was taken of.
+ */
+public final class OccupancyGrid
+{
+    // Number of random probes tried before looking up a free cell by its rank
+    private static final int MAX_RANDOM_PROBES = 8;
+
+    // Words in a block and blocks in a group, as a shift
+    private static final int FANOUT_SHIFT = 6;
+
+    private final long words[];
+    private final int blockFree[]; // free cells in each block of 64 words
+    private final int groupFree[]; // free cells in each group of 64 blocks
+    private final int cells;
+    private int occupied;
+
+    /**
+     * Constructs an empty {@code OccupancyGrid} for the given number of cells.
+     *
+     * @param cells The number of cells on the board.
+     */
+    OccupancyGrid( int cells )
+    {
+        this.cells = cells;
+        words = new long[( cells + 63 ) >>> 6];
+        blockFree = new int[( words.length + 63 ) >>> FANOUT_SHIFT];
+        groupFree = new int[( blockFree.length + 63 ) >>> FANOUT_SHIFT];
+        clear();
+    }
+
+    /**
+     * Marks every cell as free.
+     */
+    void clear()
+    {
+        Arrays.fill( words, 0L );
+        Arrays.fill( groupFree, 0 );
+        for ( int block = 0; block < blockFree.length; block++ )
+        {
+            int free = blockCells( block );
+            blockFree[block] = free;
+            groupFree[block >>> FANOUT_SHIFT] += free;
+        }
+        occupied = 0;
+    }
+
+    /**
+     * Marks a cell as covered by the snake.
+     *
+     * @param cell The index of the cell.
+     */
+    void set( int cell )
+    {
+        long mask = 1L << cell;
+        int word = cell >>> 6;
+        if ( ( words[word] & mask ) == 0 )
+        {
+            words[word] |= mask;
+            blockFree[word >>> FANOUT_SHIFT]--;
+            groupFree[word >>> ( 2 * FANOUT_SHIFT )]--;
+            occupied++;
+        }
+    }
+
+    /**
+     * Marks a cell as free.
+     *
+     * @param cell The index of the cell.
+     */
+    void clear( int cell )
+    {
+        long mask = 1L << cell;
+        int word = cell >>> 6;
+        if ( ( words[word] & mask ) != 0 )
+        {
+            words[word] &= ~mask;
+            blockFree[word >>> FANOUT_SHIFT]++;
+            groupFree[word >>> ( 2 * FANOUT_SHIFT )]++;
+            occupied--;
+        }
+    }
+
+    /**
+     * Replaces the bitmap with that of another grid of the same size.
+     *
+     * @param source The grid to copy.
+     */
+    void copyFrom( OccupancyGrid source )
+    {
+        System.arraycopy( source.words, 0, words, 0, words.length );
+        System.arraycopy( source.blockFree, 0, blockFree, 0, blockFree.length );
+        System.arraycopy( source.groupFree, 0, groupFree, 0, groupFree.length );
+        occupied = source.occupied;
+    }
+
+    /**
+     * Returns whether a cell is covered by the snake.
+     *
+     * @param cell The index of the cell.
+     * @return {@code true} if the cell is occupied.
+     */
+    public boolean isOccupied( int cell ) { return ( words[cell >>> 6] & ( 1L << cell ) ) != 0; }
+
+    /**
+     * Returns the first occupied cell at or after a cell, in the order of the cells,
+     * skipping whole blocks with no occupied cell.
+     *
+     * @param from The index of the cell to start at.
+     * @return The index of the occupied cell, or {@code -1} if there is none.
+     */
+    public int nextOccupied( int from )
+    {
+        if ( from >= cells )
+            return -1;
+
+        int word = from >>> 6;
+        long bits = words[word] & ( -1L << from );
+        while ( bits == 0 )
+        {
+            if ( ++word == words.length )
+                return -1;
+            if ( ( word & ( ( 1 << FANOUT_SHIFT ) - 1 ) ) == 0 )
+            {
+                int block = word >>> FANOUT_SHIFT;
+                while ( block < blockFree.length && blockFree[block] == blockCells( block ) )
+                    block++;
+                if ( block == blockFree.length )
+                    return -1;
+                word = block << FANOUT_SHIFT;
+            }
+            bits = words[word];
+        }
+        return ( word << 6 ) + Long.numberOfTrailingZeros( bits );
+    }
+
+    public int getCells() { return cells; }
+
+    public int getOccupiedCount() { return occupied; }
+
+    public int getFreeCount() { return cells - occupied; }
+
+    /**
+     * Picks a free cell uniformly at random. A few random probes are tried first,
+     * which almost always succeed while the board is mostly empty; otherwise the k-th
+     * free cell is looked up through the counts of free cells.
+     *
+     * @param random The random number generator to use.
+     * @return The index of a free cell, or {@code -1} if every cell is occupied.
+     */
+    public int randomFreeCell( Random random )
+    {
+        int free = getFreeCount();
+        if ( free == 0 )
+            return -1;
+
+        for ( int i = 0; i < MAX_RANDOM_PROBES; i++ )
+        {
+            int cell = random.nextInt( cells );
+            if ( !isOccupied( cell ) )
+                return cell;
+        }
+
+        return nthFreeCell( random.nextInt( free ) );
+    }
+
+    /**
+     * Returns the index of the n-th free cell, counting from zero in the order of the
+     * cells, by skipping whole groups and blocks with too few free cells.
+     *
+     * @param n The rank of the free cell to find.
+     * @return The index of the cell.
+     */
+    private int nthFreeCell( int n )
+    {
+        int group = 0;
+        while ( n >= groupFree[group] )
+            n -= groupFree[group++];
+
+        int block = group << FANOUT_SHIFT;
+        while ( n >= blockFree[block] )
+            n -= blockFree[block++];
+
+        for ( int word = block << FANOUT_SHIFT;; word++ )
+        {
+            long freeBits = ~words[word];
+            if ( word == words.length - 1 && ( cells & 63 ) != 0 )
+                freeBits &= ( 1L << ( cells & 63 ) ) - 1; // Ignore bits past the last cell
+
+            int count = Long.bitCount( freeBits );
+            if ( n < count )
+                return ( word << 6 ) + Long.numberOfTrailingZeros( Long.expand( 1L << n, freeBits ) ); // n-th free bit
+            n -= count;
+        }
+    }
+
+    private int blockCells( int block ) { return Math.min( cells - ( block << ( 6 + FANOUT_SHIFT ) ), 1 << ( 6 + FANOUT_SHIFT ) ); }
+}
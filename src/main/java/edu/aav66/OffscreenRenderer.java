@@ -0,0 +1,236 @@
+package edu.aav66;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The {@code OffscreenRenderer} class draws games into an image without a window, so
+ * frames can be made in a headless JVM ({@code -Djava.awt.headless=true}), for
+ * example to make thumbnails and highlight clips of games played on a server. The
+ * board is kept up to date by a {@link BoardRenderer} and the frame, with the head and
+ * the score on top, is drawn into one {@link BufferedImage} that is reused for every
+ * frame.
+ *
+ * A {@link Pipeline} renders on a worker thread while the simulation goes on: each
+ * tick only a {@link GameSnapshot} is taken, which costs one cell for a game that
+ * moved one tick, and the worker restores it into an engine of its own, draws it and
+ * passes the frame to a {@link FrameSink}.
+ */
+public final class OffscreenRenderer
+{
+    /**
+     * Takes the frames made by a renderer, one at a time.
+     */
+    public interface FrameSink extends Closeable
+    {
+        /**
+         * Takes a frame. The image is reused for the next frame, so it must be used
+         * or copied before returning.
+         *
+         * @param frame The frame.
+         * @param tick The tick of the game the frame shows.
+         * @throws IOException If the frame cannot be written.
+         */
+        void accept( BufferedImage frame, long tick ) throws IOException;
+    }
+
+    private final int width;
+    private final int height;
+    private final BoardRenderer board;
+    private final BufferedImage frame;
+    private final Graphics2D graphics; // kept open so frames do not create a context each
+    private final TextSprite scoreText;
+    private final int scoreBaseline;
+
+    /**
+     * Constructs a new {@code OffscreenRenderer} for a board of the given size.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @param unitSize The size of one cell in pixels.
+     * @param appleSprite The apple image, or {@code null} to draw a colored oval.
+     */
+    public OffscreenRenderer( int columns, int rows, int unitSize, BufferedImage appleSprite )
+    {
+        width = columns * unitSize;
+        height = rows * unitSize;
+        board = new BoardRenderer( columns, rows, unitSize, new Random( 0 ) ); // Same colors in every run
+        board.setAppleSprite( appleSprite );
+        frame = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+        graphics = frame.createGraphics();
+
+        // Scaled with the board, so thumbnails stay readable
+        Font font = new Font( "Futura", Font.BOLD, Math.max( 8, Math.min( 40, height / 16 ) ) );
+        scoreText = new TextSprite( "Score: ", font, GamePanel.SCORE_COLOR );
+        scoreBaseline = font.getSize();
+    }
+
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+
+    /**
+     * Draws a game as it is at the end of its last tick.
+     *
+     * @param engine The engine to draw.
+     * @return The frame, which is overwritten by the next call.
+     */
+    public BufferedImage render( SnakeEngine engine )
+    {
+        board.update( engine );
+        board.draw( graphics, engine, 1.0 );
+        scoreText.drawCentered( graphics, engine.getApplesEaten(), width, scoreBaseline );
+        return frame;
+    }
+
+    /**
+     * Starts rendering on a worker thread.
+     *
+     * @param sink Where the frames go; closed when the pipeline is.
+     * @param depth The most snapshots waiting to be drawn before {@link Pipeline#submit} waits.
+     * @return The pipeline.
+     */
+    public Pipeline pipeline( FrameSink sink, int depth ) { return new Pipeline( this, sink, depth ); }
+
+    /**
+     * Renders snapshots of a game on a worker thread, in the order they were taken.
+     * One thread submits; the queue between it and the worker is bounded, so a slow
+     * sink slows the simulation down rather than holding every frame in memory.
+     */
+    public static final class Pipeline implements Closeable
+    {
+        // Put on the queue to stop the worker
+        private static final Object STOP = new Object();
+
+        private static final char NO_PENDING[] = {};
+
+        private final OffscreenRenderer renderer;
+        private final FrameSink sink;
+        private final BlockingQueue<Object> queue;
+        private final GameSnapshot.Recorder recorder = new GameSnapshot.Recorder();
+        private final Thread worker;
+        private volatile Throwable failure;
+        private long frames; // read once the worker has finished
+        private boolean closed;
+
+        Pipeline( OffscreenRenderer renderer, FrameSink sink, int depth )
+        {
+            if ( depth < 1 )
+                throw new IllegalArgumentException( "Depth must be positive: " + depth );
+
+            this.renderer = renderer;
+            this.sink = sink;
+            queue = new ArrayBlockingQueue<>( depth );
+            worker = new Thread( this::run, "offscreen-renderer" );
+            worker.setDaemon( true );
+            worker.start();
+        }
+
+        /**
+         * Queues the state of a game to be drawn, waiting if the queue is full.
+         *
+         * @param engine The engine, which must have been built with a seed.
+         * @throws IOException If the sink failed on an earlier frame.
+         */
+        public void submit( SnakeEngine engine ) throws IOException
+        {
+            checkFailure();
+            GameSnapshot snapshot = recorder.take( engine, NO_PENDING );
+            try
+            {
+                queue.put( snapshot );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted while queueing a frame", e );
+            }
+        }
+
+        /**
+         * Waits for the queued frames to be drawn, stops the worker and closes the sink.
+         *
+         * @throws IOException If the sink failed or cannot be closed.
+         */
+        @Override public void close() throws IOException
+        {
+            if ( closed )
+                return;
+
+            closed = true;
+            try
+            {
+                queue.put( STOP );
+                worker.join();
+            }
+            catch ( InterruptedException e )
+            {
+                worker.interrupt();
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                sink.close();
+            }
+            checkFailure();
+        }
+
+        /**
+         * Returns the number of frames passed to the sink.
+         *
+         * @return The number of frames, once the pipeline is closed.
+         */
+        public long getFrames() { return frames; }
+
+        private void checkFailure() throws IOException
+        {
+            Throwable cause = failure;
+            if ( cause instanceof IOException )
+                throw new IOException( "Rendering failed: " + cause.getMessage(), cause );
+            if ( cause != null )
+                throw new IOException( "Rendering failed", cause );
+        }
+
+        /**
+         * Draws snapshots until told to stop. After a failure it keeps taking snapshots
+         * without drawing them, so the submitting thread never blocks for good.
+         */
+        private void run()
+        {
+            SnakeEngine engine = null;
+            try
+            {
+                Object next;
+                while ( ( next = queue.take() ) != STOP )
+                {
+                    if ( failure != null )
+                        continue;
+
+                    GameSnapshot snapshot = (GameSnapshot)next;
+                    try
+                    {
+                        if ( engine == null )
+                            engine = new SnakeEngine( snapshot.getColumns(), snapshot.getRows(), snapshot.getSeed() );
+                        snapshot.restore( engine );
+                        sink.accept( renderer.render( engine ), snapshot.getTicks() );
+                        frames++;
+                    }
+                    catch ( IOException | RuntimeException e )
+                    {
+                        failure = e;
+                    }
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
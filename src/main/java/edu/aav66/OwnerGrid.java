@@ -0,0 +1,66 @@
+package edu.aav66;
+
+/**
+ * The {@code OwnerGrid} class records which snake covers each cell of an
+ * {@link Arena} board. It pairs an array holding the owner of every cell with an
+ * {@link OccupancyGrid} of the same cells, updated together as heads are added and
+ * tails dropped. The arena itself only asks whether a cell is covered and draws free
+ * cells from the bitmap; the owners are there for whoever reads the board through
+ * {@link Arena#getOwners()}.
+ */
+public final class OwnerGrid
+{
+    private final int owners[]; // id + 1 of the snake covering each cell; 0 if free
+    private final OccupancyGrid occupancy;
+
+    /**
+     * Constructs an empty {@code OwnerGrid} for the given number of cells.
+     *
+     * @param cells The number of cells on the board.
+     */
+    OwnerGrid( int cells )
+    {
+        owners = new int[cells];
+        occupancy = new OccupancyGrid( cells );
+    }
+
+    /**
+     * Marks a cell as covered by a snake.
+     *
+     * @param cell The index of the cell.
+     * @param id The id of the snake.
+     */
+    void claim( int cell, int id )
+    {
+        owners[cell] = id + 1;
+        occupancy.set( cell );
+    }
+
+    /**
+     * Marks a cell as free.
+     *
+     * @param cell The index of the cell.
+     */
+    void release( int cell )
+    {
+        owners[cell] = 0;
+        occupancy.clear( cell );
+    }
+
+    /**
+     * Returns the snake covering a cell.
+     *
+     * @param cell The index of the cell.
+     * @return The id of the snake, or -1 if the cell is free.
+     */
+    public int getOwner( int cell ) { return owners[cell] - 1; }
+
+    public boolean isOccupied( int cell ) { return owners[cell] != 0; }
+
+    /**
+     * Returns a read-only view of the cells covered by any snake.
+     *
+     * @return The occupancy bitmap of the board.
+     */
+    public OccupancyGrid getOccupancy() { return occupancy; }
+}
@@ -0,0 +1,47 @@
+package edu.aav66;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+
+/**
+ * The {@code PngSequence} class writes frames to a directory as numbered PNG files,
+ * {@code frame-000000.png} onwards, which video tools can turn into a clip. To make a
+ * short sequence of thumbnails instead, submit only every {@code n}th frame to the
+ * renderer, so the frames left out are never drawn.
+ */
+public final class PngSequence implements OffscreenRenderer.FrameSink
+{
+    private final Path directory;
+    private int written;
+
+    /**
+     * Constructs a new {@code PngSequence}, creating its directory if needed.
+     *
+     * @param directory The directory the files are written to.
+     * @throws IOException If the directory cannot be created.
+     */
+    public PngSequence( Path directory ) throws IOException
+    {
+        this.directory = Files.createDirectories( directory );
+    }
+
+    @Override public void accept( BufferedImage frame, long tick ) throws IOException
+    {
+        Path file = directory.resolve( String.format( "frame-%06d.png", written ) );
+        if ( !ImageIO.write( frame, "png", file.toFile() ) )
+            throw new IOException( "No PNG writer available" );
+        written++;
+    }
+
+    /**
+     * Returns the number of files written.
+     *
+     * @return The number of frames written.
+     */
+    public int getWritten() { return written; }
+
+    @Override public void close() {}
+}
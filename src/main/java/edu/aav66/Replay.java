@@ -0,0 +1,274 @@
+package edu.aav66;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code Replay} class is the record of one game: the board size, the seed the
+ * engine was reset with and the direction the snake turned to at each tick where it
+ * changed. Since {@link SnakeEngine} is deterministic for a given seed, this is all
+ * that is needed to play the game again exactly, with {@link ReplayPlayer}.
+ *
+ * Replays are stored in a compact binary file. After a header come the board size,
+ * seed, length and score, then one entry per turn holding the number of ticks since
+ * the previous turn and the new direction packed into a single variable-length
+ * integer, so a typical turn takes one or two bytes. The file ends with a CRC32 of
+ * everything before it.
+ */
+public final class Replay
+{
+    // Name of the file in the data directory holding the last game played
+    public static final String LAST_GAME_FILE_NAME = "last-game.replay";
+
+    // File layout
+    private static final int MAGIC = 0x534E5250; // "SNRP"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 8;    // magic, version, reserved
+
+    // Directions in the order of their two-bit codes
+    private static final String DIRECTIONS = "UDLR";
+
+    private final int columns;
+    private final int rows;
+    private final long seed;
+    private final long ticks;
+    private final int score;
+    private final long turnTicks[];  // tick at which each turn took effect, ascending
+    private final char turnDirections[];
+
+    /**
+     * Records the directions a game is played with, one tick at a time.
+     */
+    public static final class Recorder
+    {
+        private final int columns;
+        private final int rows;
+        private final long seed;
+        private long turnTicks[] = new long[64];
+        private char turnDirections[] = new char[64];
+        private int turns;
+        private char direction;
+
+        /**
+         * Constructs a new {@code Recorder} for the game an engine has just been reset to.
+         *
+         * @param engine The engine, at tick 0.
+         */
+        public Recorder( SnakeEngine engine )
+        {
+            columns = engine.getColumns();
+            rows = engine.getRows();
+            seed = engine.getSeed();
+            direction = engine.getDirection();
+        }
+
+        /**
+         * Records the tick the engine just made. Only ticks where the direction
+         * changed are stored.
+         *
+         * @param engine The engine, just after a call to {@link SnakeEngine#step(char)}.
+         */
+        public void record( SnakeEngine engine )
+        {
+            char current = engine.getDirection();
+            if ( current == direction )
+                return;
+
+            if ( turns == turnTicks.length )
+            {
+                turnTicks = Arrays.copyOf( turnTicks, turns * 2 );
+                turnDirections = Arrays.copyOf( turnDirections, turns * 2 );
+            }
+            turnTicks[turns] = engine.getTicks() - 1; // The tick the turn was made in
+            turnDirections[turns] = current;
+            turns++;
+            direction = current;
+        }
+
+        /**
+         * Forgets the turns made after the tick an engine has been rewound to, so the
+         * game can be recorded on from there.
+         *
+         * @param engine The engine, rewound to an earlier tick of the recorded game.
+         */
+        public void rewind( SnakeEngine engine )
+        {
+            while ( turns > 0 && turnTicks[turns - 1] >= engine.getTicks() )
+                turns--;
+            direction = engine.getDirection();
+        }
+
+        /**
+         * Returns the replay of the game recorded so far.
+         *
+         * @param engine The engine the game was played on.
+         * @return The replay.
+         */
+        public Replay toReplay( SnakeEngine engine )
+        {
+            return new Replay( columns, rows, seed, engine.getTicks(), engine.getApplesEaten(),
+                               Arrays.copyOf( turnTicks, turns ), Arrays.copyOf( turnDirections, turns ) );
+        }
+    }
+
+    /**
+     * Constructs a new {@code Replay}.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @param seed The seed the engine was reset with.
+     * @param ticks The number of ticks the game lasted.
+     * @param score The number of apples eaten.
+     * @param turnTicks The tick at which each turn was made, ascending.
+     * @param turnDirections The direction of each turn.
+     */
+    Replay( int columns, int rows, long seed, long ticks, int score, long turnTicks[], char turnDirections[] )
+    {
+        this.columns = columns;
+        this.rows = rows;
+        this.seed = seed;
+        this.ticks = ticks;
+        this.score = score;
+        this.turnTicks = turnTicks;
+        this.turnDirections = turnDirections;
+    }
+
+    public int getColumns() { return columns; }
+
+    public int getRows() { return rows; }
+
+    public long getSeed() { return seed; }
+
+    public long getTicks() { return ticks; }
+
+    public int getScore() { return score; }
+
+    public int getTurnCount() { return turnTicks.length; }
+
+    /**
+     * Returns the tick a turn was made in.
+     *
+     * @param i The number of the turn.
+     * @return The tick, counted from 0.
+     */
+    public long getTurnTick( int i ) { return turnTicks[i]; }
+
+    /**
+     * Returns the direction of a turn.
+     *
+     * @param i The number of the turn.
+     * @return The direction ('U', 'D', 'L' or 'R').
+     */
+    public char getTurnDirection( int i ) { return turnDirections[i]; }
+
+    /**
+     * Encodes the replay in the binary file format.
+     *
+     * @return The encoded replay.
+     */
+    public byte[] toBytes()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( HEADER_SIZE + 8 + ( 5 + turnTicks.length ) * VarInt.MAX_SIZE + 4 );
+        buffer.putInt( MAGIC ).putShort( VERSION ).putShort( (short)0 );
+        VarInt.putVarLong( buffer, columns );
+        VarInt.putVarLong( buffer, rows );
+        buffer.putLong( seed );
+        VarInt.putVarLong( buffer, ticks );
+        VarInt.putVarLong( buffer, score );
+        VarInt.putVarLong( buffer, turnTicks.length );
+
+        long previous = 0;
+        for ( int i = 0; i < turnTicks.length; i++ )
+        {
+            VarInt.putVarLong( buffer, ( turnTicks[i] - previous ) << 2 | DIRECTIONS.indexOf( turnDirections[i] ) );
+            previous = turnTicks[i];
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update( buffer.array(), 0, buffer.position() );
+        buffer.putInt( (int)crc.getValue() );
+        return Arrays.copyOf( buffer.array(), buffer.position() );
+    }
+
+    /**
+     * Decodes a replay from the binary file format.
+     *
+     * @param bytes The encoded replay.
+     * @return The replay.
+     * @throws IOException If the bytes are not a valid replay.
+     */
+    public static Replay fromBytes( byte bytes[] ) throws IOException
+    {
+        if ( bytes.length < HEADER_SIZE + 4 )
+            throw new IOException( "Replay is truncated" );
+
+        CRC32 crc = new CRC32();
+        crc.update( bytes, 0, bytes.length - 4 );
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        if ( buffer.getInt( bytes.length - 4 ) != (int)crc.getValue() )
+            throw new IOException( "Replay checksum does not match" );
+        if ( buffer.getInt() != MAGIC || buffer.getShort() != VERSION )
+            throw new IOException( "Not a replay file" );
+        buffer.getShort(); // Reserved
+        buffer.limit( bytes.length - 4 );
+
+        try
+        {
+            long columns = VarInt.getVarLong( buffer );
+            long rows = VarInt.getVarLong( buffer );
+            if ( columns < 2 || rows < 1 || columns > GameConfig.MAX_DIMENSION || rows > GameConfig.MAX_DIMENSION )
+                throw new IOException( "Invalid board size " + columns + "x" + rows );
+
+            long seed = buffer.getLong();
+            long ticks = VarInt.getVarLong( buffer );
+            int score = (int)VarInt.getVarLong( buffer );
+            long turns = VarInt.getVarLong( buffer );
+            if ( turns < 0 || turns > buffer.remaining() ) // Every turn takes at least one byte
+                throw new IOException( "Replay is truncated" );
+
+            long turnTicks[] = new long[(int)turns];
+            char turnDirections[] = new char[(int)turns];
+            long tick = 0;
+            for ( int i = 0; i < turns; i++ )
+            {
+                long turn = VarInt.getVarLong( buffer );
+                tick += turn >>> 2;
+                turnTicks[i] = tick;
+                turnDirections[i] = DIRECTIONS.charAt( (int)( turn & 3 ) );
+            }
+            return new Replay( (int)columns, (int)rows, seed, ticks, score, turnTicks, turnDirections );
+        }
+        catch ( BufferUnderflowException e )
+        {
+            throw new IOException( "Replay is truncated", e );
+        }
+    }
+
+    /**
+     * Writes the replay to a file, creating its directory if needed.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write( Path file ) throws IOException
+    {
+        Path directory = file.toAbsolutePath().getParent();
+        if ( directory != null )
+            Files.createDirectories( directory );
+        Files.write( file, toBytes() );
+    }
+
+    /**
+     * Reads a replay from a file.
+     *
+     * @param file The file to read.
+     * @return The replay.
+     * @throws IOException If the file cannot be read or is not a valid replay.
+     */
+    public static Replay read( Path file ) throws IOException { return fromBytes( Files.readAllBytes( file ) ); }
+}
@@ -0,0 +1,140 @@
+package edu.aav66;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code ReplayPlayer} class plays a {@link Replay} back on its own seeded
+ * {@link SnakeEngine}. Nothing is rendered, so a replay can be stepped as fast as the
+ * engine runs, and callers can draw the engine between steps if they want to watch.
+ *
+ * Every {@link #CHECKPOINT_INTERVAL} ticks a {@link GameSnapshot} of the engine is
+ * kept as it is passed, so seeking backwards restores the nearest earlier checkpoint
+ * and replays only the ticks after it instead of starting over from the first tick.
+ * A snapshot holds the snake's cells rather than the whole board, so checkpoints of
+ * a long game on a large board take memory in proportion to the snake.
+ */
+public final class ReplayPlayer
+{
+    public static final int CHECKPOINT_INTERVAL = 256;
+
+    private static final char NO_PENDING[] = {};
+
+    private final Replay replay;
+    private final SnakeEngine engine;
+    private final List<GameSnapshot> checkpoints = new ArrayList<>(); // checkpoint i is at tick i * interval
+    private int nextTurn; // index of the first turn not yet applied
+
+    /**
+     * Constructs a new {@code ReplayPlayer} positioned at the start of the game.
+     *
+     * @param replay The replay to play.
+     */
+    public ReplayPlayer( Replay replay )
+    {
+        this.replay = replay;
+        engine = new SnakeEngine( replay.getColumns(), replay.getRows(), replay.getSeed() );
+        saveCheckpoint();
+    }
+
+    /**
+     * Plays one tick of the replay.
+     *
+     * @return {@code true} if there are ticks left to play.
+     */
+    public boolean step()
+    {
+        if ( isFinished() )
+            return false;
+
+        char direction = engine.getDirection();
+        if ( nextTurn < replay.getTurnCount() && replay.getTurnTick( nextTurn ) == engine.getTicks() )
+            direction = replay.getTurnDirection( nextTurn++ );
+
+        engine.step( direction );
+        if ( engine.getTicks() % CHECKPOINT_INTERVAL == 0 )
+            saveCheckpoint();
+        return !isFinished();
+    }
+
+    /**
+     * Plays the rest of the replay without stopping.
+     *
+     * @return The engine at the end of the game.
+     */
+    public SnakeEngine fastForward()
+    {
+        while ( step() )
+            ;
+        return engine;
+    }
+
+    /**
+     * Moves playback to a tick, backwards or forwards. Seeking backwards restarts
+     * from the nearest checkpoint at or before the tick.
+     *
+     * @param tick The tick to move to; clamped to the length of the game.
+     */
+    public void seek( long tick )
+    {
+        tick = Math.max( 0, Math.min( tick, replay.getTicks() ) );
+        if ( tick < engine.getTicks() )
+        {
+            int checkpoint = (int)Math.min( tick / CHECKPOINT_INTERVAL, checkpoints.size() - 1 );
+            checkpoints.get( checkpoint ).restore( engine );
+            nextTurn = turnsBefore( engine.getTicks() );
+        }
+
+        while ( engine.getTicks() < tick && step() )
+            ;
+    }
+
+    /**
+     * Returns whether playing the replay to the end reproduced the recorded game.
+     * Plays the rest of the replay if needed.
+     *
+     * @return {@code true} if the game lasted as long and scored as much as recorded.
+     */
+    public boolean verify()
+    {
+        fastForward();
+        return engine.getTicks() == replay.getTicks() && engine.getApplesEaten() == replay.getScore() &&
+            !engine.isRunning();
+    }
+
+    /**
+     * Returns whether every recorded tick has been played or the game has ended.
+     *
+     * @return {@code true} if there is nothing left to play.
+     */
+    public boolean isFinished() { return !engine.isRunning() || engine.getTicks() >= replay.getTicks(); }
+
+    /**
+     * Returns the engine the replay is played on. It must not be stepped directly.
+     *
+     * @return The engine.
+     */
+    public SnakeEngine getEngine() { return engine; }
+
+    public Replay getReplay() { return replay; }
+
+    private void saveCheckpoint()
+    {
+        int index = (int)( engine.getTicks() / CHECKPOINT_INTERVAL );
+        if ( index < checkpoints.size() )
+            return; // Already passed on an earlier run
+
+        checkpoints.add( GameSnapshot.capture( engine, NO_PENDING ) );
+    }
+
+    /**
+     * Returns the number of turns made before a tick.
+     */
+    private int turnsBefore( long tick )
+    {
+        int turns = 0;
+        while ( turns < replay.getTurnCount() && replay.getTurnTick( turns ) < tick )
+            turns++;
+        return turns;
+    }
+}
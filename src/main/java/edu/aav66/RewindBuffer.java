@@ -0,0 +1,126 @@
+package edu.aav66;
+
+/**
+ * The {@code RewindBuffer} class keeps the last ticks of a game so it can be played
+ * backwards. Each tick is stored as the little a step changes that cannot be worked
+ * out afterwards: the tail cell the snake left, where the apple was, the direction,
+ * the score and the state of the random number generator before the step. The head
+ * the step added is the engine's current head, so it needs no entry.
+ *
+ * Entries live in primitive arrays allocated once, used as a ring: when it is full
+ * the oldest tick is forgotten, so a ring of {@code capacity} ticks takes about 20
+ * bytes per tick however long the snake grows, and recording a tick never allocates.
+ * Bots can use it to back out of a dead end as well as players. A buffer is used by
+ * one thread at a time.
+ */
+public final class RewindBuffer
+{
+    private final int tails[];      // packed cell of the tail before each step
+    private final int apples[];     // packed cell of the apple before each step
+    private final long randomStates[];
+    private final int applesEaten[];
+    private final byte directions[];
+    private int newest = -1;        // index of the most recent entry
+    private long newestTick;        // tick of the engine before the most recent step; the rest precede it
+    private int size;
+
+    // Directions in the order of their byte codes
+    private static final String DIRECTIONS = "UDLR";
+
+    /**
+     * Constructs a new {@code RewindBuffer}.
+     *
+     * @param capacity The number of ticks that can be rewound.
+     */
+    public RewindBuffer( int capacity )
+    {
+        if ( capacity < 1 )
+            throw new IllegalArgumentException( "Capacity must be positive: " + capacity );
+
+        tails = new int[capacity];
+        apples = new int[capacity];
+        randomStates = new long[capacity];
+        applesEaten = new int[capacity];
+        directions = new byte[capacity];
+    }
+
+    /**
+     * Records the state a step is about to change. Call it just before each
+     * {@link SnakeEngine#step(char)} of a running game.
+     *
+     * @param engine The engine, which must have been built with a seed.
+     */
+    public void record( SnakeEngine engine )
+    {
+        if ( size > 0 && engine.getTicks() != newestTick + 1 )
+            clear(); // Reset or restored since, so the older ticks no longer lead here
+
+        newest = newest + 1 == tails.length ? 0 : newest + 1;
+        SnakeBody body = engine.getBody();
+        tails[newest] = SnakeBody.pack( body.getTailX(), body.getTailY() );
+        apples[newest] = SnakeBody.pack( engine.getAppleX(), engine.getAppleY() );
+        randomStates[newest] = engine.getRandomState();
+        applesEaten[newest] = engine.getApplesEaten();
+        directions[newest] = (byte)DIRECTIONS.indexOf( engine.getDirection() );
+        newestTick = engine.getTicks();
+        if ( size < tails.length )
+            size++;
+    }
+
+    /**
+     * Takes back the engine's last step, bringing a finished game back to life if
+     * it was the step that ended it.
+     *
+     * @param engine The engine the steps were recorded from.
+     * @return {@code false} if there is no recorded step to take back, or the engine
+     *         has been stepped or reset without recording.
+     */
+    public boolean rewind( SnakeEngine engine )
+    {
+        if ( size == 0 || engine.getTicks() != newestTick + 1 )
+            return false;
+
+        int tail = tails[newest];
+        int apple = apples[newest];
+        engine.unstep( SnakeBody.xOf( tail ), SnakeBody.yOf( tail ), SnakeBody.xOf( apple ), SnakeBody.yOf( apple ),
+                       DIRECTIONS.charAt( directions[newest] ), applesEaten[newest], randomStates[newest] );
+
+        newest = newest == 0 ? tails.length - 1 : newest - 1;
+        newestTick--;
+        size--;
+        return true;
+    }
+
+    /**
+     * Takes back up to a number of the engine's last steps.
+     *
+     * @param engine The engine the steps were recorded from.
+     * @param count The number of steps to take back.
+     * @return The number of steps taken back.
+     */
+    public int rewind( SnakeEngine engine, int count )
+    {
+        int rewound = 0;
+        while ( rewound < count && rewind( engine ) )
+            rewound++;
+        return rewound;
+    }
+
+    /**
+     * Forgets every recorded step.
+     */
+    public void clear()
+    {
+        newest = -1;
+        size = 0;
+    }
+
+    /**
+     * Returns the number of steps that can be taken back.
+     *
+     * @return The number of recorded steps.
+     */
+    public int size() { return size; }
+
+    public int getCapacity() { return tails.length; }
+}
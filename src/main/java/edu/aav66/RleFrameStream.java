@@ -0,0 +1,271 @@
+package edu.aav66;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The {@code RleFrameStream} class writes and reads a compact stream of frames. A
+ * board changes in a few cells per tick, so each frame is stored as the runs of
+ * pixels that changed since the frame before, and a long game takes little more
+ * space than a handful of PNG files.
+ *
+ * The stream starts with a header: the magic number {@code "SNRL"}, a version, two
+ * reserved bytes, and the width and height as variable-length integers. Each frame
+ * follows as a four-byte length and a payload: the tick, then pairs of runs covering
+ * the image row by row, a number of unchanged pixels followed by a number of changed
+ * pixels and their colors, three bytes each. The first frame is compared with a black
+ * image.
+ */
+public final class RleFrameStream
+{
+    // File layout
+    private static final int MAGIC = 0x534E524C; // "SNRL"
+    private static final short VERSION = 1;
+    private static final int MAX_DIMENSION = 1 << 16;
+
+    // Largest frame payload written or read, so a damaged length cannot ask for any amount of memory
+    public static final int MAX_FRAME_BYTES = 64 << 20;
+
+    private RleFrameStream() {}
+
+    /**
+     * Writes frames to a file, replacing it.
+     */
+    public static final class Writer implements OffscreenRenderer.FrameSink
+    {
+        private final DataOutputStream out;
+        private int width = -1;
+        private int height;
+        private int previous[];
+        private int pixels[];
+        private ByteBuffer payload = ByteBuffer.allocate( 4096 );
+        private long frames;
+
+        /**
+         * Constructs a new {@code Writer}. The header is written with the first frame,
+         * which sets the size of every frame.
+         *
+         * @param file The file to write.
+         * @throws IOException If the file cannot be opened.
+         */
+        public Writer( Path file ) throws IOException
+        {
+            out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( file ), 1 << 16 ) );
+        }
+
+        @Override public void accept( BufferedImage frame, long tick ) throws IOException
+        {
+            if ( width < 0 )
+                writeHeader( frame.getWidth(), frame.getHeight() );
+            else if ( frame.getWidth() != width || frame.getHeight() != height )
+                throw new IOException( "Frame is " + frame.getWidth() + "x" + frame.getHeight() + ", not " + width + "x" + height );
+
+            frame.getRGB( 0, 0, width, height, pixels, 0, width );
+            payload.clear();
+            ensure( VarInt.MAX_SIZE );
+            VarInt.putVarLong( payload, tick );
+
+            int total = width * height;
+            int i = 0;
+            while ( i < total )
+            {
+                int start = i;
+                while ( i < total && ( pixels[i] & 0xFFFFFF ) == previous[i] )
+                    i++;
+                int unchanged = i - start;
+
+                start = i;
+                while ( i < total && ( pixels[i] & 0xFFFFFF ) != previous[i] )
+                    i++;
+                int changed = i - start;
+
+                ensure( 2 * VarInt.MAX_SIZE + 3 * changed );
+                VarInt.putVarLong( payload, unchanged );
+                VarInt.putVarLong( payload, changed );
+                for ( int j = start; j < i; j++ )
+                {
+                    int rgb = pixels[j] & 0xFFFFFF;
+                    payload.put( (byte)( rgb >>> 16 ) ).put( (byte)( rgb >>> 8 ) ).put( (byte)rgb );
+                    previous[j] = rgb;
+                }
+            }
+
+            if ( payload.position() > MAX_FRAME_BYTES )
+                throw new IOException( "Frame of " + payload.position() + " bytes is larger than a frame stream allows" );
+            out.writeInt( payload.position() );
+            out.write( payload.array(), 0, payload.position() );
+            frames++;
+        }
+
+        public long getFrames() { return frames; }
+
+        @Override public void close() throws IOException { out.close(); }
+
+        private void writeHeader( int width, int height ) throws IOException
+        {
+            if ( width > MAX_DIMENSION || height > MAX_DIMENSION )
+                throw new IOException( "Frames of " + width + "x" + height + " are too large" );
+
+            this.width = width;
+            this.height = height;
+            previous = new int[width * height];
+            pixels = new int[width * height];
+
+            ByteBuffer header = ByteBuffer.allocate( 8 + 2 * VarInt.MAX_SIZE );
+            header.putInt( MAGIC ).putShort( VERSION ).putShort( (short)0 );
+            VarInt.putVarLong( header, width );
+            VarInt.putVarLong( header, height );
+            out.write( header.array(), 0, header.position() );
+        }
+
+        private void ensure( int bytes )
+        {
+            if ( payload.remaining() >= bytes )
+                return;
+
+            ByteBuffer larger = ByteBuffer.allocate( Math.max( payload.capacity() * 2, payload.position() + bytes ) );
+            payload.flip();
+            larger.put( payload );
+            payload = larger;
+        }
+    }
+
+    /**
+     * Reads frames from a file, one at a time, into a reused image.
+     */
+    public static final class Reader implements Closeable
+    {
+        private final DataInputStream in;
+        private final int width;
+        private final int height;
+        private final int pixels[];
+        private final BufferedImage frame;
+        private byte payload[] = new byte[4096];
+        private long tick = -1;
+
+        /**
+         * Constructs a new {@code Reader} and reads the header.
+         *
+         * @param file The file to read.
+         * @throws IOException If the file cannot be read or is not a frame stream.
+         */
+        public Reader( Path file ) throws IOException
+        {
+            in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file ), 1 << 16 ) );
+            try
+            {
+                if ( in.readInt() != MAGIC )
+                    throw new IOException( "Not a frame stream" );
+                short version = in.readShort();
+                if ( version != VERSION )
+                    throw new IOException( "Unsupported frame stream version " + version );
+                in.readShort();
+
+                width = readVarInt();
+                height = readVarInt();
+                if ( width < 1 || height < 1 || width > MAX_DIMENSION || height > MAX_DIMENSION )
+                    throw new IOException( "Invalid frame size " + width + "x" + height );
+            }
+            catch ( IOException e )
+            {
+                in.close();
+                throw e instanceof EOFException ? new IOException( "Frame stream is truncated", e ) : e;
+            }
+            pixels = new int[width * height];
+            frame = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+        }
+
+        public int getWidth() { return width; }
+
+        public int getHeight() { return height; }
+
+        /**
+         * Reads the next frame.
+         *
+         * @return {@code false} at the end of the stream.
+         * @throws IOException If the frame cannot be read or is malformed.
+         */
+        public boolean next() throws IOException
+        {
+            int length;
+            try
+            {
+                length = in.readInt();
+            }
+            catch ( EOFException e )
+            {
+                return false;
+            }
+            if ( length < 1 || length > MAX_FRAME_BYTES )
+                throw new IOException( "Invalid frame length " + length );
+            if ( payload.length < length )
+                payload = new byte[Math.max( length, payload.length * 2 )];
+            in.readFully( payload, 0, length );
+
+            try
+            {
+                ByteBuffer buffer = ByteBuffer.wrap( payload, 0, length );
+                tick = VarInt.getVarLong( buffer );
+                int total = pixels.length;
+                int i = 0;
+                while ( buffer.hasRemaining() )
+                {
+                    long unchanged = VarInt.getVarLong( buffer );
+                    long changed = VarInt.getVarLong( buffer );
+                    if ( unchanged + changed > total - i )
+                        throw new IOException( "Frame runs past the end of the image" );
+
+                    i += (int)unchanged;
+                    for ( int end = i + (int)changed; i < end; i++ )
+                        pixels[i] = ( buffer.get() & 0xFF ) << 16 | ( buffer.get() & 0xFF ) << 8 | ( buffer.get() & 0xFF );
+                }
+            }
+            catch ( BufferUnderflowException e )
+            {
+                throw new IOException( "Malformed frame", e );
+            }
+
+            frame.setRGB( 0, 0, width, height, pixels, 0, width );
+            return true;
+        }
+
+        /**
+         * Returns the frame last read.
+         *
+         * @return The image, which is overwritten by the next frame.
+         */
+        public BufferedImage getFrame() { return frame; }
+
+        /**
+         * Returns the tick of the frame last read.
+         *
+         * @return The tick, or -1 before the first frame.
+         */
+        public long getTick() { return tick; }
+
+        @Override public void close() throws IOException { in.close(); }
+
+        private int readVarInt() throws IOException
+        {
+            int value = 0;
+            for ( int shift = 0; shift < 32; shift += 7 )
+            {
+                byte b = in.readByte();
+                value |= ( b & 0x7F ) << shift;
+                if ( b >= 0 )
+                    return value;
+            }
+            throw new IOException( "Malformed number" );
+        }
+    }
+}
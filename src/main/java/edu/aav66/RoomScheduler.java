@@ -0,0 +1,433 @@
+package edu.aav66;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code RoomScheduler} class ticks many independent game rooms at a fixed rate
+ * on a few worker threads. Every room is pinned to one worker, which is the only
+ * thread that ever ticks it, so nothing inside a room needs a lock; rooms only change
+ * workers when the scheduler rebalances, and are handed over through the new worker's
+ * command queue, never while a tick is running.
+ *
+ * Each worker divides the tick into slots of about a millisecond, like a timing wheel,
+ * and puts every room in one slot. At each slot's time it ticks all of that slot's
+ * rooms back to back as one batch, then sleeps until the next slot is due, so a worker
+ * wakes at most once a millisecond however many rooms it runs. New rooms go in the
+ * slot with the fewest rooms, which spreads the work evenly across the tick. Every
+ * worker's wheel turns from the time the scheduler started, so a slot stands for the
+ * same part of the tick on every worker, and a room moved to another worker keeps its
+ * slot and is still ticked at the same point in each tick. A worker that falls more
+ * than a whole tick behind skips the ticks it missed rather than running them back
+ * to back, as {@link GameLoop} does.
+ *
+ * Workers report how busy they are and how late their batches start, and
+ * {@link #rebalance()} moves rooms from the busiest worker to the idlest one.
+ */
+public final class RoomScheduler implements Closeable
+{
+    /**
+     * A game room, ticked by one worker at a time.
+     */
+    public interface Room
+    {
+        /**
+         * Advances the room by one tick.
+         *
+         * @return {@code false} to remove the room after this tick.
+         */
+        boolean tick();
+    }
+
+    /**
+     * How busy a worker was between two reports.
+     */
+    public static final class Load
+    {
+        private final int worker;
+        private final int rooms;
+        private final double utilization;
+        private final long lateness; // 99th percentile of how late batches started, in nanoseconds
+        private final long droppedTicks;
+
+        Load( int worker, int rooms, double utilization, long lateness, long droppedTicks )
+        {
+            this.worker = worker;
+            this.rooms = rooms;
+            this.utilization = utilization;
+            this.lateness = lateness;
+            this.droppedTicks = droppedTicks;
+        }
+
+        public int getWorker() { return worker; }
+
+        public int getRooms() { return rooms; }
+
+        /**
+         * Returns the share of the time the worker spent ticking rooms.
+         *
+         * @return The utilization, from 0 to 1.
+         */
+        public double getUtilization() { return utilization; }
+
+        /**
+         * Returns how late the worker's batches started since the last report, at the
+         * 99th percentile.
+         *
+         * @return The lateness in nanoseconds.
+         */
+        public long getLateness() { return lateness; }
+
+        /**
+         * Returns the room ticks skipped because the worker fell a whole tick behind.
+         *
+         * @return The number of ticks skipped since the scheduler started.
+         */
+        public long getDroppedTicks() { return droppedTicks; }
+
+        @Override public String toString()
+        {
+            return String.format( "worker %d: %d rooms, %.1f%% busy, p99 lateness %.2f ms, %d ticks dropped", worker,
+                                  rooms, utilization * 100, lateness / 1e6, droppedTicks );
+        }
+    }
+
+    // Rooms due within the same slot are ticked together
+    private static final long SLOT_NANOS = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+    // Difference in utilization between the busiest and idlest worker that moves rooms
+    private static final double REBALANCE_GAP = 0.1;
+
+    private final long tickNanos;
+    private final Worker workers[];
+    private long lastReport = System.nanoTime();
+    private long epoch; // when the first slot of every wheel was due, set before the workers start
+    private boolean started;
+
+    /**
+     * Constructs a new {@code RoomScheduler} with no rooms.
+     *
+     * @param workers The number of worker threads.
+     * @param tickMillis The length of a tick in milliseconds.
+     */
+    public RoomScheduler( int workers, int tickMillis )
+    {
+        if ( workers < 1 )
+            throw new IllegalArgumentException( "At least one worker is needed: " + workers );
+        if ( tickMillis < 1 )
+            throw new IllegalArgumentException( "Tick length must be positive: " + tickMillis );
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos( tickMillis );
+        this.workers = new Worker[workers];
+        for ( int i = 0; i < workers; i++ )
+            this.workers[i] = new Worker( i );
+    }
+
+    /**
+     * Starts the workers, each on a new daemon thread.
+     */
+    public synchronized void start()
+    {
+        if ( started )
+            return;
+
+        started = true;
+        lastReport = System.nanoTime();
+        epoch = lastReport;
+        for ( Worker worker : workers )
+            worker.thread.start();
+    }
+
+    /**
+     * Stops the workers and waits for them to finish. Rooms are not ticked again.
+     */
+    @Override public synchronized void close()
+    {
+        for ( Worker worker : workers )
+        {
+            worker.running = false;
+            LockSupport.unpark( worker.thread );
+        }
+        if ( !started )
+            return;
+
+        for ( Worker worker : workers )
+        {
+            try
+            {
+                worker.thread.join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public int getWorkerCount() { return workers.length; }
+
+    /**
+     * Returns the number of rooms being ticked, including rooms just added.
+     *
+     * @return The number of rooms.
+     */
+    public int getRoomCount()
+    {
+        int rooms = 0;
+        for ( Worker worker : workers )
+            rooms += worker.rooms.get();
+        return rooms;
+    }
+
+    /**
+     * Adds a room to the worker with the fewest rooms. Its first tick comes within one
+     * tick length.
+     *
+     * @param room The room.
+     * @return The index of the worker the room was pinned to.
+     */
+    public int addRoom( Room room )
+    {
+        int worker = 0;
+        for ( int i = 1; i < workers.length; i++ )
+            if ( workers[i].rooms.get() < workers[worker].rooms.get() )
+                worker = i;
+        addRoom( room, worker );
+        return worker;
+    }
+
+    /**
+     * Adds a room to a given worker.
+     *
+     * @param room The room.
+     * @param worker The index of the worker to pin the room to.
+     */
+    public void addRoom( Room room, int worker )
+    {
+        workers[worker].submit( room );
+    }
+
+    /**
+     * Reports how busy each worker has been since the last report.
+     *
+     * @return The load of each worker, by index.
+     */
+    public synchronized Load[] getLoads()
+    {
+        long now = System.nanoTime();
+        long elapsed = Math.max( 1, now - lastReport );
+        lastReport = now;
+
+        Load loads[] = new Load[workers.length];
+        for ( int i = 0; i < workers.length; i++ )
+        {
+            Worker worker = workers[i];
+            long busy = worker.busyNanos;
+            loads[i] = new Load( i, worker.rooms.get(), Math.min( 1.0, (double)( busy - worker.reportedBusyNanos ) / elapsed ),
+                                 worker.lateness.getValueAtPercentile( 99 ), worker.droppedTicks );
+            worker.reportedBusyNanos = busy;
+            worker.commands.add( worker.lateness::reset ); // Only the worker may reset its histogram
+        }
+        return loads;
+    }
+
+    /**
+     * Moves rooms from the busiest worker to the idlest one if their utilization since
+     * the last report differs by more than a tenth. Enough rooms are moved to even out
+     * the two, going by the busiest worker's average cost per room.
+     *
+     * @return The number of rooms asked to move.
+     */
+    public synchronized int rebalance()
+    {
+        Load loads[] = getLoads();
+        Load busiest = loads[0];
+        Load idlest = loads[0];
+        for ( Load load : loads )
+        {
+            if ( load.getUtilization() > busiest.getUtilization() )
+                busiest = load;
+            if ( load.getUtilization() < idlest.getUtilization() )
+                idlest = load;
+        }
+
+        double gap = busiest.getUtilization() - idlest.getUtilization();
+        if ( gap <= REBALANCE_GAP || busiest.getRooms() < 2 )
+            return 0;
+
+        double costPerRoom = busiest.getUtilization() / busiest.getRooms();
+        int moves = (int)Math.max( 1, Math.min( busiest.getRooms() / 2, gap / 2 / costPerRoom ) );
+        Worker source = workers[busiest.getWorker()];
+        Worker target = workers[idlest.getWorker()];
+        source.commands.add( () -> source.moveRooms( moves, target ) );
+        return moves;
+    }
+
+    /**
+     * A thread and the rooms pinned to it, on a wheel of slots.
+     */
+    private final class Worker
+    {
+        final Thread thread;
+        final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+        final AtomicInteger rooms = new AtomicInteger();
+        final LatencyHistogram lateness = new LatencyHistogram();
+        volatile boolean running = true;
+        volatile long busyNanos;
+        volatile long droppedTicks;
+        long reportedBusyNanos; // guarded by the scheduler
+
+        // Owned by the worker thread
+        final Room slots[][];
+        final int slotSizes[];
+        final long slotNanos;
+
+        Worker( int index )
+        {
+            int count = (int)Math.max( 1, tickNanos / SLOT_NANOS );
+            slots = new Room[count][4];
+            slotSizes = new int[count];
+            slotNanos = tickNanos / count;
+            thread = new Thread( this::run, "room-worker-" + index );
+            thread.setDaemon( true );
+        }
+
+        /**
+         * Hands a room to this worker, from any thread.
+         */
+        void submit( Room room ) { submit( room, -1 ); }
+
+        /**
+         * Hands a room to this worker, from any thread.
+         *
+         * @param slot The slot to put it in, or -1 for the slot with the fewest rooms.
+         */
+        void submit( Room room, int slot )
+        {
+            rooms.incrementAndGet();
+            commands.add( () -> place( room, slot ) );
+        }
+
+        private void run()
+        {
+            long due = epoch;
+            int slot = 0;
+            while ( running )
+            {
+                Runnable command;
+                while ( ( command = commands.poll() ) != null )
+                    command.run();
+
+                long now = System.nanoTime();
+                if ( now < due )
+                {
+                    LockSupport.parkNanos( due - now );
+                    continue;
+                }
+
+                long late = now - due;
+                if ( late >= tickNanos )
+                {
+                    // Skip the turns of the wheel missed rather than run them back to back
+                    long turns = late / tickNanos;
+                    droppedTicks += turns * rooms.get();
+                    due += turns * tickNanos;
+                    late -= turns * tickNanos;
+                }
+                lateness.record( late );
+
+                tickSlot( slot );
+                busyNanos += System.nanoTime() - now;
+                slot = slot + 1 == slots.length ? 0 : slot + 1;
+                due += slotNanos;
+            }
+        }
+
+        /**
+         * Ticks one slot's rooms, dropping those that are done or fail.
+         */
+        private void tickSlot( int slot )
+        {
+            Room batch[] = slots[slot];
+            for ( int i = 0; i < slotSizes[slot]; )
+            {
+                boolean keep;
+                try
+                {
+                    keep = batch[i].tick();
+                }
+                catch ( RuntimeException e )
+                {
+                    System.err.println( "Room failed on " + thread.getName() + ": " + e );
+                    keep = false;
+                }
+
+                if ( keep )
+                    i++;
+                else
+                {
+                    remove( slot, i );
+                    rooms.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Puts a room in a slot, or in the slot with the fewest rooms if none is given.
+         */
+        private void place( Room room, int slot )
+        {
+            if ( slot < 0 )
+            {
+                slot = 0;
+                for ( int i = 1; i < slots.length; i++ )
+                    if ( slotSizes[i] < slotSizes[slot] )
+                        slot = i;
+            }
+
+            if ( slotSizes[slot] == slots[slot].length )
+                slots[slot] = Arrays.copyOf( slots[slot], slotSizes[slot] * 2 );
+            slots[slot][slotSizes[slot]++] = room;
+        }
+
+        /**
+         * Takes a room out of a slot, moving the slot's last room into its place.
+         */
+        private Room remove( int slot, int i )
+        {
+            Room room = slots[slot][i];
+            int last = --slotSizes[slot];
+            slots[slot][i] = slots[slot][last];
+            slots[slot][last] = null;
+            return room;
+        }
+
+        /**
+         * Hands rooms to another worker, taking them from the fullest slots. Each room
+         * goes in the same slot on the other worker's wheel, so its ticks stay evenly
+         * spaced across the move.
+         */
+        private void moveRooms( int count, Worker target )
+        {
+            for ( int moved = 0; moved < count; moved++ )
+            {
+                int slot = 0;
+                for ( int i = 1; i < slots.length; i++ )
+                    if ( slotSizes[i] > slotSizes[slot] )
+                        slot = i;
+                if ( slotSizes[slot] == 0 )
+                    return;
+
+                Room room = remove( slot, slotSizes[slot] - 1 );
+                rooms.decrementAndGet();
+                target.submit( room, slot );
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package edu.aav66;
+
+import java.util.Random;
+
+/**
+ * The {@code SeededRandom} class produces exactly the same sequence as
+ * {@link java.util.Random} for the same seed, but keeps its state in a plain field
+ * that can be read and restored. This lets a {@link SnakeEngine} be copied mid-game,
+ * random number generator included, so a game can be resumed from a checkpoint and
+ * play out the same way. It is not thread-safe; each engine owns its own instance.
+ */
+public final class SeededRandom extends Random
+{
+    // The linear congruential generator used by java.util.Random
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = ( 1L << 48 ) - 1;
+
+    private long state; // No initializer: Random's constructor sets it through setSeed()
+
+    /**
+     * Constructs a new {@code SeededRandom}.
+     *
+     * @param seed The initial seed.
+     */
+    public SeededRandom( long seed ) { super( seed ); }
+
+    @Override public void setSeed( long seed )
+    {
+        super.setSeed( seed ); // Clears the cached Gaussian
+        state = ( seed ^ MULTIPLIER ) & MASK;
+    }
+
+    @Override protected int next( int bits )
+    {
+        state = ( state * MULTIPLIER + ADDEND ) & MASK;
+        return (int)( state >>> ( 48 - bits ) );
+    }
+
+    /**
+     * Returns the internal state of the generator.
+     *
+     * @return The state, to be passed to {@link #setState(long)}.
+     */
+    public long getState() { return state; }
+
+    /**
+     * Restores a state returned by {@link #getState()}.
+     *
+     * @param state The state to restore.
+     */
+    public void setState( long state ) { this.state = state & MASK; }
+}
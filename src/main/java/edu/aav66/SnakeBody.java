@@ -0,0 +1,162 @@
+package edu.aav66;
+
+/**
+ * The {@code SnakeBody} class stores the segments of the snake in a circular buffer
+ * with head and tail indices, so moving the snake is a constant-time operation no
+ * matter how long it is. Segment {@code 0} is the head and segment {@code size() - 1}
+ * is the tail. Each segment's cell coordinates are packed into a single {@code int},
+ * so the body needs one word per board cell however large the board is.
+ *
+ * The read methods are public so renderers and tests can walk the body without
+ * access to the underlying arrays; only {@link SnakeEngine} may change it.
+ */
+public final class SnakeBody
+{
+    private final int segments[]; // packed (y << 16 | x) cell coordinates of the segments
+    private int head;             // index of the head segment
+    private int tail;             // index of the tail segment
+    private int size;
+
+    /**
+     * Constructs an empty {@code SnakeBody} able to hold up to {@code capacity} segments.
+     *
+     * @param capacity The maximum number of segments.
+     */
+    SnakeBody( int capacity )
+    {
+        // One spare slot keeps the last removed tail available to restoreTail()
+        segments = new int[capacity + 1];
+        clear();
+    }
+
+    /**
+     * Removes all segments.
+     */
+    void clear()
+    {
+        head = 0;
+        tail = 1;
+        size = 0;
+    }
+
+    /**
+     * Adds a new head segment in front of the current head.
+     *
+     * @param headX The column of the new head.
+     * @param headY The row of the new head.
+     */
+    void addHead( int headX, int headY )
+    {
+        head = next( head );
+        segments[head] = pack( headX, headY );
+        size++;
+    }
+
+    /**
+     * Removes the tail segment. Its coordinates stay in the buffer until the next
+     * {@link #addHead(int, int)}, so the removal can be undone with {@link #restoreTail()}.
+     */
+    void removeTail()
+    {
+        tail = next( tail );
+        size--;
+    }
+
+    /**
+     * Restores the tail segment removed by the last call to {@link #removeTail()}.
+     */
+    void restoreTail()
+    {
+        tail = previous( tail );
+        size++;
+    }
+
+    /**
+     * Removes the head segment, undoing the last {@link #addHead(int, int)}.
+     */
+    void removeHead()
+    {
+        head = previous( head );
+        size--;
+    }
+
+    /**
+     * Adds a segment behind the current tail, undoing a {@link #removeTail()}.
+     *
+     * @param tailX The column of the new tail.
+     * @param tailY The row of the new tail.
+     */
+    void addTail( int tailX, int tailY )
+    {
+        tail = previous( tail );
+        segments[tail] = pack( tailX, tailY );
+        size++;
+    }
+
+    /**
+     * Replaces the segments with those of another body of the same capacity.
+     *
+     * @param source The body to copy.
+     */
+    void copyFrom( SnakeBody source )
+    {
+        System.arraycopy( source.segments, 0, segments, 0, segments.length );
+        head = source.head;
+        tail = source.tail;
+        size = source.size;
+    }
+
+    /**
+     * Returns the number of segments in the body.
+     *
+     * @return The length of the snake.
+     */
+    public int size() { return size; }
+
+    /**
+     * Returns the column of a segment.
+     *
+     * @param i The segment number, where {@code 0} is the head.
+     * @return The column of the segment.
+     */
+    public int getX( int i ) { return xOf( segments[indexOf( i )] ); }
+
+    /**
+     * Returns the row of a segment.
+     *
+     * @param i The segment number, where {@code 0} is the head.
+     * @return The row of the segment.
+     */
+    public int getY( int i ) { return yOf( segments[indexOf( i )] ); }
+
+    public int getHeadX() { return xOf( segments[head] ); }
+
+    public int getHeadY() { return yOf( segments[head] ); }
+
+    public int getTailX() { return xOf( segments[tail] ); }
+
+    public int getTailY() { return yOf( segments[tail] ); }
+
+    /**
+     * Packs a cell's coordinates into the {@code int} a segment is stored as.
+     */
+    static int pack( int x, int y ) { return ( y << 16 ) | ( x & 0xFFFF ); }
+
+    // Sign-extending so a head that has left the board at -1 decodes correctly
+    static int xOf( int segment ) { return (short)segment; }
+
+    static int yOf( int segment ) { return segment >> 16; }
+
+    private int indexOf( int i )
+    {
+        if ( i < 0 || i >= size )
+            throw new IndexOutOfBoundsException( "Segment " + i + " out of bounds for length " + size );
+
+        int index = head - i;
+        return index < 0 ? index + segments.length : index;
+    }
+
+    private int next( int index ) { return ++index == segments.length ? 0 : index; }
+
+    private int previous( int index ) { return index == 0 ? segments.length - 1 : index - 1; }
+}
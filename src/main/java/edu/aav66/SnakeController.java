@@ -0,0 +1,28 @@
+package edu.aav66;
+
+/**
+ * The {@code SnakeController} interface decides which way the snake turns, one tick
+ * at a time, from the state of a {@link SnakeEngine}. Controllers let games be played
+ * without a keyboard, by bots in the window or headless in a {@link BatchSimulator}.
+ *
+ * A controller may keep state and scratch buffers between ticks, so an instance must
+ * only be used by one thread and one game at a time; {@link #reset(SnakeEngine)} is
+ * called before each new game.
+ */
+public interface SnakeController
+{
+    /**
+     * Returns the direction to step the engine with next.
+     *
+     * @param engine The engine, between ticks.
+     * @return The direction ('U', 'D', 'L' or 'R'); an invalid turn keeps the current direction.
+     */
+    char nextDirection( SnakeEngine engine );
+
+    /**
+     * Prepares the controller for a new game. Does nothing by default.
+     *
+     * @param engine The engine, just reset.
+     */
+    default void reset( SnakeEngine engine ) {}
+}
@@ -0,0 +1,476 @@
+package edu.aav66;
+
+import java.util.Random;
+
+/**
+ * The {@code SnakeEngine} class holds the complete state of a Snake game and applies
+ * the game rules one tick at a time. It has no dependency on AWT or Swing, so games can
+ * be stepped in headless JVMs for bots, tests and simulations, while {@link GamePanel}
+ * only renders the state exposed here.
+ */
+public final class SnakeEngine
+{
+    // Initial length of the snake
+    public static final int INITIAL_BODY_PARTS = 6;
+
+    // Dimensions of the board in cells
+    private final int columns;
+    private final int rows;
+
+    // Snake variables
+    private final SnakeBody body;
+    private final OccupancyGrid occupancy;
+    private boolean hitBody; // set by move() when the head enters an occupied cell
+
+    // Game variables
+    private int applesEaten;
+    private int appleX;
+    private int appleY;
+    private char direction;
+    private boolean running;
+    private long ticks;
+    private long seed;
+    private final Random random;
+
+    /**
+     * Constructs a new {@code SnakeEngine} for a board of the given size and resets it
+     * to the start of a game.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @param random The random number generator used to place apples.
+     * @throws IllegalArgumentException If the board is smaller than 2x1 or larger than
+     *                                  {@link GameConfig#MAX_DIMENSION} on a side.
+     */
+    public SnakeEngine( int columns, int rows, Random random )
+    {
+        // Body cells keep each coordinate in 16 bits
+        if ( columns < 2 || columns > GameConfig.MAX_DIMENSION || rows < 1 || rows > GameConfig.MAX_DIMENSION )
+            throw new IllegalArgumentException( "Board size must be between 2x1 and " + GameConfig.MAX_DIMENSION + "x" +
+                                                GameConfig.MAX_DIMENSION + " cells: " + columns + "x" + rows );
+
+        this.columns = columns;
+        this.rows = rows;
+        this.random = random;
+
+        body = new SnakeBody( getMaxBodyParts( columns, rows ) );
+        occupancy = new OccupancyGrid( columns * rows );
+
+        reset();
+    }
+
+    /**
+     * Constructs a new deterministic {@code SnakeEngine}. Two engines built with the
+     * same seed and stepped with the same directions play exactly the same game, and
+     * the engine can be copied with {@link #copyFrom(SnakeEngine)}.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @param seed The seed apples are placed with.
+     */
+    public SnakeEngine( int columns, int rows, long seed )
+    {
+        this( columns, rows, new SeededRandom( seed ) );
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the most segments the snake can have on a board. Eating keeps the
+     * starting segments stacked on the first cell, so on a small board the snake can
+     * cover every cell with all but one of them still stacked there; one more is the
+     * head that runs into the body.
+     *
+     * @param columns The width of the board in cells.
+     * @param rows The height of the board in cells.
+     * @return The largest number of segments.
+     */
+    public static int getMaxBodyParts( int columns, int rows )
+    {
+        return Math.addExact( Math.multiplyExact( columns, rows ), INITIAL_BODY_PARTS );
+    }
+
+    /**
+     * Reseeds the random number generator and resets the engine, so the game that
+     * follows is determined by the seed and the directions it is stepped with.
+     *
+     * @param seed The seed apples are placed with.
+     */
+    public void reset( long seed )
+    {
+        random.setSeed( seed );
+        this.seed = seed;
+        reset();
+    }
+
+    /**
+     * Resets the snake's body, score, and direction to their start conditions,
+     * places a new apple and marks the game as running.
+     */
+    public void reset()
+    {
+        body.clear();
+        occupancy.clear();
+        for ( int i = 0; i < INITIAL_BODY_PARTS; i++ )
+            body.addHead( 0, 0 );
+        occupancy.set( cellOf( 0, 0 ) );
+        hitBody = false;
+
+        applesEaten = 0;
+        direction = 'R';
+        ticks = 0;
+        running = true;
+        newApple();
+    }
+
+    /**
+     * Advances the game by one tick. The snake turns to the requested direction unless
+     * that would reverse it into its own body, moves one cell, eats an apple if it
+     * reaches one, and the game ends if the head hits a wall or the body.
+     *
+     * @param newDirection The direction to turn to ('U', 'D', 'L' or 'R'); any other
+     *                     value keeps the current direction.
+     * @return {@code true} if the game is still running after this tick.
+     */
+    public boolean step( char newDirection )
+    {
+        if ( !running )
+            return false;
+
+        if ( isValidTurn( direction, newDirection ) )
+            direction = newDirection;
+
+        move();
+        checkApple();
+        checkCollisions();
+        ticks++;
+        return running;
+    }
+
+    /**
+     * Advances the game by one tick keeping the current direction.
+     *
+     * @return {@code true} if the game is still running after this tick.
+     */
+    public boolean step() { return step( direction ); }
+
+    /**
+     * Returns whether the snake may turn from one direction to another.
+     * A turn is valid if the new direction is a known direction and does not
+     * point straight back into the snake's body.
+     *
+     * @param current The direction the snake is currently moving in.
+     * @param next The requested direction.
+     * @return {@code true} if the turn is allowed.
+     */
+    public static boolean isValidTurn( char current, char next )
+    {
+        switch ( next )
+        {
+        case 'U':
+            return current != 'D';
+        case 'D':
+            return current != 'U';
+        case 'L':
+            return current != 'R';
+        case 'R':
+            return current != 'L';
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Generates a new location for the apple on a random free cell of the board,
+     * so apples never spawn inside the snake. If the snake covers the whole board
+     * the apple is placed off the board.
+     */
+    public void newApple()
+    {
+        int cell = occupancy.randomFreeCell( random );
+        if ( cell < 0 )
+        {
+            appleX = -1;
+            appleY = -1;
+            return;
+        }
+
+        appleX = cell % columns;
+        appleY = cell / columns;
+    }
+
+    /**
+     * Updates the position of the snake in the direction it is currently moving.
+     * The head moves forward into the next grid position based on the current
+     * direction and the tail segment is dropped, which takes constant time
+     * regardless of the snake's length. The occupancy bitmap is updated and the
+     * head is tested against it before its own bit is set.
+     */
+    public void move()
+    {
+        int headX = body.getHeadX();
+        int headY = body.getHeadY();
+        int tailX = body.getTailX();
+        int tailY = body.getTailY();
+
+        switch ( direction )
+        {
+        case 'U':
+            headY--;
+            break;
+
+        case 'D':
+            headY++;
+            break;
+
+        case 'L':
+            headX--;
+            break;
+
+        case 'R':
+            headX++;
+            break;
+        }
+
+        body.addHead( headX, headY );
+        body.removeTail();
+
+        // Segments stacked at the start of a game share a cell; keep it until the last one leaves
+        if ( body.getTailX() != tailX || body.getTailY() != tailY )
+            occupancy.clear( cellOf( tailX, tailY ) );
+
+        if ( isOnBoard( headX, headY ) )
+        {
+            int cell = cellOf( headX, headY );
+            hitBody = occupancy.isOccupied( cell );
+            occupancy.set( cell );
+        }
+        else
+        {
+            hitBody = false;
+        }
+    }
+
+    /**
+     * Checks if the snake's head has collided with an apple.
+     * If so, increases the length of the snake by one segment and increments the score.
+     * A new apple is then generated at a random location.
+     */
+    public void checkApple()
+    {
+        if ( ( body.getHeadX() == appleX ) && ( body.getHeadY() == appleY ) )
+        {
+            body.restoreTail(); // Grow by keeping the tail that move() just dropped
+            occupancy.set( cellOf( body.getTailX(), body.getTailY() ) );
+            applesEaten++;
+            newApple();
+        }
+    }
+
+    /**
+     * Checks for collisions between the snake's head and its body or the borders of the board.
+     * If a collision is detected, it sets the running flag to false, effectively ending the game.
+     * The body check is the bit test made by the last {@link #move()}.
+     */
+    public void checkCollisions()
+    {
+        if ( hitBody || !isOnBoard( body.getHeadX(), body.getHeadY() ) )
+            running = false;
+    }
+
+    private boolean isOnBoard( int x, int y ) { return x >= 0 && x < columns && y >= 0 && y < rows; }
+
+    private int cellOf( int x, int y ) { return y * columns + x; }
+
+    /**
+     * Places the apple at the given cell.
+     *
+     * @param appleX The column of the apple.
+     * @param appleY The row of the apple.
+     */
+    public void setApple( int appleX, int appleY )
+    {
+        this.appleX = appleX;
+        this.appleY = appleY;
+    }
+
+    /**
+     * Sets the direction the snake is moving in without any reversal check.
+     *
+     * @param direction The new direction ('U', 'D', 'L' or 'R').
+     */
+    public void setDirection( char direction ) { this.direction = direction; }
+
+    public int getColumns() { return columns; }
+
+    public int getRows() { return rows; }
+
+    public int getApplesEaten() { return applesEaten; }
+
+    public int getBodyParts() { return body.size(); }
+
+    /**
+     * Returns a read-only view of the cells covered by the snake.
+     *
+     * @return The occupancy bitmap of the board.
+     */
+    public OccupancyGrid getOccupancy() { return occupancy; }
+
+    /**
+     * Returns a read-only view of the snake's body.
+     *
+     * @return The body of the snake, head first.
+     */
+    public SnakeBody getBody() { return body; }
+
+    public int getHeadX() { return body.getHeadX(); }
+
+    public int getHeadY() { return body.getHeadY(); }
+
+    public int getAppleX() { return appleX; }
+
+    public int getAppleY() { return appleY; }
+
+    public char getDirection() { return direction; }
+
+    public boolean isRunning() { return running; }
+
+    public long getTicks() { return ticks; }
+
+    /**
+     * Returns the seed of the current game.
+     *
+     * @return The seed last passed to the constructor or {@link #reset(long)}, or 0
+     *         if the engine was built with an unseeded random number generator.
+     */
+    public long getSeed() { return seed; }
+
+    /**
+     * Takes back the last step, given what it changed that the engine no longer
+     * knows. Used by {@link RewindBuffer}.
+     *
+     * @param tailX The column of the tail before the step.
+     * @param tailY The row of the tail before the step.
+     * @param appleX The column of the apple before the step.
+     * @param appleY The row of the apple before the step.
+     * @param direction The direction before the step.
+     * @param applesEaten The score before the step; the snake grew in the step if it is lower now.
+     * @param randomState The state of the random number generator before the step.
+     */
+    void unstep( int tailX, int tailY, int appleX, int appleY, char direction, int applesEaten, long randomState )
+    {
+        if ( !( random instanceof SeededRandom ) )
+            throw new IllegalStateException( "Only engines built with a seed can be rewound" );
+
+        // A head that ran into the body shares its cell with another segment, which keeps it
+        int headX = body.getHeadX();
+        int headY = body.getHeadY();
+        body.removeHead();
+        if ( isOnBoard( headX, headY ) && !hitBody )
+            occupancy.clear( cellOf( headX, headY ) );
+        hitBody = false;
+
+        if ( applesEaten == this.applesEaten )
+        {
+            body.addTail( tailX, tailY );
+            occupancy.set( cellOf( tailX, tailY ) );
+        }
+
+        ( (SeededRandom)random ).setState( randomState );
+        this.applesEaten = applesEaten;
+        this.appleX = appleX;
+        this.appleY = appleY;
+        this.direction = direction;
+        running = true;
+        ticks--;
+    }
+
+    /**
+     * Returns the state of the random number generator, for {@link GameSnapshot} and {@link RewindBuffer}.
+     *
+     * @throws IllegalStateException If the engine was built without a seed.
+     */
+    long getRandomState()
+    {
+        if ( !( random instanceof SeededRandom ) )
+            throw new IllegalStateException( "Only engines built with a seed can be captured" );
+        return ( (SeededRandom)random ).getState();
+    }
+
+    /**
+     * Replaces the state of the engine with a snapshot, random number generator
+     * included, so the game goes on as the one the snapshot was taken of.
+     *
+     * @param snapshot The snapshot to restore.
+     * @throws IllegalArgumentException If the snapshot is of a different board size or
+     *                                  the engine was built without a seed.
+     */
+    void restore( GameSnapshot snapshot )
+    {
+        if ( snapshot.getColumns() != columns || snapshot.getRows() != rows )
+            throw new IllegalArgumentException( "Cannot restore a " + snapshot.getColumns() + "x" + snapshot.getRows() +
+                                                " snapshot into a " + columns + "x" + rows + " engine" );
+        if ( !( random instanceof SeededRandom ) )
+            throw new IllegalArgumentException( "Only engines built with a seed can be restored" );
+
+        // Only the cells of the old body are freed, so restoring costs the length of the
+        // snake rather than the area of the board
+        for ( int i = 0; i < body.size(); i++ )
+        {
+            int x = body.getX( i );
+            int y = body.getY( i );
+            if ( isOnBoard( x, y ) )
+                occupancy.clear( cellOf( x, y ) );
+        }
+        body.clear();
+
+        // Rebuilt tail first, so the head ends up as segment 0
+        for ( int i = snapshot.getBodyParts() - 1; i >= 0; i-- )
+        {
+            int x = snapshot.getX( i );
+            int y = snapshot.getY( i );
+            body.addHead( x, y );
+            if ( isOnBoard( x, y ) )
+                occupancy.set( cellOf( x, y ) );
+        }
+        hitBody = false;
+
+        ( (SeededRandom)random ).setState( snapshot.getRandomState() );
+        seed = snapshot.getSeed();
+        applesEaten = snapshot.getApplesEaten();
+        appleX = snapshot.getAppleX();
+        appleY = snapshot.getAppleY();
+        direction = snapshot.getDirection();
+        running = snapshot.isRunning();
+        ticks = snapshot.getTicks();
+    }
+
+    /**
+     * Copies the complete state of another engine of the same size into this one,
+     * including the state of its random number generator, so both play on
+     * identically. Both engines must have been built with a seed.
+     *
+     * @param source The engine to copy.
+     * @throws IllegalArgumentException If the engines differ in size or either was
+     *                                  built without a seed.
+     */
+    void copyFrom( SnakeEngine source )
+    {
+        if ( source.columns != columns || source.rows != rows )
+            throw new IllegalArgumentException( "Cannot copy a " + source.columns + "x" + source.rows + " engine into a " +
+                                                columns + "x" + rows + " engine" );
+        if ( !( random instanceof SeededRandom ) || !( source.random instanceof SeededRandom ) )
+            throw new IllegalArgumentException( "Only engines built with a seed can be copied" );
+
+        body.copyFrom( source.body );
+        occupancy.copyFrom( source.occupancy );
+        ( (SeededRandom)random ).setState( ( (SeededRandom)source.random ).getState() );
+        hitBody = source.hitBody;
+        applesEaten = source.applesEaten;
+        appleX = source.appleX;
+        appleY = source.appleY;
+        direction = source.direction;
+        running = source.running;
+        ticks = source.ticks;
+        seed = source.seed;
+    }
+}
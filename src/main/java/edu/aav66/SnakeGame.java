@@ -1,15 +1,367 @@
 package edu.aav66;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
 /**
  * SnakeGame
  *
  * This class represents the main entry point for the Snake Game application.
  * It creates a new instance of the GameFrame class to start the game.
+ * Run with {@code --replay <file>} to play a recorded game back headless at
+ * full speed and report whether it reproduces the recorded result, or with
+ * {@code --simulate <games> [seed] [greedy|autopilot|hamiltonian]} to play a batch of
+ * headless games on every core and print their statistics. {@code --server [port]}
+ * runs a multiplayer {@link Arena} on the configured board, and
+ * {@code --load-test <players> [seconds] [host:port]} connects headless players to
+ * one, or to a server started in the same JVM that ticks as fast as it can.
+ * {@code --rooms <rooms> [seconds] [workers]} runs many single-player rooms played by
+ * the greedy bot on a {@link RoomScheduler} and prints each worker's load.
+ * {@code --render <replay> <output> [unitSize] [every]} draws every tick, or one tick
+ * in {@code every}, of a recorded game without a display, into numbered PNG files in
+ * a directory or, for an output ending in {@code .rle}, into an {@link RleFrameStream}.
  *
  * @param args The command line arguments passed to the application
  * @return void
  */
 public class SnakeGame
 {
-    public static void main( String[] args ) { new GameFrame(); }
+    // Games still running after this many ticks are stopped by --simulate
+    private static final long MAX_SIMULATED_TICKS = 1_000_000;
+
+    // Port an arena server listens on by default
+    private static final int DEFAULT_PORT = 7373;
+
+    // Cells of arena board per player in a load test
+    private static final int CELLS_PER_PLAYER = 100;
+
+    // Ticks of a replay queued for the renderer before playback waits for it
+    private static final int RENDER_QUEUE_DEPTH = 64;
+
+    public static void main( String[] args )
+    {
+        if ( args.length == 2 && args[0].equals( "--replay" ) )
+        {
+            System.exit( replay( Path.of( args[1] ) ) ? 0 : 1 );
+        }
+        if ( args.length >= 2 && args.length <= 4 && args[0].equals( "--simulate" ) )
+        {
+            simulate( Integer.parseInt( args[1] ), args.length >= 3 ? Long.parseLong( args[2] ) : 1,
+                      args.length == 4 ? args[3] : "greedy" );
+            return;
+        }
+
+        if ( args.length <= 2 && args.length >= 1 && args[0].equals( "--server" ) )
+        {
+            serve( args.length == 2 ? Integer.parseInt( args[1] ) : DEFAULT_PORT );
+            return;
+        }
+        if ( args.length >= 2 && args.length <= 4 && args[0].equals( "--load-test" ) )
+        {
+            System.exit( loadTest( Integer.parseInt( args[1] ), args.length >= 3 ? Integer.parseInt( args[2] ) : 10,
+                                   args.length == 4 ? args[3] : null ) ? 0 : 1 );
+        }
+
+        if ( args.length >= 3 && args.length <= 5 && args[0].equals( "--render" ) )
+        {
+            System.exit( render( Path.of( args[1] ), Path.of( args[2] ), args.length >= 4 ? Integer.parseInt( args[3] ) : 8,
+                                 args.length == 5 ? Integer.parseInt( args[4] ) : 1 ) ? 0 : 1 );
+        }
+        if ( args.length >= 2 && args.length <= 4 && args[0].equals( "--rooms" ) )
+        {
+            rooms( Integer.parseInt( args[1] ), args.length >= 3 ? Integer.parseInt( args[2] ) : 10,
+                   args.length == 4 ? Integer.parseInt( args[3] ) : Runtime.getRuntime().availableProcessors() );
+            return;
+        }
+
+        new GameFrame();
+    }
+
+    /**
+     * A room holding one headless game played by the greedy bot, started again with
+     * the next seed when it ends.
+     */
+    private static final class BotRoom implements RoomScheduler.Room
+    {
+        private final SnakeEngine engine;
+        private final SnakeController controller = new GreedyController();
+        private long ticks; // read once the scheduler has stopped
+
+        BotRoom( GameConfig config, long seed )
+        {
+            engine = new SnakeEngine( config.getColumns(), config.getRows(), seed );
+        }
+
+        @Override public boolean tick()
+        {
+            if ( !engine.isRunning() )
+                engine.reset( engine.getSeed() + 1 );
+            engine.step( controller.nextDirection( engine ) );
+            ticks++;
+            return true;
+        }
+    }
+
+    /**
+     * Runs headless rooms at the configured tick rate, printing the load of every
+     * worker and rebalancing them once a second.
+     *
+     * @param count The number of rooms.
+     * @param seconds How long to run them for.
+     * @param workers The number of worker threads.
+     */
+    private static void rooms( int count, int seconds, int workers )
+    {
+        GameConfig config = GameConfig.fromSystemProperties();
+        BotRoom rooms[] = new BotRoom[count];
+        RoomScheduler scheduler = new RoomScheduler( workers, config.getTickMillis() );
+        for ( int i = 0; i < count; i++ )
+            scheduler.addRoom( rooms[i] = new BotRoom( config, i + 1 ) );
+
+        long start = System.nanoTime();
+        scheduler.start();
+        try
+        {
+            for ( int second = 1; second <= seconds; second++ )
+            {
+                Thread.sleep( 1000 );
+                System.out.println( "After " + second + " s:" );
+                for ( RoomScheduler.Load load : scheduler.getLoads() )
+                    System.out.println( "  " + load );
+                int moved = scheduler.rebalance();
+                if ( moved > 0 )
+                    System.out.println( "  moving " + moved + " rooms" );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            scheduler.close();
+        }
+
+        double elapsed = ( System.nanoTime() - start ) / 1e9;
+        long ticks = 0;
+        for ( BotRoom room : rooms )
+            ticks += room.ticks;
+        System.out.printf( "%d rooms on %d workers: %.1f ticks per room per second (%.1f expected at %d ms)%n", count,
+                           workers, ticks / elapsed / count, 1000.0 / config.getTickMillis(), config.getTickMillis() );
+    }
+
+    /**
+     * Runs a multiplayer arena on the configured board until the JVM is stopped.
+     *
+     * @param port The port to listen on.
+     */
+    private static void serve( int port )
+    {
+        GameConfig config = GameConfig.fromSystemProperties();
+        Arena arena = new Arena( config.getColumns(), config.getRows(), arenaApples( config.getColumns(), config.getRows() ),
+                                 System.nanoTime() );
+        try
+        {
+            ArenaServer server = new ArenaServer( arena, config.getTickMillis(), new InetSocketAddress( port ) );
+            server.start();
+            System.out.println( "Arena " + config.getColumns() + "x" + config.getRows() + " listening on port " +
+                                server.getPort() );
+            Thread.currentThread().join();
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "Problem starting arena server: " + e.getMessage() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Connects headless players to an arena server and prints the rate frames arrive
+     * at. Without an address a server is started on loopback that ticks as fast as
+     * it can, and the players one core can serve at the configured tick rate is
+     * worked out from how fast it ticks.
+     *
+     * @param players The number of players to connect.
+     * @param seconds How long to play for.
+     * @param address The server's {@code host:port}, or {@code null} to start one.
+     * @return {@code true} if the test ran.
+     */
+    private static boolean loadTest( int players, int seconds, String address )
+    {
+        ArenaServer server = null;
+        try
+        {
+            InetSocketAddress target;
+            if ( address == null )
+            {
+                int side = (int)Math.min( GameConfig.MAX_DIMENSION,
+                                          Math.max( 32, Math.ceil( Math.sqrt( (double)players * CELLS_PER_PLAYER ) ) ) );
+                Arena arena = new Arena( side, side, arenaApples( side, side ), 1 );
+                server = new ArenaServer( arena, 0, new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ) );
+                server.start();
+                target = new InetSocketAddress( InetAddress.getLoopbackAddress(), server.getPort() );
+                System.out.println( "Arena " + side + "x" + side + " on port " + server.getPort() );
+            }
+            else
+            {
+                int colon = address.lastIndexOf( ':' );
+                target = new InetSocketAddress( address.substring( 0, colon ), Integer.parseInt( address.substring( colon + 1 ) ) );
+            }
+
+            ArenaLoadClient.Result result = new ArenaLoadClient( target, players, 1 ).run( seconds * 1000L );
+            System.out.println( result );
+            if ( server != null )
+            {
+                LatencyHistogram ticks = server.getTickTimes();
+                int tickMillis = GameConfig.fromSystemProperties().getTickMillis();
+                System.out.printf( "tick p50 %.1f us, p99 %.1f us; about %.0f players per core at %d ms ticks%n",
+                                   ticks.getValueAtPercentile( 50 ) / 1e3, ticks.getValueAtPercentile( 99 ) / 1e3,
+                                   result.getFramesPerSecond() * tickMillis / 1000, tickMillis );
+            }
+            return true;
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "Load test failed: " + e.getMessage() );
+            return false;
+        }
+        finally
+        {
+            if ( server != null )
+                server.close();
+        }
+    }
+
+    /**
+     * Returns the number of apples kept on an arena board: one per 64 cells.
+     */
+    private static int arenaApples( int columns, int rows ) { return Math.max( 1, columns * rows / 64 ); }
+
+    /**
+     * Plays a batch of games on a board of the configured size and prints their
+     * statistics.
+     *
+     * @param games The number of games to play.
+     * @param firstSeed The seed of the first game.
+     * @param controller The name of the controller that plays the games.
+     */
+    private static void simulate( int games, long firstSeed, String controller )
+    {
+        Supplier<SnakeController> controllers;
+        switch ( controller )
+        {
+        case "greedy":
+            controllers = GreedyController::new;
+            break;
+        case "autopilot":
+            controllers = AutopilotController::new;
+            break;
+        case "hamiltonian":
+            controllers = HamiltonianController::new;
+            break;
+        default:
+            throw new IllegalArgumentException( "Unknown controller: " + controller );
+        }
+
+        GameConfig config = GameConfig.fromSystemProperties();
+        BatchSimulator simulator = new BatchSimulator( config.getColumns(), config.getRows(), MAX_SIMULATED_TICKS, controllers );
+
+        long start = System.nanoTime();
+        BatchSimulator.Statistics statistics = simulator.run( firstSeed, games );
+        double seconds = ( System.nanoTime() - start ) / 1e9;
+
+        System.out.println( statistics );
+        System.out.printf( "%.2f s, %.0f ticks per second%n", seconds, statistics.getTotalTicks() / seconds );
+    }
+
+    /**
+     * Draws the ticks of a replay in a headless JVM, rendering on a worker thread
+     * while the replay is played, and prints how fast the frames were made. Ticks
+     * left out are skipped before they are rendered.
+     *
+     * @param file The replay file.
+     * @param output A directory for PNG files, or a file ending in {@code .rle} for a frame stream.
+     * @param unitSize The size of one cell in pixels.
+     * @param every Draw one tick in this many, starting with the first.
+     * @return {@code true} if every frame was written.
+     */
+    private static boolean render( Path file, Path output, int unitSize, int every )
+    {
+        if ( every < 1 )
+        {
+            System.err.println( "Frame interval must be positive: " + every );
+            return false;
+        }
+
+        System.setProperty( "java.awt.headless", "true" ); // Before anything from AWT is loaded
+        try
+        {
+            Replay replay = Replay.read( file );
+            ReplayPlayer player = new ReplayPlayer( replay );
+            OffscreenRenderer renderer = new OffscreenRenderer( replay.getColumns(), replay.getRows(), unitSize,
+                                                                new AssetManager().getImage( AssetManager.APPLE_SPRITE ) );
+            boolean stream = output.getFileName().toString().endsWith( ".rle" );
+            RleFrameStream.Writer frames = stream ? new RleFrameStream.Writer( output ) : null;
+            PngSequence files = stream ? null : new PngSequence( output );
+
+            long start = System.nanoTime();
+            OffscreenRenderer.Pipeline pipeline = renderer.pipeline( stream ? frames : files, RENDER_QUEUE_DEPTH );
+            try ( pipeline )
+            {
+                pipeline.submit( player.getEngine() );
+                for ( long tick = 1; !player.isFinished(); tick++ )
+                {
+                    player.step();
+                    if ( tick % every == 0 )
+                        pipeline.submit( player.getEngine() );
+                }
+            }
+            double seconds = ( System.nanoTime() - start ) / 1e9;
+
+            long written = stream ? frames.getFrames() : files.getWritten();
+            System.out.printf( "%d frames of %dx%d in %.2f s, %.0f frames per second, written to %s%n", written,
+                               renderer.getWidth(), renderer.getHeight(), seconds, written / seconds, output );
+            return true;
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "Problem rendering " + file + ": " + e.getMessage() );
+            return false;
+        }
+    }
+
+    /**
+     * Fast-forwards a replay without rendering and prints the result.
+     *
+     * @param file The replay file.
+     * @return {@code true} if the replay reproduced the recorded game.
+     */
+    private static boolean replay( Path file )
+    {
+        try
+        {
+            Replay replay = Replay.read( file );
+            ReplayPlayer player = new ReplayPlayer( replay );
+            long start = System.nanoTime();
+            boolean verified = player.verify();
+            long micros = ( System.nanoTime() - start ) / 1000;
+
+            SnakeEngine engine = player.getEngine();
+            System.out.println( "Replayed " + engine.getTicks() + " ticks in " + micros + " us: score " +
+                                engine.getApplesEaten() + ( verified ? ", matches the recording"
+                                                                     : ", recorded score " + replay.getScore() ) );
+            return verified;
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "Problem reading replay file " + file + ": " + e.getMessage() );
+            return false;
+        }
+    }
 }
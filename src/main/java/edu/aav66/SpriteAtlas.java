@@ -0,0 +1,124 @@
+package edu.aav66;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * The {@code SpriteAtlas} class pre-renders every tile the board is drawn with, the
+ * apple, the head, the plain body and each rainbow body color, into one image already
+ * scaled to the cell size and in the display's native pixel format. Drawing a cell is
+ * then a straight copy of one tile, with no scaling or color conversion per frame.
+ */
+public final class SpriteAtlas
+{
+    public static final int APPLE = 0;
+    public static final int HEAD = 1;
+    public static final int BODY = 2;
+    public static final int FIRST_RAINBOW = 3;
+
+    // Tiles are laid out in rows of this many
+    private static final int TILES_PER_ROW = 16;
+
+    private final int unitSize;
+    private final int tileCount;
+    private final BufferedImage atlas;
+
+    /**
+     * Constructs a new {@code SpriteAtlas}.
+     *
+     * @param unitSize The size of one cell in pixels.
+     * @param appleSprite The apple image, or {@code null} to draw the apple as a colored oval.
+     * @param rainbow The rainbow body colors; tile {@code FIRST_RAINBOW + i} holds color {@code i}.
+     */
+    public SpriteAtlas( int unitSize, BufferedImage appleSprite, Color rainbow[] )
+    {
+        this.unitSize = unitSize;
+        tileCount = FIRST_RAINBOW + rainbow.length;
+
+        int columns = Math.min( tileCount, TILES_PER_ROW );
+        int rows = ( tileCount + TILES_PER_ROW - 1 ) / TILES_PER_ROW;
+        atlas = createCompatibleImage( columns * unitSize, rows * unitSize, Transparency.TRANSLUCENT );
+
+        Graphics2D g = atlas.createGraphics();
+        try
+        {
+            g.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+
+            // If the apple sprite is loaded, scale it into its tile once
+            if ( appleSprite != null )
+            {
+                g.drawImage( appleSprite, tileX( APPLE ), tileY( APPLE ), unitSize, unitSize, null );
+            }
+            else
+            { // Otherwise draw a colored oval
+                g.setColor( GamePanel.APPLE_COLOR );
+                g.fillOval( tileX( APPLE ), tileY( APPLE ), unitSize, unitSize );
+            }
+
+            fillTile( g, HEAD, GamePanel.HEAD_COLOR );
+            fillTile( g, BODY, GamePanel.BODY_COLOR );
+            for ( int i = 0; i < rainbow.length; i++ )
+                fillTile( g, FIRST_RAINBOW + i, rainbow[i] );
+        }
+        finally
+        {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Draws a tile.
+     *
+     * @param g The Graphics context to draw on.
+     * @param tile The tile number.
+     * @param x The left edge to draw at, in pixels.
+     * @param y The top edge to draw at, in pixels.
+     */
+    public void draw( Graphics g, int tile, int x, int y )
+    {
+        int sx = tileX( tile );
+        int sy = tileY( tile );
+        g.drawImage( atlas, x, y, x + unitSize, y + unitSize, sx, sy, sx + unitSize, sy + unitSize, null );
+    }
+
+    public int getTileCount() { return tileCount; }
+
+    public BufferedImage getImage() { return atlas; }
+
+    /**
+     * Creates an image in the pixel format of the default screen, so copying it to
+     * the screen needs no conversion. In a headless JVM a plain RGB or ARGB image is
+     * created instead.
+     *
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param transparency One of the {@link Transparency} constants.
+     * @return The image.
+     */
+    public static BufferedImage createCompatibleImage( int width, int height, int transparency )
+    {
+        if ( !GraphicsEnvironment.isHeadless() )
+            return GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice()
+                .getDefaultConfiguration()
+                .createCompatibleImage( width, height, transparency );
+
+        int type = transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        return new BufferedImage( width, height, type );
+    }
+
+    private void fillTile( Graphics g, int tile, Color color )
+    {
+        g.setColor( color );
+        g.fillRect( tileX( tile ), tileY( tile ), unitSize, unitSize );
+    }
+
+    private int tileX( int tile ) { return ( tile % TILES_PER_ROW ) * unitSize; }
+
+    private int tileY( int tile ) { return ( tile / TILES_PER_ROW ) * unitSize; }
+}
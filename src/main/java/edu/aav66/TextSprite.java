@@ -0,0 +1,94 @@
+package edu.aav66;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * The {@code TextSprite} class caches a line of text of the form
+ * {@code prefix + value}, such as the score, as a pre-rendered image. The text is laid
+ * out and rendered again only when the value changes; every other frame just copies
+ * the cached image.
+ */
+public final class TextSprite
+{
+    private final String prefix;
+    private final Font font;
+    private final Color color;
+    private final FontMetrics metrics;
+
+    private BufferedImage image;
+    private int value;
+    private boolean valid;
+
+    /**
+     * Constructs a new {@code TextSprite}.
+     *
+     * @param prefix The text drawn before the value.
+     * @param font The font of the text.
+     * @param color The color of the text.
+     */
+    public TextSprite( String prefix, Font font, Color color )
+    {
+        this.prefix = prefix;
+        this.font = font;
+        this.color = color;
+
+        // Measure with a scratch image so no component or display is needed
+        Graphics g = new BufferedImage( 1, 1, BufferedImage.TYPE_INT_ARGB ).getGraphics();
+        metrics = g.getFontMetrics( font );
+        g.dispose();
+    }
+
+    /**
+     * Draws the text horizontally centered, rendering it again first if the value
+     * changed since the last call.
+     *
+     * @param g The Graphics context to draw on.
+     * @param value The value to show after the prefix.
+     * @param width The width of the area to center the text in.
+     * @param baseline The y position of the text's baseline.
+     */
+    public void drawCentered( Graphics g, int value, int width, int baseline )
+    {
+        if ( !valid || value != this.value )
+            render( value );
+
+        g.drawImage( image, ( width - image.getWidth() ) / 2, baseline - metrics.getAscent(), null );
+    }
+
+    public int getHeight() { return metrics.getHeight(); }
+
+    /**
+     * Renders the text for a value into a new image sized to fit it.
+     *
+     * @param value The value to show after the prefix.
+     */
+    private void render( int value )
+    {
+        String text = prefix + value;
+        image = SpriteAtlas.createCompatibleImage( Math.max( 1, metrics.stringWidth( text ) ), metrics.getHeight(),
+                                                   Transparency.TRANSLUCENT );
+
+        Graphics2D g = image.createGraphics();
+        try
+        {
+            g.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON );
+            g.setFont( font );
+            g.setColor( color );
+            g.drawString( text, 0, metrics.getAscent() );
+        }
+        finally
+        {
+            g.dispose();
+        }
+
+        this.value = value;
+        valid = true;
+    }
+}
@@ -0,0 +1,64 @@
+package edu.aav66;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code VarInt} class writes and reads the variable-length integers used by the
+ * binary file formats: seven bits per byte, least significant first, with the top bit
+ * set on every byte but the last. Signed values are zigzag-encoded first, so small
+ * negative numbers stay short too.
+ */
+final class VarInt
+{
+    // Longest encoding of a 64-bit value
+    static final int MAX_SIZE = 10;
+
+    private VarInt() {}
+
+    /**
+     * Writes an unsigned variable-length integer.
+     */
+    static void putVarLong( ByteBuffer buffer, long value )
+    {
+        while ( ( value & ~0x7FL ) != 0 )
+        {
+            buffer.put( (byte)( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+        buffer.put( (byte)value );
+    }
+
+    /**
+     * Reads an unsigned variable-length integer.
+     *
+     * @throws IOException If the number is longer than 64 bits.
+     * @throws java.nio.BufferUnderflowException If the buffer ends inside the number.
+     */
+    static long getVarLong( ByteBuffer buffer ) throws IOException
+    {
+        long value = 0;
+        for ( int shift = 0; shift < 64; shift += 7 )
+        {
+            byte b = buffer.get();
+            value |= (long)( b & 0x7F ) << shift;
+            if ( b >= 0 )
+                return value;
+        }
+        throw new IOException( "Malformed number" );
+    }
+
+    /**
+     * Writes a signed variable-length integer.
+     */
+    static void putSignedVarLong( ByteBuffer buffer, long value ) { putVarLong( buffer, ( value << 1 ) ^ ( value >> 63 ) ); }
+
+    /**
+     * Reads a signed variable-length integer.
+     */
+    static long getSignedVarLong( ByteBuffer buffer ) throws IOException
+    {
+        long value = getVarLong( buffer );
+        return ( value >>> 1 ) ^ -( value & 1 );
+    }
+}
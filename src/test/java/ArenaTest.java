@@ -0,0 +1,179 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.Arena;
+import edu.aav66.ArenaLoadClient;
+import edu.aav66.ArenaServer;
+import edu.aav66.ArenaSnake;
+import edu.aav66.ArenaView;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the Arena class.
+ */
+public class ArenaTest
+{
+    private static final String DIRECTIONS = "UDLR";
+
+    private static void apply( ArenaView view, ByteBuffer frame ) throws IOException
+    {
+        view.apply( frame.duplicate().position( 4 ) );
+    }
+
+    private static void assertMatches( Arena arena, ArenaView view, int players )
+    {
+        assertEquals( arena.getTick(), view.getTick() );
+        for ( int id = 0; id < players; id++ )
+        {
+            ArenaSnake expected = arena.getSnake( id );
+            ArenaSnake actual = view.getSnake( id );
+            if ( expected == null )
+            {
+                assertNull( actual, "Snake " + id + " should have left" );
+                continue;
+            }
+            if ( actual == null )
+            {
+                assertFalse( expected.isAlive(), "Snake " + id + " is missing from the view" );
+                continue;
+            }
+            assertEquals( expected.isAlive(), actual.isAlive(), "Life of snake " + id );
+            assertEquals( expected.getScore(), actual.getScore(), "Score of snake " + id );
+            assertEquals( expected.size(), actual.size(), "Length of snake " + id );
+            for ( int i = 0; i < expected.size(); i++ )
+                assertEquals( expected.getCell( i ), actual.getCell( i ), "Segment " + i + " of snake " + id );
+        }
+        for ( int cell = 0; cell < arena.getColumns() * arena.getRows(); cell++ )
+            assertEquals( arena.isApple( cell ), view.isApple( cell ), "Apple in cell " + cell );
+    }
+
+    @Test void testViewsFollowTheArena() throws IOException
+    {
+        Arena arena = new Arena( 40, 40, 25, 3L );
+        Random random = new Random( 3L );
+        int players = 30;
+        for ( int i = 0; i < players; i++ )
+            assertEquals( i, arena.addPlayer() );
+
+        ArenaView first = new ArenaView();
+        apply( first, arena.welcome( 0 ) );
+        ArenaView late = null;
+        int deaths = 0;
+        for ( int t = 0; t < 500; t++ )
+        {
+            for ( int id = 0; id < players; id++ )
+                if ( random.nextInt( 4 ) == 0 )
+                    arena.steer( id, DIRECTIONS.charAt( random.nextInt( 4 ) ) );
+            if ( t == 200 )
+                arena.removePlayer( 7 );
+
+            ByteBuffer frame = arena.tick();
+            apply( first, frame );
+            if ( late != null )
+                apply( late, frame );
+            else if ( t == 100 )
+            {
+                late = new ArenaView();
+                apply( late, arena.welcome( 5 ) );
+                assertEquals( 5, late.getPlayerId() );
+            }
+
+            for ( int id = 0; id < players; id++ )
+                if ( arena.getSnake( id ) != null && !arena.getSnake( id ).isAlive() )
+                    deaths++;
+            assertMatches( arena, first, players );
+            if ( late != null )
+                assertMatches( arena, late, players );
+            assertEquals( 25, arena.getAppleCount() );
+        }
+        assertTrue( deaths > 0, "Snakes turning at random should crash" );
+        assertNull( first.getSnake( 7 ) );
+        assertEquals( players - 1, arena.getPlayerCount() );
+    }
+
+    @Test void testHeadsMeetingBothDie()
+    {
+        Arena arena = new Arena( 40, 40, 0, 1L );
+        int a = arena.addPlayer();
+        int b = arena.addPlayer();
+        arena.tick();
+
+        // Steer each snake towards the other until they are on the same row, facing each other
+        for ( int t = 0; t < 200 && arena.getSnake( a ).isAlive() && arena.getSnake( b ).isAlive(); t++ )
+        {
+            int headA = arena.getSnake( a ).getHeadCell();
+            int headB = arena.getSnake( b ).getHeadCell();
+            arena.steer( a, towards( headA, headB ) );
+            arena.steer( b, towards( headB, headA ) );
+            arena.tick();
+        }
+        assertFalse( arena.getSnake( a ).isAlive() && arena.getSnake( b ).isAlive(),
+                     "Snakes chasing each other should collide" );
+    }
+
+    @Test void testCrowdedArenaIsDeterministic()
+    {
+        // One arena resolves collisions band by band in parallel, the other on this thread
+        int players = 1500;
+        Arena first = new Arena( 200, 200, 500, 11L );
+        Arena second = new Arena( 200, 200, 500, 11L );
+        first.setParallelThreshold( 0 );
+        second.setParallelThreshold( Integer.MAX_VALUE );
+        for ( int i = 0; i < players; i++ )
+        {
+            first.addPlayer();
+            second.addPlayer();
+        }
+
+        Random random = new Random( 11L );
+        for ( int t = 0; t < 150; t++ )
+        {
+            for ( int id = 0; id < players; id++ )
+            {
+                if ( random.nextInt( 4 ) != 0 )
+                    continue;
+                char direction = DIRECTIONS.charAt( random.nextInt( 4 ) );
+                first.steer( id, direction );
+                second.steer( id, direction );
+            }
+            assertEquals( first.tick(), second.tick(), "Frames differ at tick " + first.getTick() );
+        }
+
+        int covered = 0;
+        for ( int id = 0; id < players; id++ )
+        {
+            ArenaSnake snake = first.getSnake( id );
+            for ( int i = 0; i < snake.size(); i++ )
+                assertEquals( id, first.getOwners().getOwner( snake.getCell( i ) ), "Owner of segment " + i + " of snake " + id );
+            covered += snake.size();
+        }
+        assertTrue( covered > players, "Snakes should have grown" );
+        assertEquals( covered, first.getOwners().getOccupancy().getOccupiedCount() );
+    }
+
+    private static char towards( int from, int to )
+    {
+        int dx = to % 40 - from % 40;
+        int dy = to / 40 - from / 40;
+        if ( Math.abs( dx ) > Math.abs( dy ) )
+            return dx > 0 ? 'R' : 'L';
+        return dy > 0 ? 'D' : 'U';
+    }
+
+    @Test void testServerFeedsEveryPlayer() throws IOException
+    {
+        Arena arena = new Arena( 32, 32, 16, 9L );
+        try ( ArenaServer server = new ArenaServer( arena, 5, new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ) ) )
+        {
+            server.start();
+            InetSocketAddress address = new InetSocketAddress( InetAddress.getLoopbackAddress(), server.getPort() );
+            ArenaLoadClient.Result result = new ArenaLoadClient( address, 4, 9L ).run( 500 );
+            assertTrue( result.getFrames() > 4 * 10, "Every player should receive the ticks: " + result );
+            assertTrue( server.getBytesSent() > 0 );
+        }
+    }
+}
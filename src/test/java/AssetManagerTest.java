@@ -0,0 +1,30 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.AssetManager;
+import java.awt.image.BufferedImage;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the AssetManager class.
+ */
+public class AssetManagerTest
+{
+    @Test void testImagesLoadFromTheClasspathOnce()
+    {
+        AssetManager assets = new AssetManager();
+        assets.preload( AssetManager.APPLE_SPRITE );
+        BufferedImage sprite = assets.getImage( AssetManager.APPLE_SPRITE );
+        assertNotNull( sprite, "The apple sprite should be on the classpath" );
+        assertTrue( sprite.getWidth() > 0 );
+        assertSame( sprite, assets.getImageIfLoaded( AssetManager.APPLE_SPRITE ), "Decoded images should be cached" );
+        assertTrue( assets.getDecodeNanos( AssetManager.APPLE_SPRITE ) > 0 );
+        assertNotNull( AssetManager.getUrl( AssetManager.MUSIC ), "The music should be on the classpath" );
+    }
+
+    @Test void testMissingImageIsNull()
+    {
+        AssetManager assets = new AssetManager( Runnable::run );
+        assertNull( assets.getImage( "no-such-image.png" ) );
+        assertEquals( -1, assets.getDecodeNanos( "no-such-image.png" ) );
+    }
+}
@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.AssetManager;
+import edu.aav66.AudioEngine;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import javax.sound.sampled.AudioFormat;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the AudioEngine class.
+ */
+public class AudioEngineTest
+{
+    private static final AudioFormat FORMAT = new AudioFormat( 44100, 16, 2, true, false );
+
+    @Test void testMissingMusicAndNoLineDoNotThrow()
+    {
+        AudioEngine audio = new AudioEngine( "does-not-exist.mp3" );
+        audio.start();
+        audio.play( AudioEngine.EAT );
+        audio.play( AudioEngine.GAME_OVER );
+        audio.close();
+        assertFalse( audio.isRunning(), "Engine should stop when closed" );
+    }
+
+    @Test void testPlayBeforeStartIsIgnored()
+    {
+        AudioEngine audio = new AudioEngine( null );
+        audio.play( AudioEngine.EAT );
+        assertFalse( audio.isRunning() );
+        audio.close();
+    }
+
+    @Test void testDecodesTheStartOfTheMusic() throws IOException
+    {
+        byte start[];
+        try ( InputStream in = AssetManager.getUrl( AssetManager.MUSIC ).openStream() )
+        {
+            start = in.readNBytes( 20000 ); // About a second, enough to check without decoding it all
+        }
+
+        AudioEngine.Decoded decoded = AudioEngine.decode( new ByteArrayInputStream( start ) );
+        AudioFormat format = decoded.getFormat();
+        assertEquals( 44100, format.getSampleRate() );
+        assertEquals( 2, format.getChannels() );
+        assertEquals( 16, format.getSampleSizeInBits() );
+        assertFalse( format.isBigEndian() );
+
+        short samples[] = decoded.getSamples();
+        assertTrue( samples.length > 44100, "A second of stereo should be decoded, not " + samples.length + " samples" );
+        assertEquals( 0, samples.length % 2, "Samples should come in whole frames" );
+        int loudest = 0;
+        for ( short sample : samples )
+            loudest = Math.max( loudest, Math.abs( sample ) );
+        assertTrue( loudest > 1000, "Music should not be silent" );
+    }
+
+    @Test void testEffectsAreMixedOverSilenceUntilTheyEnd()
+    {
+        AudioEngine.Mixer mixer = new AudioEngine.Mixer( null, FORMAT );
+        byte chunk[] = new byte[2048];
+        mixer.mix( chunk );
+        assertTrue( isSilent( chunk ), "Nothing should play before an effect starts" );
+
+        assertTrue( mixer.play( AudioEngine.EAT ) );
+        mixer.mix( chunk );
+        assertFalse( isSilent( chunk ), "The effect should be mixed into the next chunk" );
+        assertEquals( chunk[2], chunk[0], "Both channels should carry the tone" );
+        assertEquals( chunk[3], chunk[1] );
+
+        // 80 ms of stereo is 7056 samples, just under seven chunks of 512 frames
+        for ( int i = 0; i < 6; i++ )
+            mixer.mix( chunk );
+        mixer.mix( chunk );
+        assertTrue( isSilent( chunk ), "The effect should end after its length" );
+    }
+
+    @Test void testLoudMixIsClamped()
+    {
+        for ( short level : new short[] { Short.MAX_VALUE, Short.MIN_VALUE } )
+        {
+            short music[] = new short[4096];
+            Arrays.fill( music, level );
+            AudioEngine.Mixer mixer = new AudioEngine.Mixer( music, FORMAT );
+            mixer.play( AudioEngine.EAT );
+
+            // Full scale music plus the tone goes past the limit half the time; wrapping around would flip the sign
+            byte chunk[] = new byte[2048];
+            int clamped = 0;
+            for ( int n = 0; n < 3; n++ )
+            {
+                mixer.mix( chunk );
+                for ( int i = 0; i < chunk.length; i += 2 )
+                {
+                    short sample = (short)( ( chunk[i] & 0xFF ) | chunk[i + 1] << 8 );
+                    assertEquals( Integer.signum( level ), Integer.signum( sample ), "Sample should be clamped, not wrap around" );
+                    if ( sample == level )
+                        clamped++;
+                }
+            }
+            assertTrue( clamped > 0 && clamped < 3 * chunk.length / 2, "Only part of the tone should reach the limit" );
+        }
+    }
+
+    @Test void testEffectsPastTheLastVoiceAreDropped()
+    {
+        AudioEngine.Mixer mixer = new AudioEngine.Mixer( null, FORMAT );
+        int started = 0;
+        while ( mixer.play( AudioEngine.GAME_OVER ) )
+            started++;
+        assertEquals( 8, started );
+    }
+
+    private static boolean isSilent( byte chunk[] )
+    {
+        for ( byte b : chunk )
+            if ( b != 0 )
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.AutopilotController;
+import edu.aav66.BatchSimulator;
+import edu.aav66.GreedyController;
+import edu.aav66.SnakeEngine;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the AutopilotController class.
+ */
+public class AutopilotControllerTest
+{
+    @Test void testTakesShortestPathToApple()
+    {
+        SnakeEngine engine = new SnakeEngine( 16, 16, 1L );
+        AutopilotController autopilot = new AutopilotController();
+        autopilot.reset( engine );
+        engine.setApple( 0, 5 );
+
+        for ( int i = 0; i < 5; i++ )
+            assertTrue( engine.step( autopilot.nextDirection( engine ) ) );
+        assertEquals( 1, engine.getApplesEaten(), "Apple five cells down should be eaten in five ticks" );
+    }
+
+    @Test void testOutscoresGreedyController()
+    {
+        BatchSimulator.Statistics greedy = new BatchSimulator( 10, 10, 100000, GreedyController::new ).run( 1, 50 );
+        BatchSimulator.Statistics autopilot = new BatchSimulator( 10, 10, 100000, AutopilotController::new ).run( 1, 50 );
+
+        assertTrue( autopilot.getMeanScore() > greedy.getMeanScore(),
+                    "Autopilot " + autopilot + " should beat greedy " + greedy );
+    }
+}
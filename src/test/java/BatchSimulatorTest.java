@@ -0,0 +1,44 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.BatchSimulator;
+import edu.aav66.GreedyController;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the BatchSimulator class.
+ */
+public class BatchSimulatorTest
+{
+    @Test void testResultsDoNotDependOnParallelism()
+    {
+        BatchSimulator simulator = new BatchSimulator( 12, 12, 10000, GreedyController::new );
+
+        ForkJoinPool single = new ForkJoinPool( 1 );
+        ForkJoinPool several = new ForkJoinPool( 4 );
+        try
+        {
+            BatchSimulator.Statistics sequential = simulator.run( 5, 200, single );
+            BatchSimulator.Statistics parallel = simulator.run( 5, 200, several );
+
+            assertEquals( 200, sequential.getGames() );
+            assertEquals( sequential.toString(), parallel.toString(), "Every game should play the same on any thread" );
+            assertTrue( sequential.getMeanScore() > 0, "The greedy controller should eat some apples" );
+            assertEquals( 200, simulator.run( 5, 200 ).getGames() );
+        }
+        finally
+        {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    @Test void testTickLimitStopsGames()
+    {
+        BatchSimulator simulator = new BatchSimulator( 12, 12, 3, GreedyController::new );
+        BatchSimulator.Statistics statistics = simulator.run( 1, 10 );
+
+        assertEquals( 10, statistics.getUnfinished(), "Every game should be stopped at the tick limit" );
+        assertEquals( 3, statistics.getMaxTicks() );
+    }
+}
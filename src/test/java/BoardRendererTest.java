@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.BoardRenderer;
+import edu.aav66.SnakeEngine;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the BoardRenderer class.
+ */
+public class BoardRendererTest
+{
+    @Test void testIncrementalUpdateMatchesFullRedraw()
+    {
+        SnakeEngine engine = new SnakeEngine( 16, 16, new Random( 3 ) );
+        BoardRenderer incremental = new BoardRenderer( 16, 16, 4, new Random() );
+        incremental.update( engine );
+
+        // Zigzag down the board so the snake eats a few apples on the way
+        char directions[] = { 'R', 'D', 'L', 'D' };
+        int ticks = 0;
+        for ( int lap = 0; lap < 8 && engine.isRunning(); lap++ )
+        {
+            char direction = directions[lap % 4];
+            int steps = direction == 'D' ? 1 : 15;
+            for ( int i = 0; i < steps && engine.step( direction ); i++, ticks++ )
+                incremental.update( engine );
+        }
+        assertTrue( ticks > 30, "Snake should have moved across the board" );
+
+        BoardRenderer full = new BoardRenderer( 16, 16, 4, new Random() );
+        full.update( engine );
+        assertSameImage( full.getImage(), incremental.getImage() );
+    }
+
+    @Test void testColorToggleRedrawsBody()
+    {
+        SnakeEngine engine = new SnakeEngine( 16, 16, new Random( 3 ) );
+        BoardRenderer renderer = new BoardRenderer( 16, 16, 4, new Random() );
+        renderer.setRainbowBody( true );
+        for ( int i = 0; i < 8; i++ )
+        {
+            engine.step( 'D' );
+            renderer.update( engine );
+        }
+
+        // Switching back to the plain color must repaint every rainbow segment
+        renderer.setRainbowBody( false );
+        renderer.update( engine );
+
+        BoardRenderer plain = new BoardRenderer( 16, 16, 4, new Random() );
+        plain.update( engine );
+        assertSameImage( plain.getImage(), renderer.getImage() );
+    }
+
+    private static void assertSameImage( BufferedImage expected, BufferedImage actual )
+    {
+        for ( int y = 0; y < expected.getHeight(); y++ )
+            for ( int x = 0; x < expected.getWidth(); x++ )
+                assertEquals( expected.getRGB( x, y ), actual.getRGB( x, y ), "Pixel " + x + "," + y );
+    }
+}
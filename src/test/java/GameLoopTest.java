@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.GameLoop;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the GameLoop class.
+ */
+public class GameLoopTest
+{
+    @Test void testLoopStopsWhenTickReturnsFalse() throws InterruptedException
+    {
+        AtomicInteger ticks = new AtomicInteger();
+        AtomicInteger frames = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch( 1 );
+
+        GameLoop loop = new GameLoop( 1, 1000, new GameLoop.Handler() {
+            @Override public boolean tick()
+            {
+                if ( ticks.incrementAndGet() < 10 )
+                    return true;
+                done.countDown();
+                return false;
+            }
+
+            @Override public void render( double alpha )
+            {
+                assertTrue( alpha >= 0 && alpha <= 1, "Interpolation factor should be within one tick" );
+                frames.incrementAndGet();
+            }
+        } );
+        loop.start();
+
+        assertTrue( done.await( 5, TimeUnit.SECONDS ), "Loop should run ten ticks" );
+        loop.stop();
+        assertFalse( loop.isRunning() );
+        assertEquals( 10, ticks.get(), "Loop should not tick after the handler stops it" );
+        assertTrue( frames.get() > 0, "Loop should render frames between ticks" );
+    }
+
+    @Test void testRejectsInvalidRates()
+    {
+        assertThrows( IllegalArgumentException.class, () -> new GameLoop( 0, 60, null ) );
+        assertThrows( IllegalArgumentException.class, () -> new GameLoop( 75, 0, null ) );
+    }
+}
@@ -1,6 +1,9 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import edu.aav66.GameConfig;
 import edu.aav66.GamePanel;
+import edu.aav66.SnakeEngine;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -11,45 +14,52 @@ public class GamePanelTest
 {
 
     private GamePanel gamePanel;
+    private SnakeEngine engine;
 
     @BeforeEach void setUp()
     {
         gamePanel = new GamePanel();
         gamePanel.startGame(); // Start the game in a controlled state for testing
+        engine = gamePanel.getEngine();
     }
 
+    @AfterEach void tearDown() { gamePanel.shutdown(); }
+
     @Test void testAppleEating()
     {
-        int initialScore = gamePanel.applesEaten;
-        int initialBodyParts = gamePanel.bodyParts;
+        int initialScore = engine.getApplesEaten();
+        int initialBodyParts = engine.getBodyParts();
 
         // Simulate the snake eating an apple
-        gamePanel.appleX = gamePanel.x[0]; // Place apple directly in front of the snake
-        gamePanel.appleY = gamePanel.y[0];
-        gamePanel.checkApple();
+        engine.setApple( engine.getHeadX(), engine.getHeadY() ); // Place apple directly in front of the snake
+        engine.checkApple();
 
-        assertEquals( initialScore + 1, gamePanel.applesEaten, "Apple eating should increase score by 1" );
-        assertEquals( initialBodyParts + 1, gamePanel.bodyParts, "Eating an apple should increase body parts by 1" );
+        assertEquals( initialScore + 1, engine.getApplesEaten(), "Apple eating should increase score by 1" );
+        assertEquals( initialBodyParts + 1, engine.getBodyParts(), "Eating an apple should increase body parts by 1" );
     }
 
     @Test void testCollisionWithSelf()
     {
-        // Setting up the snake to collide with itself
-        gamePanel.x[0] = gamePanel.x[1]; // Direct the head of the snake into its body
-        gamePanel.y[0] = gamePanel.y[1];
-        gamePanel.checkCollisions();
+        // Keep the apple out of the way so the snake does not grow
+        engine.setApple( engine.getColumns() - 1, engine.getRows() - 1 );
+
+        // Unfold the snake along the top row, then turn back into its own body
+        for ( int i = 0; i < 5; i++ )
+            engine.step( 'R' );
+        engine.step( 'D' );
+        engine.step( 'L' );
+        engine.step( 'U' );
 
-        assertFalse( gamePanel.running, "Collision with self should stop the game" );
+        assertFalse( engine.isRunning(), "Collision with self should stop the game" );
     }
 
     @Test void testGameRestart()
     {
         // Ensure the apple is placed exactly where the snake's head is
-        gamePanel.appleX = gamePanel.getXCoordinates()[0];
-        gamePanel.appleY = gamePanel.getYCoordinates()[0];
+        engine.setApple( engine.getHeadX(), engine.getHeadY() );
 
         // Simulate some game activity
-        gamePanel.checkApple(); // Simulate eating an apple
+        engine.checkApple(); // Simulate eating an apple
         int scoreAfterEating = gamePanel.getApplesEaten();
 
         // Assert that the score increased as expected
@@ -67,26 +77,26 @@ public class GamePanelTest
     @Test void testMovementLogic()
     {
         // Initial position of the snake's head
-        int initialX = gamePanel.getXCoordinates()[0];
-        int initialY = gamePanel.getYCoordinates()[0];
+        int initialX = engine.getHeadX();
+        int initialY = engine.getHeadY();
 
         // Move the snake down
-        gamePanel.direction = 'D'; // Change direction to 'Down'
-        gamePanel.move();          // Trigger a move
+        engine.setDirection( 'D' ); // Change direction to 'Down'
+        engine.move();              // Trigger a move
 
         // Check new position after moving down
-        assertEquals( initialY + GamePanel.UNIT_SIZE, gamePanel.getYCoordinates()[0],
+        assertEquals( initialY + 1, engine.getHeadY(),
                       "Snake should move down correctly" );
 
         // Prepare to move right from the new position
-        initialX = gamePanel.getXCoordinates()[0]; // Update initialX to current position after moving down
+        initialX = engine.getHeadX(); // Update initialX to current position after moving down
 
         // Move the snake right
-        gamePanel.direction = 'R'; // Change direction to 'Right'
-        gamePanel.move();          // Trigger a move
+        engine.setDirection( 'R' ); // Change direction to 'Right'
+        engine.move();              // Trigger a move
 
         // Check new position after moving right
-        assertEquals( initialX + GamePanel.UNIT_SIZE, gamePanel.getXCoordinates()[0],
+        assertEquals( initialX + 1, engine.getHeadX(),
                       "Snake should move right correctly" );
     }
 
@@ -100,13 +110,24 @@ public class GamePanelTest
 
     @Test void testBoundaryCollision()
     {
-        // Move snake to the right boundary
-        gamePanel.getXCoordinates()[0] = GamePanel.SCREEN_WIDTH - GamePanel.UNIT_SIZE;
-        gamePanel.direction = 'R'; // Direction right
-        gamePanel.move();
-        gamePanel.checkCollisions();
+        // Move snake along the top row until it reaches the right boundary
+        engine.setDirection( 'R' ); // Direction right
+        for ( int i = 0; i < engine.getColumns(); i++ )
+        {
+            engine.move();
+            engine.checkCollisions();
+        }
 
         // Check if the game stopped
         assertFalse( gamePanel.isRunning(), "Game should stop when snake hits the right boundary" );
     }
+
+    @Test void testDefaultConfiguration()
+    {
+        // The default board is 32x32 cells drawn 25 pixels wide
+        assertEquals( GameConfig.DEFAULT_COLUMNS, engine.getColumns() );
+        assertEquals( GameConfig.DEFAULT_ROWS, engine.getRows() );
+        assertEquals( GameConfig.DEFAULT_UNIT_SIZE, gamePanel.getUnitSize() );
+        assertEquals( 800, gamePanel.getPreferredSize().width, "Panel should be sized from the board" );
+    }
 }
@@ -0,0 +1,157 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.AutopilotController;
+import edu.aav66.GameSnapshot;
+import edu.aav66.SnakeController;
+import edu.aav66.SnakeEngine;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for the GameSnapshot class.
+ */
+public class GameSnapshotTest
+{
+    @TempDir Path directory;
+
+    private static final char NO_PENDING[] = {};
+
+    private static void assertMatches( GameSnapshot snapshot, SnakeEngine engine )
+    {
+        assertEquals( engine.getTicks(), snapshot.getTicks() );
+        assertEquals( engine.getApplesEaten(), snapshot.getApplesEaten() );
+        assertEquals( engine.getAppleX(), snapshot.getAppleX() );
+        assertEquals( engine.getAppleY(), snapshot.getAppleY() );
+        assertEquals( engine.getDirection(), snapshot.getDirection() );
+        assertEquals( engine.isRunning(), snapshot.isRunning() );
+        assertEquals( engine.getBodyParts(), snapshot.getBodyParts() );
+        for ( int i = 0; i < engine.getBodyParts(); i++ )
+        {
+            assertEquals( engine.getBody().getX( i ), snapshot.getX( i ), "Column of segment " + i );
+            assertEquals( engine.getBody().getY( i ), snapshot.getY( i ), "Row of segment " + i );
+        }
+    }
+
+    @Test void testRestoredGamePlaysOnIdentically()
+    {
+        SnakeEngine engine = new SnakeEngine( 12, 12, 7L );
+        SnakeController controller = new AutopilotController();
+        for ( int i = 0; i < 200; i++ )
+            engine.step( controller.nextDirection( engine ) );
+
+        GameSnapshot snapshot = GameSnapshot.capture( engine, NO_PENDING );
+        SnakeEngine copy = new SnakeEngine( 12, 12, 99L );
+        snapshot.restore( copy );
+        assertMatches( snapshot, copy );
+
+        SnakeController copyController = new AutopilotController();
+        while ( engine.isRunning() && engine.getTicks() < 2000 )
+        {
+            engine.step( controller.nextDirection( engine ) );
+            copy.step( copyController.nextDirection( copy ) );
+            assertEquals( engine.getAppleX(), copy.getAppleX(), "Apples should be placed the same way" );
+            assertEquals( engine.getAppleY(), copy.getAppleY() );
+        }
+        assertMatches( GameSnapshot.capture( engine, NO_PENDING ), copy );
+    }
+
+    @Test void testSnapshotsEveryTickShareHistoryAndSurviveBranching()
+    {
+        SnakeEngine engine = new SnakeEngine( 10, 10, 3L );
+        SnakeController controller = new AutopilotController();
+        GameSnapshot.Recorder recorder = new GameSnapshot.Recorder();
+        List<GameSnapshot> snapshots = new ArrayList<>();
+        List<GameSnapshot> copies = new ArrayList<>();
+        while ( engine.isRunning() && engine.getTicks() < 600 )
+        {
+            engine.step( controller.nextDirection( engine ) );
+            snapshots.add( recorder.take( engine, NO_PENDING ) );
+            copies.add( GameSnapshot.capture( engine, NO_PENDING ) );
+        }
+
+        // Go back and play a different way from an early tick
+        recorder.restore( snapshots.get( 100 ), engine );
+        assertMatches( snapshots.get( 100 ), engine );
+        for ( int i = 0; i < 50 && engine.isRunning(); i++ )
+        {
+            engine.step( i % 2 == 0 ? 'U' : 'L' );
+            recorder.take( engine, NO_PENDING );
+        }
+
+        for ( int i = 0; i < snapshots.size(); i++ )
+        {
+            SnakeEngine restored = new SnakeEngine( 10, 10, 0L );
+            snapshots.get( i ).restore( restored );
+            assertMatches( copies.get( i ), restored );
+        }
+    }
+
+    @Test void testRestoringIntoOneEngineFreesOldCells()
+    {
+        SnakeEngine engine = new SnakeEngine( 10, 10, 5L );
+        SnakeController controller = new AutopilotController();
+        List<GameSnapshot> snapshots = new ArrayList<>();
+        while ( engine.isRunning() && engine.getTicks() < 400 )
+        {
+            engine.step( controller.nextDirection( engine ) );
+            snapshots.add( GameSnapshot.capture( engine, NO_PENDING ) );
+        }
+
+        // Newest first, so every restore replaces a longer snake with a shorter one
+        SnakeEngine reused = new SnakeEngine( 10, 10, 0L );
+        for ( int i = snapshots.size() - 1; i >= 0; i -= 7 )
+        {
+            SnakeEngine fresh = new SnakeEngine( 10, 10, 0L );
+            snapshots.get( i ).restore( fresh );
+            snapshots.get( i ).restore( reused );
+            assertEquals( fresh.getOccupancy().getOccupiedCount(), reused.getOccupancy().getOccupiedCount() );
+            for ( int cell = 0; cell < 100; cell++ )
+                assertEquals( fresh.getOccupancy().isOccupied( cell ), reused.getOccupancy().isOccupied( cell ) );
+        }
+    }
+
+    @Test void testBinaryRoundTrip() throws IOException
+    {
+        SnakeEngine engine = new SnakeEngine( 16, 9, 11L );
+        SnakeController controller = new AutopilotController();
+        for ( int i = 0; i < 300; i++ )
+            engine.step( controller.nextDirection( engine ) );
+
+        GameSnapshot snapshot = GameSnapshot.capture( engine, new char[] { 'U', 'L' } );
+        Path file = directory.resolve( "nested" ).resolve( GameSnapshot.QUICK_SAVE_FILE_NAME );
+        snapshot.write( file );
+        GameSnapshot read = GameSnapshot.read( file );
+
+        assertMatches( read, engine );
+        assertArrayEquals( new char[] { 'U', 'L' }, read.getPending() );
+        assertEquals( engine.getSeed(), read.getSeed() );
+
+        SnakeEngine restored = new SnakeEngine( 16, 9, 0L );
+        read.restore( restored );
+        engine.step( 'D' );
+        restored.step( 'D' );
+        assertEquals( engine.getAppleX(), restored.getAppleX() );
+        assertEquals( engine.getAppleY(), restored.getAppleY() );
+
+        byte bytes[] = snapshot.toBytes();
+        bytes[bytes.length / 2] ^= 1;
+        assertThrows( IOException.class, () -> GameSnapshot.fromBytes( bytes ) );
+        assertThrows( IllegalArgumentException.class, () -> snapshot.restore( new SnakeEngine( 8, 8, 0L ) ) );
+    }
+
+    @Test void testTinyBoardRoundTrip() throws IOException
+    {
+        // Longer than the board has cells, with the starting segments still stacked
+        SnakeEngine engine = new SnakeEngine( 2, 1, 4L );
+        engine.setApple( 1, 0 );
+        engine.step( 'R' );
+        assertTrue( engine.getBodyParts() > 2 + 1 );
+
+        GameSnapshot read = GameSnapshot.fromBytes( GameSnapshot.capture( engine, NO_PENDING ).toBytes() );
+        assertMatches( read, engine );
+    }
+}
@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.GreedyController;
+import edu.aav66.HamiltonianController;
+import edu.aav66.HamiltonianCycle;
+import edu.aav66.SnakeEngine;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the HamiltonianCycle and HamiltonianController classes.
+ */
+public class HamiltonianControllerTest
+{
+    @Test void testCycleVisitsEveryCellOnceInSteps()
+    {
+        int sizes[][] = { { 2, 2 }, { 4, 3 }, { 3, 4 }, { 16, 16 }, { 7, 10 } };
+        for ( int size[] : sizes )
+        {
+            HamiltonianCycle cycle = HamiltonianCycle.forBoard( size[0], size[1] );
+            int columns = size[0];
+            boolean seen[] = new boolean[columns * size[1]];
+            assertEquals( seen.length, cycle.size() );
+
+            for ( int i = 0; i < cycle.size(); i++ )
+            {
+                int cell = cycle.getCell( i );
+                int next = cycle.next( cell );
+                assertFalse( seen[cell], "Cell " + cell + " visited twice" );
+                seen[cell] = true;
+                assertEquals( i, cycle.getOrder( cell ) );
+                assertEquals( 1, Math.abs( cell % columns - next % columns ) + Math.abs( cell / columns - next / columns ),
+                              "Cycle should move one cell at a time on " + columns + "x" + size[1] );
+            }
+        }
+        assertFalse( HamiltonianCycle.exists( 5, 5 ), "Odd by odd boards have no cycle" );
+    }
+
+    @Test void testFillsTheBoard()
+    {
+        SnakeEngine engine = new SnakeEngine( 12, 12, 5L );
+        HamiltonianController solver = new HamiltonianController();
+        solver.reset( engine );
+
+        int cells = engine.getColumns() * engine.getRows();
+        while ( engine.getBodyParts() < cells )
+            assertTrue( engine.step( solver.nextDirection( engine ) ), "Solver should never crash" );
+
+        assertEquals( cells - SnakeEngine.INITIAL_BODY_PARTS, engine.getApplesEaten() );
+        for ( int i = 0; i < 1000; i++ )
+            assertTrue( engine.step( solver.nextDirection( engine ) ), "A full snake should circle forever" );
+    }
+
+    @Test void testSwitchedOnMidGame()
+    {
+        int cells = 12 * 12;
+        for ( long seed = 0; seed < 30; seed++ )
+        {
+            SnakeEngine engine = new SnakeEngine( 12, 12, seed );
+            GreedyController greedy = new GreedyController();
+            for ( int i = 0; i < 150 && engine.isRunning(); i++ )
+                engine.step( greedy.nextDirection( engine ) );
+            if ( !engine.isRunning() )
+                continue;
+
+            // The body is now wherever the greedy bot left it, out of cycle order.
+            HamiltonianController solver = new HamiltonianController();
+            solver.reset( engine );
+            while ( engine.getBodyParts() < cells )
+                assertTrue( engine.step( solver.nextDirection( engine ) ), "Solver should never crash on seed " + seed );
+        }
+    }
+
+    @Test void testFallsBackOnOddBoard()
+    {
+        SnakeEngine engine = new SnakeEngine( 9, 9, 3L );
+        HamiltonianController solver = new HamiltonianController();
+        solver.reset( engine );
+
+        for ( int i = 0; i < 200 && engine.isRunning(); i++ )
+            engine.step( solver.nextDirection( engine ) );
+        assertTrue( engine.getApplesEaten() > 0, "Fallback should still play" );
+    }
+}
@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.InputBuffer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the InputBuffer class.
+ */
+public class InputBufferTest
+{
+    @Test void testValidatesAgainstLastQueuedDirection()
+    {
+        InputBuffer input = new InputBuffer( 8, 'R' );
+
+        assertFalse( input.offer( 'L', 0 ), "Reversal of the current direction should be dropped" );
+        assertFalse( input.offer( 'R', 0 ), "Repeating the current direction should be dropped" );
+        assertTrue( input.offer( 'U', 1 ) );
+        assertTrue( input.offer( 'L', 2 ), "Left is valid once up is queued" );
+        assertFalse( input.offer( 'R', 3 ), "Right would reverse the queued left" );
+
+        assertEquals( 'U', input.poll() );
+        assertEquals( 1, input.getLastTimestamp() );
+        assertEquals( 'L', input.poll() );
+        assertEquals( 2, input.getLastTimestamp() );
+        assertEquals( InputBuffer.NONE, input.poll() );
+    }
+
+    @Test void testDropsWhenFull()
+    {
+        InputBuffer input = new InputBuffer( 2, 'R' );
+
+        assertTrue( input.offer( 'U', 0 ) );
+        assertTrue( input.offer( 'R', 0 ) );
+        assertFalse( input.offer( 'D', 0 ), "A full buffer should drop new directions" );
+        assertEquals( 2, input.size() );
+
+        input.reset( 'R' );
+        assertEquals( 0, input.size(), "Reset should drop queued directions" );
+        assertEquals( InputBuffer.NONE, input.poll() );
+    }
+
+    @Test void testPassesDirectionsBetweenThreadsInOrder() throws InterruptedException
+    {
+        InputBuffer input = new InputBuffer( 4, 'R' );
+        String turns = "URDL"; // Each is valid after the one before
+        int count = 10000;
+
+        Thread producer = new Thread( () -> {
+            for ( int i = 0; i < count; i++ )
+                while ( !input.offer( turns.charAt( i % 4 ), i ) )
+                    Thread.yield();
+        } );
+        producer.start();
+
+        for ( int i = 0; i < count; i++ )
+        {
+            char direction;
+            while ( ( direction = input.poll() ) == InputBuffer.NONE )
+                Thread.yield();
+            assertEquals( turns.charAt( i % 4 ), direction, "Direction " + i + " out of order" );
+            assertEquals( i, input.getLastTimestamp() );
+        }
+        producer.join();
+    }
+}
@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.GameMetrics;
+import edu.aav66.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the LatencyHistogram class.
+ */
+public class LatencyHistogramTest
+{
+    @Test void testEmptyHistogramReportsZero()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getValueAtPercentile( 99 ) );
+        assertEquals( 0, histogram.getMean() );
+    }
+
+    @Test void testSmallValuesAreExact()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for ( int i = 1; i <= 50; i++ )
+            histogram.record( i );
+
+        assertEquals( 25, histogram.getValueAtPercentile( 50 ) );
+        assertEquals( 50, histogram.getValueAtPercentile( 100 ) );
+        assertEquals( 25.5, histogram.getMean(), 1e-9 );
+    }
+
+    @Test void testPercentilesWithinRelativeError()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for ( long i = 1; i <= 100_000; i++ )
+            histogram.record( i * 1000 ); // 1 us to 100 ms
+
+        long expected[] = { 50_000_000L, 90_000_000L, 99_000_000L };
+        double percentiles[] = { 50, 90, 99 };
+        for ( int i = 0; i < percentiles.length; i++ )
+        {
+            long value = histogram.getValueAtPercentile( percentiles[i] );
+            assertTrue( value >= expected[i], "p" + percentiles[i] + " " + value );
+            assertTrue( value <= expected[i] * 1.035, "p" + percentiles[i] + " " + value );
+        }
+        assertEquals( 100_000_000L, histogram.getMax() );
+        assertEquals( 100_000_000L, histogram.getValueAtPercentile( 100 ) );
+    }
+
+    @Test void testResetForgetsValues()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record( 1_000_000 );
+        histogram.record( -5 );
+        histogram.reset();
+
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getMax() );
+        histogram.record( 7 );
+        assertEquals( 7, histogram.getValueAtPercentile( 50 ) );
+    }
+
+    @Test void testMetricsCountTicksAndDroppedTicks()
+    {
+        GameMetrics metrics = new GameMetrics();
+        for ( int i = 0; i < 3; i++ )
+            metrics.endTick( metrics.beginTick() );
+        metrics.endFrame( metrics.beginFrame() );
+        metrics.dropTicks( 4 );
+
+        assertEquals( 3, metrics.getTickCount() );
+        assertEquals( 1, metrics.getFrameCount() );
+        assertEquals( 4, metrics.getDroppedTicks() );
+
+        metrics.reset(); // Applied by the next tick
+        metrics.endTick( metrics.beginTick() );
+        assertEquals( 1, metrics.getTickCount() );
+        assertEquals( 0, metrics.getDroppedTicks() );
+    }
+}
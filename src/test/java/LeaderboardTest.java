@@ -0,0 +1,105 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.Leaderboard;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for the Leaderboard class.
+ */
+public class LeaderboardTest
+{
+    @TempDir Path directory;
+
+    @Test void testEmptyLeaderboard()
+    {
+        Leaderboard leaderboard = new Leaderboard( directory );
+        assertEquals( 0, leaderboard.getHighScore(), "High score should start at 0 without a log" );
+        assertTrue( leaderboard.getEntries().isEmpty() );
+        leaderboard.close();
+    }
+
+    @Test void testEntriesSurviveReload()
+    {
+        Leaderboard leaderboard = new Leaderboard( directory, 3 );
+        leaderboard.submit( new Leaderboard.Entry( 5, 11, 400, 1000L, 7L ) );
+        leaderboard.submit( new Leaderboard.Entry( 9, 15, 900, 2000L, 8L ) );
+        leaderboard.submit( new Leaderboard.Entry( 2, 8, 100, 3000L, 9L ) );
+        assertFalse( leaderboard.submit( new Leaderboard.Entry( 1, 7, 50, 4000L, 10L ) ),
+                     "Worse game should not make a full leaderboard" );
+        leaderboard.close();
+
+        Leaderboard reloaded = new Leaderboard( directory, 3 );
+        List<Leaderboard.Entry> entries = reloaded.getEntries();
+        assertEquals( 3, entries.size() );
+        assertEquals( 9, reloaded.getHighScore(), "Best game should be first" );
+        assertEquals( 15, entries.get( 0 ).getLength() );
+        assertEquals( 900, entries.get( 0 ).getTicks() );
+        assertEquals( 2000L, entries.get( 0 ).getTimestamp() );
+        assertEquals( 8L, entries.get( 0 ).getSeed() );
+        assertEquals( 2, entries.get( 2 ).getScore(), "Worst kept game should be last" );
+        reloaded.close();
+    }
+
+    @Test void testTornRecordIsSkippedAndRepaired() throws IOException
+    {
+        Leaderboard leaderboard = new Leaderboard( directory );
+        leaderboard.submit( new Leaderboard.Entry( 4, 10, 300, 1000L, 0L ) );
+        leaderboard.close();
+
+        // Simulate a crash in the middle of appending a record
+        Path file = directory.resolve( Leaderboard.FILE_NAME );
+        Files.write( file, new byte[] { 1, 2, 3, 4, 5 }, StandardOpenOption.APPEND );
+
+        Leaderboard reloaded = new Leaderboard( directory );
+        assertEquals( 1, reloaded.getEntries().size(), "Torn record should be ignored" );
+        reloaded.submit( new Leaderboard.Entry( 6, 12, 500, 2000L, 0L ) );
+        reloaded.close();
+
+        Leaderboard repaired = new Leaderboard( directory );
+        assertEquals( 2, repaired.getEntries().size(), "Records appended after a torn one should be readable" );
+        assertEquals( 6, repaired.getHighScore() );
+        repaired.close();
+    }
+
+    @Test void testLogIsCompacted() throws IOException
+    {
+        Leaderboard leaderboard = new Leaderboard( directory, 2 );
+        for ( int score = 1; score <= 50; score++ )
+        {
+            leaderboard.submit( new Leaderboard.Entry( score, score + 6, score * 10, score, 0L ) );
+            leaderboard.flush();
+        }
+        leaderboard.close();
+
+        long size = Files.size( directory.resolve( Leaderboard.FILE_NAME ) );
+        assertTrue( size < 8 + 36 * 10, "Log should be compacted instead of growing with every game: " + size );
+        assertEquals( 50, new Leaderboard( directory, 2 ).getHighScore() );
+    }
+
+    @Test void testReplacedGameIsKeptOnce()
+    {
+        Leaderboard leaderboard = new Leaderboard( directory, 3 );
+        leaderboard.submit( new Leaderboard.Entry( 3, 9, 200, 1000L, 7L ) );
+        Leaderboard.Entry first = new Leaderboard.Entry( 8, 14, 600, 2000L, 8L );
+        leaderboard.submit( first );
+
+        // The same game taken back and ended again
+        assertTrue( leaderboard.replace( first, new Leaderboard.Entry( 5, 11, 700, 3000L, 8L ) ) );
+        assertEquals( 2, leaderboard.getEntries().size(), "A replaced game should not be kept twice" );
+        assertEquals( 5, leaderboard.getHighScore() );
+        leaderboard.close();
+
+        Leaderboard reloaded = new Leaderboard( directory, 3 );
+        List<Leaderboard.Entry> entries = reloaded.getEntries();
+        assertEquals( 2, entries.size(), "The earlier result should be gone from the log" );
+        assertEquals( 5, entries.get( 0 ).getScore() );
+        assertEquals( 3000L, entries.get( 0 ).getTimestamp() );
+        reloaded.close();
+    }
+}
@@ -0,0 +1,104 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.GreedyController;
+import edu.aav66.OffscreenRenderer;
+import edu.aav66.PngSequence;
+import edu.aav66.RleFrameStream;
+import edu.aav66.SnakeController;
+import edu.aav66.SnakeEngine;
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for the OffscreenRenderer class.
+ */
+public class OffscreenRendererTest
+{
+    @TempDir Path directory;
+
+    @Test void testFrameStreamMatchesDirectRendering() throws Exception
+    {
+        SnakeEngine engine = new SnakeEngine( 20, 20, 5L );
+        SnakeController controller = new GreedyController();
+        OffscreenRenderer direct = new OffscreenRenderer( 20, 20, 4, null );
+        List<int[]> expected = new ArrayList<>();
+        Path file = directory.resolve( "game.rle" );
+
+        try ( OffscreenRenderer.Pipeline pipeline = new OffscreenRenderer( 20, 20, 4, null ).pipeline( new RleFrameStream.Writer( file ), 8 ) )
+        {
+            do
+            {
+                pipeline.submit( engine );
+                expected.add( pixels( direct.render( engine ) ) );
+            }
+            while ( engine.step( controller.nextDirection( engine ) ) && expected.size() < 300 );
+            pipeline.submit( engine );
+            expected.add( pixels( direct.render( engine ) ) );
+        }
+
+        try ( RleFrameStream.Reader reader = new RleFrameStream.Reader( file ) )
+        {
+            assertEquals( 80, reader.getWidth() );
+            assertEquals( 80, reader.getHeight() );
+            int frames = 0;
+            while ( reader.next() )
+            {
+                assertArrayEquals( expected.get( frames ), pixels( reader.getFrame() ), "Frame " + frames + " should match" );
+                frames++;
+            }
+            assertEquals( expected.size(), frames );
+        }
+    }
+
+    @Test void testPngSequenceNumbersFrames() throws Exception
+    {
+        SnakeEngine engine = new SnakeEngine( 10, 10, 2L );
+        OffscreenRenderer renderer = new OffscreenRenderer( 10, 10, 2, null );
+        PngSequence sequence = new PngSequence( directory.resolve( "frames" ) );
+        for ( int i = 0; i < 3; i++ )
+        {
+            sequence.accept( renderer.render( engine ), i * 10 ); // Numbered in order, whatever the tick
+            engine.step();
+        }
+        sequence.close();
+
+        assertEquals( 3, sequence.getWritten() );
+        assertTrue( Files.exists( directory.resolve( "frames/frame-000002.png" ) ) );
+        assertFalse( Files.exists( directory.resolve( "frames/frame-000003.png" ) ) );
+    }
+
+    @Test void testFrameStreamRejectsOversizedFrame() throws Exception
+    {
+        Path file = directory.resolve( "damaged.rle" );
+        try ( DataOutputStream out = new DataOutputStream( Files.newOutputStream( file ) ) )
+        {
+            out.writeInt( 0x534E524C ); // "SNRL"
+            out.writeShort( 1 );
+            out.writeShort( 0 );
+            out.writeByte( 4 ); // Width and height
+            out.writeByte( 4 );
+            out.writeInt( RleFrameStream.MAX_FRAME_BYTES + 1 );
+        }
+
+        try ( RleFrameStream.Reader reader = new RleFrameStream.Reader( file ) )
+        {
+            IOException e = assertThrows( IOException.class, reader::next );
+            assertTrue( e.getMessage().contains( "frame length" ), e.getMessage() );
+        }
+    }
+
+    private static int[] pixels( BufferedImage image )
+    {
+        int pixels[] = image.getRGB( 0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth() );
+        for ( int i = 0; i < pixels.length; i++ )
+            pixels[i] &= 0xFFFFFF;
+        return pixels;
+    }
+}
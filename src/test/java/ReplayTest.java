@@ -0,0 +1,138 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.Replay;
+import edu.aav66.ReplayPlayer;
+import edu.aav66.SeededRandom;
+import edu.aav66.SnakeEngine;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for deterministic replays: the Replay format, ReplayPlayer and SeededRandom.
+ */
+public class ReplayTest
+{
+    /**
+     * Plays a game on a seeded engine, turning now and then at random and away from
+     * walls and the body where it can, and records it.
+     */
+    private static Replay playGame( long seed )
+    {
+        SnakeEngine engine = new SnakeEngine( 16, 16, seed );
+        Replay.Recorder recorder = new Replay.Recorder( engine );
+        Random turns = new Random( seed + 1 );
+        boolean running = true;
+        while ( running && engine.getTicks() < 5000 )
+        {
+            char direction = engine.getDirection();
+            if ( turns.nextInt( 10 ) == 0 || !isSafe( engine, direction ) )
+            {
+                int first = turns.nextInt( 4 );
+                for ( int i = 0; i < 4; i++ )
+                {
+                    char candidate = "UDLR".charAt( ( first + i ) % 4 );
+                    if ( isSafe( engine, candidate ) )
+                    {
+                        direction = candidate;
+                        break;
+                    }
+                }
+            }
+
+            running = engine.step( direction );
+            recorder.record( engine );
+        }
+        return recorder.toReplay( engine );
+    }
+
+    private static boolean isSafe( SnakeEngine engine, char direction )
+    {
+        if ( !SnakeEngine.isValidTurn( engine.getDirection(), direction ) )
+            return false;
+
+        int x = engine.getHeadX() + ( direction == 'L' ? -1 : direction == 'R' ? 1 : 0 );
+        int y = engine.getHeadY() + ( direction == 'U' ? -1 : direction == 'D' ? 1 : 0 );
+        return x >= 0 && x < engine.getColumns() && y >= 0 && y < engine.getRows() &&
+            !engine.getOccupancy().isOccupied( y * engine.getColumns() + x );
+    }
+
+    @Test void testSeededRandomMatchesRandom()
+    {
+        Random expected = new Random( 12345 );
+        SeededRandom actual = new SeededRandom( 12345 );
+        for ( int i = 0; i < 1000; i++ )
+            assertEquals( expected.nextInt( 1000 ), actual.nextInt( 1000 ), "Sequences should match at " + i );
+
+        long state = actual.getState();
+        int next = actual.nextInt();
+        actual.setState( state );
+        assertEquals( next, actual.nextInt(), "Restoring the state should repeat the sequence" );
+    }
+
+    @Test void testReplayReproducesGame() throws IOException
+    {
+        Replay recorded = playGame( 99 );
+        Replay decoded = Replay.fromBytes( recorded.toBytes() );
+
+        assertEquals( recorded.getSeed(), decoded.getSeed() );
+        assertEquals( recorded.getTicks(), decoded.getTicks() );
+        assertEquals( recorded.getTurnCount(), decoded.getTurnCount() );
+        assertTrue( recorded.toBytes().length < 40 + 2 * recorded.getTurnCount(), "Turns should take at most two bytes" );
+        assertTrue( new ReplayPlayer( decoded ).verify(), "Playback should end with the recorded score and length" );
+    }
+
+    @Test void testSeekBackwardsMatchesPlayingFromStart()
+    {
+        Replay replay = playGame( 7 );
+        assertTrue( replay.getTicks() > 2 * ReplayPlayer.CHECKPOINT_INTERVAL, "Game should pass several checkpoints" );
+        long target = replay.getTicks() / 2;
+
+        ReplayPlayer player = new ReplayPlayer( replay );
+        player.fastForward();
+        player.seek( target );
+
+        ReplayPlayer fresh = new ReplayPlayer( replay );
+        fresh.seek( target );
+
+        SnakeEngine a = player.getEngine();
+        SnakeEngine b = fresh.getEngine();
+        assertEquals( target, a.getTicks() );
+        assertEquals( b.getHeadX(), a.getHeadX() );
+        assertEquals( b.getHeadY(), a.getHeadY() );
+        assertEquals( b.getAppleX(), a.getAppleX() );
+        assertEquals( b.getAppleY(), a.getAppleY() );
+        assertEquals( b.getApplesEaten(), a.getApplesEaten() );
+        assertTrue( player.verify(), "Playing on after a seek should still reproduce the game" );
+    }
+
+    @Test void testCorruptReplayIsRejected()
+    {
+        byte bytes[] = playGame( 3 ).toBytes();
+        bytes[bytes.length / 2] ^= 1;
+        assertThrows( IOException.class, () -> Replay.fromBytes( bytes ) );
+    }
+
+    @Test void testReplayWithInvalidBoardIsRejected()
+    {
+        for ( int size[] : new int[][] { { 1, 1 }, { 0, 5 }, { 5000, 10 }, { 10, 5000 } } )
+        {
+            // A well-formed replay with no turns, checksum and all, of an impossible board
+            ByteBuffer buffer = ByteBuffer.allocate( 32 );
+            buffer.putInt( 0x534E5250 ).putShort( (short)1 ).putShort( (short)0 );
+            buffer.put( (byte)( size[0] & 0x7F | 0x80 ) ).put( (byte)( size[0] >>> 7 ) );
+            buffer.put( (byte)( size[1] & 0x7F | 0x80 ) ).put( (byte)( size[1] >>> 7 ) );
+            buffer.putLong( 1L ).put( (byte)0 ).put( (byte)0 ).put( (byte)0 );
+            CRC32 crc = new CRC32();
+            crc.update( buffer.array(), 0, buffer.position() );
+            buffer.putInt( (int)crc.getValue() );
+            byte bytes[] = Arrays.copyOf( buffer.array(), buffer.position() );
+
+            IOException e = assertThrows( IOException.class, () -> Replay.fromBytes( bytes ) );
+            assertTrue( e.getMessage().contains( "board size" ), e.getMessage() );
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.AutopilotController;
+import edu.aav66.GameSnapshot;
+import edu.aav66.Replay;
+import edu.aav66.ReplayPlayer;
+import edu.aav66.RewindBuffer;
+import edu.aav66.SnakeController;
+import edu.aav66.SnakeEngine;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the RewindBuffer class.
+ */
+public class RewindBufferTest
+{
+    private static final char NO_PENDING[] = {};
+
+    private static void assertMatches( GameSnapshot expected, SnakeEngine engine )
+    {
+        assertEquals( expected.getTicks(), engine.getTicks() );
+        assertEquals( expected.getApplesEaten(), engine.getApplesEaten() );
+        assertEquals( expected.getAppleX(), engine.getAppleX() );
+        assertEquals( expected.getAppleY(), engine.getAppleY() );
+        assertEquals( expected.getDirection(), engine.getDirection() );
+        assertEquals( expected.isRunning(), engine.isRunning() );
+        assertEquals( expected.getBodyParts(), engine.getBodyParts() );
+        for ( int i = 0; i < engine.getBodyParts(); i++ )
+        {
+            assertEquals( expected.getX( i ), engine.getBody().getX( i ), "Column of segment " + i );
+            assertEquals( expected.getY( i ), engine.getBody().getY( i ), "Row of segment " + i );
+        }
+
+        int occupied = 0;
+        for ( int cell = 0; cell < engine.getColumns() * engine.getRows(); cell++ )
+            if ( engine.getOccupancy().isOccupied( cell ) )
+                occupied++;
+        assertEquals( engine.getOccupancy().getOccupiedCount(), occupied );
+    }
+
+    @Test void testRewindRetracesEveryTick()
+    {
+        SnakeEngine engine = new SnakeEngine( 10, 10, 5L );
+        SnakeController controller = new AutopilotController();
+        RewindBuffer rewind = new RewindBuffer( 1000 );
+        List<GameSnapshot> snapshots = new ArrayList<>();
+        snapshots.add( GameSnapshot.capture( engine, NO_PENDING ) );
+        while ( engine.isRunning() && engine.getTicks() < 400 )
+        {
+            rewind.record( engine );
+            engine.step( controller.nextDirection( engine ) );
+            snapshots.add( GameSnapshot.capture( engine, NO_PENDING ) );
+        }
+        assertTrue( engine.getApplesEaten() > 10, "The autopilot should have grown the snake" );
+
+        for ( int i = snapshots.size() - 2; i >= 0; i-- )
+        {
+            assertTrue( rewind.rewind( engine ) );
+            assertMatches( snapshots.get( i ), engine );
+        }
+        assertFalse( rewind.rewind( engine ), "Nothing should be left to rewind" );
+    }
+
+    @Test void testRewindRevivesCrashedGameAndPlaysOnIdentically()
+    {
+        SnakeEngine engine = new SnakeEngine( 8, 8, 21L );
+        RewindBuffer rewind = new RewindBuffer( 4 );
+        Replay.Recorder recorder = new Replay.Recorder( engine );
+        for ( char direction : "DDRRRRDLU".toCharArray() ) // Curls back into its own body
+        {
+            rewind.record( engine );
+            engine.step( direction );
+            recorder.record( engine );
+        }
+        assertFalse( engine.isRunning() );
+        assertEquals( 4, rewind.size(), "Only the last ticks should be kept" );
+
+        assertEquals( 4, rewind.rewind( engine, 10 ) );
+        assertTrue( engine.isRunning() );
+        assertEquals( 5, engine.getTicks() );
+        recorder.rewind( engine );
+
+        // Play on a different way; the replay must still reproduce the game
+        SnakeController controller = new AutopilotController();
+        while ( engine.isRunning() && engine.getTicks() < 300 )
+        {
+            engine.step( controller.nextDirection( engine ) );
+            recorder.record( engine );
+        }
+        SnakeEngine replayed = new ReplayPlayer( recorder.toReplay( engine ) ).fastForward();
+        assertEquals( engine.getTicks(), replayed.getTicks() );
+        assertEquals( engine.getApplesEaten(), replayed.getApplesEaten() );
+        assertEquals( engine.getHeadX(), replayed.getHeadX() );
+        assertEquals( engine.getHeadY(), replayed.getHeadY() );
+    }
+
+    @Test void testRecordingAfterResetForgetsOldGame()
+    {
+        SnakeEngine engine = new SnakeEngine( 8, 8, 1L );
+        RewindBuffer rewind = new RewindBuffer( 16 );
+        for ( int i = 0; i < 3; i++ )
+        {
+            rewind.record( engine );
+            engine.step( 'R' );
+        }
+        engine.reset( 2L );
+        assertFalse( rewind.rewind( engine ) );
+
+        rewind.record( engine );
+        engine.step( 'D' );
+        assertEquals( 1, rewind.size() );
+        assertTrue( rewind.rewind( engine ) );
+        assertEquals( 0, engine.getTicks() );
+    }
+}
@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.RoomScheduler;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the RoomScheduler class.
+ */
+public class RoomSchedulerTest
+{
+    /**
+     * A room that counts its ticks, spins for a while in each and notices being
+     * ticked by two threads at once.
+     */
+    private static final class CountingRoom implements RoomScheduler.Room
+    {
+        final AtomicInteger ticks = new AtomicInteger();
+        final AtomicBoolean inside = new AtomicBoolean();
+        final long spinNanos;
+        volatile boolean overlapped;
+
+        CountingRoom( long spinNanos ) { this.spinNanos = spinNanos; }
+
+        @Override public boolean tick()
+        {
+            if ( !inside.compareAndSet( false, true ) )
+                overlapped = true;
+            long end = System.nanoTime() + spinNanos;
+            while ( System.nanoTime() < end )
+                Thread.onSpinWait();
+            ticks.incrementAndGet();
+            inside.set( false );
+            return true;
+        }
+    }
+
+    @Test void testRoomsTickAtTheTickRate() throws InterruptedException
+    {
+        CountingRoom rooms[] = new CountingRoom[40];
+        try ( RoomScheduler scheduler = new RoomScheduler( 2, 20 ) )
+        {
+            for ( int i = 0; i < rooms.length; i++ )
+                scheduler.addRoom( rooms[i] = new CountingRoom( 0 ) );
+            assertEquals( rooms.length, scheduler.getRoomCount() );
+            scheduler.start();
+            Thread.sleep( 500 );
+        }
+
+        for ( CountingRoom room : rooms )
+        {
+            int ticks = room.ticks.get();
+            assertTrue( ticks >= 10 && ticks <= 27, "About 25 ticks expected in 500 ms: " + ticks );
+        }
+    }
+
+    @Test void testFinishedRoomsAreRemoved() throws InterruptedException
+    {
+        AtomicInteger ticks = new AtomicInteger();
+        try ( RoomScheduler scheduler = new RoomScheduler( 1, 5 ) )
+        {
+            scheduler.addRoom( () -> ticks.incrementAndGet() < 3 );
+            scheduler.addRoom( () -> { throw new IllegalStateException( "Broken room" ); } );
+            scheduler.addRoom( new CountingRoom( 0 ) );
+            scheduler.start();
+            Thread.sleep( 200 );
+            assertEquals( 1, scheduler.getRoomCount() );
+        }
+        assertEquals( 3, ticks.get() );
+    }
+
+    @Test void testRebalanceMovesRoomsToTheIdleWorker() throws InterruptedException
+    {
+        CountingRoom rooms[] = new CountingRoom[20];
+        try ( RoomScheduler scheduler = new RoomScheduler( 2, 20 ) )
+        {
+            for ( int i = 0; i < rooms.length; i++ )
+                scheduler.addRoom( rooms[i] = new CountingRoom( 200_000 ), 0 );
+            scheduler.start();
+            Thread.sleep( 300 );
+
+            int moved = scheduler.rebalance();
+            assertTrue( moved > 0, "Rooms should move off the busy worker" );
+            Thread.sleep( 300 );
+
+            RoomScheduler.Load loads[] = scheduler.getLoads();
+            assertEquals( rooms.length - moved, loads[0].getRooms() );
+            assertEquals( moved, loads[1].getRooms() );
+            assertTrue( loads[1].getUtilization() > 0 );
+        }
+
+        for ( CountingRoom room : rooms )
+            assertFalse( room.overlapped, "A room was ticked by two workers at once" );
+    }
+}
@@ -0,0 +1,200 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.aav66.GameConfig;
+import edu.aav66.OccupancyGrid;
+import edu.aav66.SnakeBody;
+import edu.aav66.SnakeEngine;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the SnakeEngine class. These run without AWT or Swing.
+ */
+public class SnakeEngineTest
+{
+    private SnakeEngine engine;
+
+    @BeforeEach void setUp() { engine = new SnakeEngine( 32, 32, new Random( 42 ) ); }
+
+    @Test void testStepMovesHead()
+    {
+        assertTrue( engine.step( 'R' ), "Game should keep running after one step" );
+        assertEquals( 1, engine.getHeadX(), "Head should move one cell to the right" );
+        assertEquals( 1, engine.getTicks(), "Tick counter should advance" );
+    }
+
+    @Test void testStepIgnoresReversal()
+    {
+        engine.step( 'D' );
+        engine.step( 'U' ); // Reversal into the body is ignored
+
+        assertEquals( 'D', engine.getDirection(), "Snake should not reverse into itself" );
+        assertEquals( 2, engine.getHeadY(), "Snake should keep moving down" );
+    }
+
+    @Test void testStepEndsGameAtWall()
+    {
+        engine.setApple( 31, 31 ); // Keep the apple out of the way
+        while ( engine.step( 'U' ) )
+        {
+        }
+
+        assertFalse( engine.isRunning(), "Moving up from the top row should hit the wall" );
+        assertFalse( engine.step( 'R' ), "Stepping a finished game should do nothing" );
+    }
+
+    @Test void testBodyFollowsHead()
+    {
+        engine.setApple( 31, 31 ); // Keep the apple out of the way
+        for ( int i = 0; i < 5; i++ )
+            engine.step( 'R' );
+        engine.step( 'D' );
+
+        SnakeBody body = engine.getBody();
+        assertEquals( 6, body.size(), "Moving should not change the length" );
+        assertEquals( 5, body.getX( 0 ) );
+        assertEquals( 1, body.getY( 0 ) );
+        assertEquals( 5, body.getX( 1 ) );
+        assertEquals( 0, body.getY( 1 ) );
+        assertEquals( 1, body.getTailX(), "Tail should trail five segments behind the head" );
+        assertEquals( body.getTailX(), body.getX( body.size() - 1 ) );
+    }
+
+    @Test void testGrowthKeepsTail()
+    {
+        engine.setApple( 1, 0 );
+        engine.step( 'R' );
+
+        assertEquals( 7, engine.getBodyParts(), "Eating an apple should grow the snake" );
+        assertEquals( 0, engine.getBody().getTailX(), "Tail should stay in place when growing" );
+    }
+
+    @Test void testOccupancyTracksBody()
+    {
+        engine.setApple( 31, 31 ); // Keep the apple out of the way
+        for ( int i = 0; i < 8; i++ )
+            engine.step( 'R' );
+
+        OccupancyGrid occupancy = engine.getOccupancy();
+        assertEquals( 6, occupancy.getOccupiedCount(), "Each unfolded segment should cover one cell" );
+        assertTrue( occupancy.isOccupied( 8 ), "Head cell should be occupied" );
+        assertTrue( occupancy.isOccupied( 3 ), "Tail cell should be occupied" );
+        assertFalse( occupancy.isOccupied( 2 ), "Vacated cell should be free" );
+    }
+
+    @Test void testNextOccupiedSkipsFreeCells()
+    {
+        // Rows of 4096 cells, so the body spans blocks with free blocks between its segments
+        SnakeEngine tall = new SnakeEngine( 4096, 64, new Random( 3 ) );
+        tall.setApple( 4095, 63 );
+        for ( int i = 0; i < 20; i++ )
+            tall.step( 'D' );
+
+        OccupancyGrid occupancy = tall.getOccupancy();
+        int found = 0;
+        int expected = occupancy.nextOccupied( 0 );
+        for ( int cell = 0; cell < occupancy.getCells(); cell++ )
+        {
+            if ( !occupancy.isOccupied( cell ) )
+                continue;
+            assertEquals( cell, expected, "Should find every occupied cell in order" );
+            expected = occupancy.nextOccupied( cell + 1 );
+            found++;
+        }
+        assertEquals( -1, expected, "Nothing should be found after the last occupied cell" );
+        assertEquals( occupancy.getOccupiedCount(), found );
+    }
+
+    @Test void testAppleNeverSpawnsOnSnake()
+    {
+        // A 4x1 board leaves room for the apple only on the cells the snake has not reached
+        SnakeEngine small = new SnakeEngine( 4, 1, new Random( 7 ) );
+        for ( int i = 0; i < 100; i++ )
+        {
+            small.newApple();
+            assertNotEquals( 0, small.getAppleX(), "Apple should not spawn on the stacked snake" );
+            assertEquals( 0, small.getAppleY() );
+        }
+    }
+
+    @Test void testAppleOffBoardWhenBoardFull()
+    {
+        SnakeEngine small = new SnakeEngine( 2, 1, new Random( 7 ) );
+        small.setApple( 1, 0 );
+        small.step( 'R' ); // Eating fills both cells
+
+        assertEquals( 2, small.getOccupancy().getOccupiedCount() );
+        assertTrue( small.getAppleX() < 0, "No free cell should be left for the apple" );
+    }
+
+    @Test void testStackedSnakeFitsTinyBoard()
+    {
+        // Filling a 3x1 board while five starting segments are still stacked on the first cell
+        SnakeEngine tiny = new SnakeEngine( 3, 1, new Random( 7 ) );
+        tiny.setApple( 1, 0 );
+        assertTrue( tiny.step( 'R' ) );
+        assertEquals( 2, tiny.getAppleX(), "The only free cell should get the apple" );
+        assertTrue( tiny.step( 'R' ) );
+
+        int expected[] = { 2, 1, 0, 0, 0, 0, 0, 0 };
+        assertEquals( expected.length, tiny.getBodyParts() );
+        for ( int i = 0; i < expected.length; i++ )
+            assertEquals( expected[i], tiny.getBody().getX( i ), "Column of segment " + i );
+        assertEquals( 2, tiny.getBody().getHeadX() );
+        assertEquals( 0, tiny.getBody().getTailX() );
+    }
+
+    @Test void testManyTicksWithoutDisplay()
+    {
+        // Circle the board along its edges; the game must never end
+        for ( int lap = 0; lap < 10; lap++ )
+        {
+            for ( int i = 0; i < 31; i++ )
+                engine.step( 'R' );
+            for ( int i = 0; i < 31; i++ )
+                engine.step( 'D' );
+            for ( int i = 0; i < 31; i++ )
+                engine.step( 'L' );
+            for ( int i = 0; i < 31; i++ )
+                engine.step( 'U' );
+        }
+
+        assertTrue( engine.isRunning(), "Circling the edges should not end the game" );
+        assertEquals( 1240, engine.getTicks(), "Engine should count every tick" );
+    }
+
+    @Test void testLargeBoard()
+    {
+        SnakeEngine large = new SnakeEngine( GameConfig.MAX_DIMENSION, GameConfig.MAX_DIMENSION, new Random( 1 ) );
+        large.setApple( 0, 1 ); // Keep the apple out of the way
+        for ( int i = 0; i < GameConfig.MAX_DIMENSION - 1; i++ )
+            assertTrue( large.step( 'R' ) );
+
+        assertEquals( GameConfig.MAX_DIMENSION - 1, large.getHeadX(), "Head should reach the last column" );
+        assertFalse( large.step( 'R' ), "Leaving the board should end the game" );
+        assertEquals( GameConfig.MAX_DIMENSION, large.getHeadX(), "Head should be just past the last column" );
+    }
+
+    @Test void testHeadLeavingLeftEdge()
+    {
+        engine.setApple( 31, 31 ); // Keep the apple out of the way
+        engine.step( 'D' );
+
+        assertFalse( engine.step( 'L' ), "Leaving the board should end the game" );
+        assertEquals( -1, engine.getHeadX(), "Off-board head should keep its negative column" );
+    }
+
+    @Test void testConfigRejectsOversizedBoard()
+    {
+        assertThrows( IllegalArgumentException.class, () -> new GameConfig( GameConfig.MAX_DIMENSION + 1, 32 ) );
+        assertEquals( 1, new GameConfig( 4096, 4096 ).getUnitSize(), "Large boards should be drawn smaller" );
+    }
+
+    @Test void testEngineRejectsInvalidBoard()
+    {
+        assertThrows( IllegalArgumentException.class, () -> new SnakeEngine( 0, 32, new Random( 1 ) ) );
+        assertThrows( IllegalArgumentException.class, () -> new SnakeEngine( 32, -1, 1L ) );
+        assertThrows( IllegalArgumentException.class, () -> new SnakeEngine( GameConfig.MAX_DIMENSION + 1, 32, 1L ) );
+    }
+}